@@ -0,0 +1,69 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Benchmark inputs generated by {@link ScanGenerator}.
+ */
+final class BenchmarkScans {
+
+    private static final long SEED = 20170418L;
+
+    private BenchmarkScans() {
+    }
+
+    static byte[] randomScanZip(final int issueCount, final int longTextSize) throws IOException, InterruptedException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ScanGenerator.randomScanGenerator(SEED, issueCount, 100, longTextSize).write(out);
+        return out.toByteArray();
+    }
+
+    static byte[] randomScanZip(final int issueCount, final int longTextSize, final ScanFormat format) throws IOException, InterruptedException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ScanGenerator scanGenerator = ScanGenerator.randomScanGenerator(SEED, issueCount, 100, longTextSize);
+        scanGenerator.setFormat(format);
+        scanGenerator.write(out);
+        return out.toByteArray();
+    }
+
+    static byte[] jsonEntry(final byte[] scanZip) throws IOException {
+        try (final InputStream in = PluginApiStubs.openEntry(scanZip, x -> x.endsWith(".json"))) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buf = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buf)) > 0) {
+                out.write(buf, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /** Moves parser to the first token inside of the findings array */
+    static void seekFindings(final JsonParser jsonParser) throws IOException {
+        while (jsonParser.nextToken() != null) {
+            if (jsonParser.currentToken() == JsonToken.FIELD_NAME && "findings".equals(jsonParser.getCurrentName())) {
+                jsonParser.nextToken();
+                return;
+            }
+        }
+        throw new IllegalStateException("No findings in the benchmark scan");
+    }
+}
@@ -0,0 +1,73 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.thirdparty.scan.DateDeserializer;
+import com.thirdparty.scan.DateSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Attribute name lookup and date conversions done for every finding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+
+    private static final String[] ATTRIBUTE_NAMES = {
+            "uniqueId", "category", "fileName", "vulnerabilityAbstract", "lineNumber", "confidence", "impact", "priority",
+            "categoryId", "customStatus", "artifact", "description", "comment", "buildNumber", "lastChangeDate",
+            "artifactBuildDate", "textBase64", "unknownAttribute"
+    };
+
+    private final DateDeserializer dateDeserializer = new DateDeserializer();
+    private final DateSerializer dateSerializer = new DateSerializer();
+    private final String dateString = "2017-04-16T21:31:42.092Z";
+    private final Date date = dateDeserializer.convert(dateString);
+
+    /** Score is per one attribute name */
+    @Benchmark
+    @OperationsPerInvocation(18)
+    public void vulnAttributeGet(final Blackhole bh) {
+        for (final String name : ATTRIBUTE_NAMES) {
+            bh.consume(VulnAttribute.get(name));
+        }
+    }
+
+    @Benchmark
+    public Date dateDeserializerConvert() {
+        return dateDeserializer.convert(dateString);
+    }
+
+    @Benchmark
+    public String dateSerializerConvert() {
+        return dateSerializer.convert(date);
+    }
+}
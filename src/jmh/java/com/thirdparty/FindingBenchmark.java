@@ -0,0 +1,111 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fortify.plugin.api.StaticVulnerabilityBuilder;
+import com.thirdparty.scan.Finding;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-finding cost of the parser hot paths. Scores and {@code gc.alloc.rate.norm} of the GC profiler are per one finding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FindingBenchmark {
+
+    private static final int FINDINGS = 1000;
+
+    @Param({"0", "1024", "65536"})
+    public int longTextSize;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final SampleParserPlugin plugin = new SampleParserPlugin();
+    private final ParseContext ctx = new ParseContext(ParserSettings.fromSystemProperties());
+    private final StaticVulnerabilityBuilder vb = PluginApiStubs.noOpStaticVulnerabilityBuilder();
+    private byte[] json;
+    private byte[] textBase64Json;
+    private List<Finding> findings;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        json = BenchmarkScans.jsonEntry(BenchmarkScans.randomScanZip(FINDINGS, longTextSize));
+        findings = new ArrayList<>(FINDINGS);
+        try (final JsonParser jsonParser = jsonFactory.createParser(json)) {
+            BenchmarkScans.seekFindings(jsonParser);
+            while (jsonParser.nextToken() != JsonToken.END_ARRAY) {
+                final Finding fn = new Finding();
+                plugin.loadFinding(jsonParser, fn, ctx);
+                findings.add(fn);
+            }
+        }
+        final String text = findings.get(0).getTextBase64();
+        textBase64Json = String.format("{\"textBase64\":\"%s\"}", Base64.getEncoder().encodeToString(text.getBytes("US-ASCII"))).getBytes("US-ASCII");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FINDINGS)
+    public void loadFinding(final Blackhole bh) throws IOException {
+        try (final JsonParser jsonParser = jsonFactory.createParser(json)) {
+            BenchmarkScans.seekFindings(jsonParser);
+            while (jsonParser.nextToken() != JsonToken.END_ARRAY) {
+                final Finding fn = new Finding();
+                plugin.loadFinding(jsonParser, fn, ctx);
+                bh.consume(fn);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FINDINGS)
+    public void populateVulnerability() {
+        for (final Finding fn : findings) {
+            plugin.populateVulnerability(vb, fn);
+        }
+    }
+
+    @Benchmark
+    public String decodeTextBase64() throws IOException {
+        try (final JsonParser jsonParser = jsonFactory.createParser(textBase64Json)) {
+            jsonParser.nextToken();
+            jsonParser.nextToken();
+            jsonParser.nextToken();
+            return AttributeReaders.decodeTextBase64(jsonParser, ctx);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fortify.plugin.api.ScanData;
+import com.fortify.plugin.api.ScanParsingException;
+import com.fortify.plugin.api.VulnerabilityHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-scan {@link SampleParserPlugin#parseVulnerabilities} including inflating of the in-memory scan zip.
+ * Divide {@code gc.alloc.rate.norm} of the GC profiler by {@link #issueCount} to get bytes allocated per finding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ScanBenchmark {
+
+    @Param({"1000", "10000"})
+    public int issueCount;
+
+    @Param({"0", "4096"})
+    public int longTextSize;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    @Param({"json", "smile"})
+    public String format;
+
+    private SampleParserPlugin plugin;
+    private ScanData scanData;
+    private final VulnerabilityHandler vh = PluginApiStubs.noOpVulnerabilityHandler();
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        final Properties props = new Properties();
+        props.setProperty(ParserSettings.PREFIX + "parallelism", String.valueOf(parallelism));
+        plugin = new SampleParserPlugin(new ParserSettings(props));
+        scanData = PluginApiStubs.scanData("benchmark", BenchmarkScans.randomScanZip(issueCount, longTextSize, ScanFormat.parse(format)));
+    }
+
+    @Benchmark
+    public void parseVulnerabilities() throws ScanParsingException, IOException {
+        plugin.parseVulnerabilities(scanData, vh);
+    }
+}
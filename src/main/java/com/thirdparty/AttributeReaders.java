@@ -0,0 +1,187 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fortify.plugin.api.BasicVulnerabilityBuilder;
+import com.thirdparty.scan.DateDeserializer;
+
+import java.io.IOException;
+import java.util.Date;
+
+import static com.thirdparty.ScanGenerator.CustomStatus;
+import static com.thirdparty.ScanGenerator.GenPriority;
+
+/**
+ * <P>Type specific readers of finding values used by the generated {@link FindingCodec}.
+ * <BR>Each reader takes the value of the current token of the parser, see {@code src/main/codegen/finding-attributes.txt}
+ * for the attribute kinds they serve.
+ */
+final class AttributeReaders {
+
+    private static final DateDeserializer DATE_DESERIALIZER = new DateDeserializer();
+
+    private AttributeReaders() {
+    }
+
+    /**
+     * Unique id of a finding, it can't be truncated, so an id over the {@code STRING} limit always fails
+     */
+    static String uniqueId(final JsonParser jsonParser, final ParseContext ctx) throws IOException {
+        final ParserSettings.Limit limit = ctx.getMaxStringLength();
+        if (limit.isExceeded(jsonParser.getTextLength())) {
+            throw new ScanLimitException(valueOverLimit(jsonParser, jsonParser.getTextLength(), limit), false);
+        }
+        return jsonParser.getText();
+    }
+
+    /**
+     * Text of a value of low cardinality, repeated values are taken from the dictionary of the context without copying them from the parser buffer
+     */
+    static String shortText(final JsonParser jsonParser, final ParseContext ctx) throws IOException {
+        final int length = limitLength(jsonParser, jsonParser.getTextLength(), ctx.getMaxStringLength(), ctx);
+        return ctx.getShortStrings().get(jsonParser.getTextCharacters(), jsonParser.getTextOffset(), length);
+    }
+
+    /**
+     * Text of a value of high cardinality, e.g. a file name, it is copied for each finding and doesn't take space in the dictionary
+     * which then wouldn't be left for repeated values
+     */
+    static String text(final JsonParser jsonParser, final ParseContext ctx) throws IOException {
+        final int length = limitLength(jsonParser, jsonParser.getTextLength(), ctx.getMaxStringLength(), ctx);
+        return new String(jsonParser.getTextCharacters(), jsonParser.getTextOffset(), length);
+    }
+
+    /**
+     * Text of a long value, values repeated across findings share one instance once the long text dictionary of the context keeps them.
+     * A truncated value ends with the marker of {@link LongTextBuffer}, as a truncated {@code textBase64} value does.
+     */
+    static String longText(final JsonParser jsonParser, final ParseContext ctx) throws IOException {
+        final int textLength = jsonParser.getTextLength();
+        ctx.getMetrics().longTextRead(textLength, jsonParser);
+        final int length = limitLength(jsonParser, textLength, ctx.getMaxLongStringLength(), ctx);
+        if (length == textLength) {
+            return ctx.getLongStrings().get(jsonParser.getTextCharacters(), jsonParser.getTextOffset(), length);
+        }
+        final String marker = LongTextBuffer.truncationMarker(textLength, length);
+        return new String(jsonParser.getTextCharacters(), jsonParser.getTextOffset(), length - marker.length()) + marker;
+    }
+
+    /**
+     * Base64 is decoded while reading from the input into a buffer reused across findings,
+     * so neither the encoded text nor more than the maximal stored length of the decoded value is held in memory.
+     * Repeated decoded values share one instance through the long text dictionary of the context.
+     */
+    static String decodeTextBase64(final JsonParser jsonParser, final ParseContext ctx) throws IOException {
+        final LongTextBuffer buffer = ctx.getLongTextBuffer();
+        buffer.reset();
+        jsonParser.readBinaryValue(buffer);
+        ctx.getMetrics().longTextRead(buffer.getTotalLength(), jsonParser);
+        final ParserSettings.Limit limit = ctx.getMaxLongStringLength();
+        if (limit.isExceeded(buffer.getTotalLength()) && !limit.isTruncate()) {
+            throw new ScanLimitException(valueOverLimit(jsonParser, buffer.getTotalLength(), limit), false);
+        }
+        if (buffer.isTruncated()) {
+            ctx.valueTruncated(jsonParser);
+        }
+        return ctx.getLongStrings().get(buffer.toText());
+    }
+
+    /**
+     * Date is converted from the parser text buffer, most findings share a few dates which are then not even copied to a string
+     */
+    static Date convertDate(final JsonParser jsonParser, final ParseContext ctx) throws IOException {
+        ctx.getMetrics().dateParsed();
+        return DATE_DESERIALIZER.convert(jsonParser.getTextCharacters(), jsonParser.getTextOffset(), jsonParser.getTextLength());
+    }
+
+    /**
+     * @return length of the value to be kept
+     */
+    private static int limitLength(final JsonParser jsonParser, final int length, final ParserSettings.Limit limit, final ParseContext ctx) throws IOException {
+        if (!limit.isExceeded(length)) {
+            return length;
+        }
+        if (!limit.isTruncate()) {
+            throw new ScanLimitException(valueOverLimit(jsonParser, length, limit), false);
+        }
+        ctx.valueTruncated(jsonParser);
+        return (int) limit.getMax();
+    }
+
+    private static String valueOverLimit(final JsonParser jsonParser, final long length, final ParserSettings.Limit limit) throws IOException {
+        return String.format("Value of %s at %s is %d long, over the limit of %d (%s)",
+                jsonParser.getCurrentName(), jsonParser.getTokenLocation(), length, limit.getMax(), limit);
+    }
+
+    /**
+     * Priority of a finding, a name unknown to {@link GenPriority} is replaced with {@link GenPriority#Medium} and reported to the context
+     */
+    static GenPriority priority(final JsonParser jsonParser, final ParseContext ctx) throws IOException {
+        final String value = shortText(jsonParser, ctx);
+        final GenPriority priority = toGenPriority(value);
+        if (!priority.name().equals(value)) {
+            ctx.valueCoerced(jsonParser, value, priority);
+        }
+        return priority;
+    }
+
+    /**
+     * Custom status of a finding, a name unknown to {@link CustomStatus} is replaced with {@link CustomStatus#NEW} and reported to the context
+     */
+    static CustomStatus customStatus(final JsonParser jsonParser, final ParseContext ctx) throws IOException {
+        final String value = shortText(jsonParser, ctx);
+        final CustomStatus status = toCustomStatus(value);
+        if (!status.name().equals(value)) {
+            ctx.valueCoerced(jsonParser, value, status);
+        }
+        return status;
+    }
+
+    static GenPriority toGenPriority(final String value) {
+        try {
+            return GenPriority.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            return GenPriority.Medium;
+        }
+    }
+
+    /**
+     * @return SSC priority or {@code null} if the priority is unknown to SSC
+     */
+    static BasicVulnerabilityBuilder.Priority toPriority(final GenPriority priority) {
+        try {
+            return BasicVulnerabilityBuilder.Priority.valueOf(priority.name());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static CustomStatus toCustomStatus(final String value) {
+        try {
+            return CustomStatus.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            return CustomStatus.NEW;
+        }
+    }
+
+    static void skipChildren(final JsonParser jsonParser) throws IOException {
+        switch (jsonParser.getCurrentToken()) {
+            case START_ARRAY:
+            case START_OBJECT:
+                jsonParser.skipChildren();
+                break;
+        }
+    }
+}
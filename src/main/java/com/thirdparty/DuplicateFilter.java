@@ -0,0 +1,193 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fortify.plugin.api.ScanParsingException;
+import com.thirdparty.scan.Finding;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <P>Detects findings of a scan with a uniqueId handed over before, applying {@code sample.parser.duplicates}.
+ * <BR>It is used on the thread handing vulnerabilities over to SSC, in the order they are handed over, so the first occurrence is the first in the scan.
+ * Keeping the last occurrence can't be decided when the first one is read, so with {@link ParserSettings.DuplicatePolicy#LAST}
+ * the ids occurring more than once are found by a pass over the scan beforehand, their findings are held back and the one
+ * with the latest {@code lastChangeDate} is handed over after all the others.
+ * <BR>At most {@code sample.parser.duplicates.maxIds} ids are kept. Past them the ids are no longer checked with
+ * {@link ParserSettings.DuplicatePolicy#LOG}, the other policies can't keep their promise then and fail the scan.
+ */
+final class DuplicateFilter {
+
+    private static final int MAX_EXAMPLES = 10;
+
+    private final ParserSettings.DuplicatePolicy policy;
+    private final ParseMetrics metrics;
+    private final int maxIds;
+    private UniqueIdSet ids;
+    private boolean idsExhausted;
+    private Set<String> duplicateIds = Collections.emptySet();
+    private final Map<String, Finding> latest = new LinkedHashMap<>();
+    private final List<String> examples = new ArrayList<>();
+    private long duplicates;
+
+    /**
+     * @param maxIds maximal number of distinct ids kept
+     * @param metrics metrics of the thread handing vulnerabilities over, duplicates are counted there
+     */
+    DuplicateFilter(final ParserSettings.DuplicatePolicy policy, final int maxIds, final ParseMetrics metrics) {
+        this.policy = policy;
+        this.maxIds = maxIds;
+        this.metrics = metrics;
+        this.ids = policy == ParserSettings.DuplicatePolicy.OFF || policy == ParserSettings.DuplicatePolicy.LAST ? null : new UniqueIdSet(maxIds);
+    }
+
+    /**
+     * New set of the ids of a scan, limited like the set of the filter
+     */
+    UniqueIdSet newIdSet() {
+        return new UniqueIdSet(maxIds);
+    }
+
+    /**
+     * Failure of a scan with more distinct ids than are kept
+     */
+    static ScanParsingException tooManyIds(final IllegalStateException e) {
+        return new ScanParsingException(String.format("%s to check for duplicates (%sduplicates.maxIds)", e.getMessage(), ParserSettings.PREFIX), e);
+    }
+
+    /**
+     * Whether findings have to be loaded completely before they are handed over, so that they can be held back
+     */
+    boolean isHolding() {
+        return policy == ParserSettings.DuplicatePolicy.LAST;
+    }
+
+    /**
+     * Ids occurring more than once in the scan, whose findings are held back with {@link ParserSettings.DuplicatePolicy#LAST}
+     */
+    void setDuplicateIds(final Set<String> duplicateIds) {
+        this.duplicateIds = duplicateIds;
+    }
+
+    /**
+     * Called before the vulnerability of a finding loaded directly to the builder is started
+     *
+     * @return whether the vulnerability is to be handed over
+     */
+    boolean accept(final String uniqueId) throws ScanParsingException {
+        if (ids == null || add(uniqueId)) {
+            return true;
+        }
+        duplicateFound(uniqueId);
+        switch (policy) {
+            case FAIL:
+                throw new ScanParsingException(String.format("Duplicate uniqueId '%s' (%sduplicates)", uniqueId, ParserSettings.PREFIX));
+            case FIRST:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Called before the vulnerability of a loaded finding is started, findings held back are handed over by {@link #getHeld()}
+     *
+     * @return whether the vulnerability is to be handed over now
+     */
+    boolean accept(final Finding fn) throws ScanParsingException {
+        if (!isHolding()) {
+            return accept(fn.getUniqueId());
+        }
+        if (!duplicateIds.contains(fn.getUniqueId())) {
+            return true;
+        }
+        final Finding held = latest.get(fn.getUniqueId());
+        if (held == null) {
+            latest.put(fn.getUniqueId(), fn);
+            return false;
+        }
+        duplicateFound(fn.getUniqueId());
+        // ties are won by the later occurrence
+        if (compare(fn.getLastChangeDate(), held.getLastChangeDate()) >= 0) {
+            latest.put(fn.getUniqueId(), fn);
+        }
+        return false;
+    }
+
+    /**
+     * Findings held back to be handed over at the end, in the order their ids first occurred
+     */
+    Collection<Finding> getHeld() {
+        return latest.values();
+    }
+
+    private boolean add(final String uniqueId) throws ScanParsingException {
+        try {
+            return ids.add(uniqueId);
+        } catch (IllegalStateException e) {
+            if (policy != ParserSettings.DuplicatePolicy.LOG) {
+                throw tooManyIds(e);
+            }
+            // the memory of the ids is released, the rest of the scan is not checked
+            ids = null;
+            idsExhausted = true;
+            return true;
+        }
+    }
+
+    ParserSettings.DuplicatePolicy getPolicy() {
+        return policy;
+    }
+
+    /** Whether ids past the maximal number of ids kept were not checked */
+    boolean isIdsExhausted() {
+        return idsExhausted;
+    }
+
+    int getMaxIds() {
+        return maxIds;
+    }
+
+    /** Number of findings whose uniqueId occurred before */
+    long getDuplicates() {
+        return duplicates;
+    }
+
+    /** First few duplicate ids, for the log */
+    List<String> getExamples() {
+        return examples;
+    }
+
+    private void duplicateFound(final String uniqueId) {
+        duplicates++;
+        metrics.duplicateFound();
+        if (examples.size() < MAX_EXAMPLES && !examples.contains(uniqueId)) {
+            examples.add(uniqueId);
+        }
+    }
+
+    private static int compare(final Date date, final Date other) {
+        if (date == null || other == null) {
+            return date == null ? (other == null ? 0 : -1) : 1;
+        }
+        return date.compareTo(other);
+    }
+}
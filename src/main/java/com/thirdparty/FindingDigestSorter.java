@@ -0,0 +1,230 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * <P>Sorts {@link Digest}s of the findings of a scan by uniqueId in bounded memory.
+ * <BR>Digests are collected in memory until their estimated size reaches the limit, then they are sorted and written to a temporary
+ * run file. Sorted digests are read back by merging the runs, each run is read through its own small buffer, so a scan of any size
+ * takes the memory limit plus a buffer per run. A scan which fits in memory is never written to disk.
+ * Digests with the same uniqueId come out in the order they were added.
+ */
+final class FindingDigestSorter implements Closeable {
+
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+    // object headers, fields and references of a digest in memory besides the id characters and attribute hashes
+    private static final int DIGEST_OVERHEAD = 96;
+
+    private final long maxMemory;
+    private final File tmpDir;
+    private final int attributeCount;
+    private final List<Digest> digests = new ArrayList<>();
+    private final List<Run> runs = new ArrayList<>();
+    private long memory;
+
+    /**
+     * @param maxMemory estimated size of digests kept in memory before they are written to a run
+     * @param tmpDir directory of the run files, {@code null} for the default temporary directory
+     * @param attributeCount number of attribute hashes of each digest
+     */
+    FindingDigestSorter(final long maxMemory, final File tmpDir, final int attributeCount) {
+        this.maxMemory = maxMemory;
+        this.tmpDir = tmpDir;
+        this.attributeCount = attributeCount;
+    }
+
+    void add(final Digest digest) throws IOException {
+        digests.add(digest);
+        memory += DIGEST_OVERHEAD + 2L * digest.uniqueId.length() + 4L * attributeCount;
+        if (memory >= maxMemory) {
+            spill();
+        }
+    }
+
+    /** Number of run files written so far */
+    int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Digests sorted by uniqueId, to be read once after all digests were added
+     */
+    Source sorted() throws IOException {
+        if (runs.isEmpty()) {
+            digests.sort(Digest.BY_UNIQUE_ID);
+            final Iterator<Digest> it = digests.iterator();
+            return () -> it.hasNext() ? it.next() : null;
+        }
+        if (!digests.isEmpty()) {
+            spill();
+        }
+        final PriorityQueue<Run> queue = new PriorityQueue<>(Comparator.comparing((Run run) -> run.current, Digest.BY_UNIQUE_ID).thenComparingInt(run -> run.index));
+        for (final Run run : runs) {
+            if (run.open()) {
+                queue.add(run);
+            }
+        }
+        return () -> {
+            final Run run = queue.poll();
+            if (run == null) {
+                return null;
+            }
+            final Digest digest = run.current;
+            if (run.advance()) {
+                queue.add(run);
+            }
+            return digest;
+        };
+    }
+
+    /**
+     * Deletes the run files
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (final Run run : runs) {
+            try {
+                run.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        runs.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void spill() throws IOException {
+        digests.sort(Digest.BY_UNIQUE_ID);
+        final File file = File.createTempFile("scan-diff-", ".run", tmpDir);
+        file.deleteOnExit();
+        final Run run = new Run(runs.size(), file, digests.size(), attributeCount);
+        runs.add(run);
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), RUN_BUFFER_SIZE))) {
+            for (final Digest digest : digests) {
+                final byte[] id = digest.uniqueId.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(id.length);
+                out.write(id);
+                out.writeLong(digest.hash);
+                for (final int attributeHash : digest.attributeHashes) {
+                    out.writeInt(attributeHash);
+                }
+            }
+        }
+        digests.clear();
+        memory = 0;
+    }
+
+    /**
+     * Sorted digests, {@link #next()} returns {@code null} after the last one
+     */
+    interface Source {
+        Digest next() throws IOException;
+    }
+
+    /**
+     * <P>Finding reduced to its uniqueId, a hash of the whole finding and a hash of each attribute.
+     * <BR>Findings with equal hashes are taken as equal, attribute hashes tell which attributes of different findings differ.
+     * Hashes of absent attributes are 0.
+     */
+    static final class Digest {
+        static final Comparator<Digest> BY_UNIQUE_ID = Comparator.comparing(digest -> digest.uniqueId);
+
+        final String uniqueId;
+        final long hash;
+        final int[] attributeHashes;
+
+        Digest(final String uniqueId, final long hash, final int[] attributeHashes) {
+            this.uniqueId = uniqueId;
+            this.hash = hash;
+            this.attributeHashes = attributeHashes;
+        }
+    }
+
+    /**
+     * Sorted run file and the digest its reader is at
+     */
+    private static final class Run implements Closeable {
+        final int index;
+        private final File file;
+        private final int attributeCount;
+        private int remaining;
+        private DataInputStream in;
+        Digest current;
+
+        Run(final int index, final File file, final int count, final int attributeCount) {
+            this.index = index;
+            this.file = file;
+            this.remaining = count;
+            this.attributeCount = attributeCount;
+        }
+
+        /**
+         * @return whether the run has a digest
+         */
+        boolean open() throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), RUN_BUFFER_SIZE));
+            return advance();
+        }
+
+        /**
+         * @return whether the run has another digest
+         */
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                current = null;
+                close();
+                return false;
+            }
+            remaining--;
+            final byte[] id = new byte[in.readInt()];
+            in.readFully(id);
+            final long hash = in.readLong();
+            final int[] attributeHashes = new int[attributeCount];
+            for (int i = 0; i < attributeCount; i++) {
+                attributeHashes[i] = in.readInt();
+            }
+            current = new Digest(new String(id, StandardCharsets.UTF_8), hash, attributeHashes);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+                in = null;
+            }
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+}
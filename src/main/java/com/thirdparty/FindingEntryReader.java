@@ -0,0 +1,175 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.UTF8StreamJsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * <P>Walks the content of a scan entry or a findings shard to its findings, the plugin and the scan tools read scans alike through it.
+ * <BR>Findings of JSON and binary content are the elements of the top level {@code findings} array, the other top level fields
+ * before and after it are skipped. {@link ScanFormat#NDJSON} content has no findings array, its findings are the root-level values
+ * following the object of the header line.
+ * <BR>The reader doesn't check that a finding is an object, callers decide how to report other values. The rest of the findings
+ * can also be handed to a {@link FindingSplitter} to be parsed in parallel.
+ */
+final class FindingEntryReader {
+
+    private static final String FINDINGS_FIELD = "findings";
+    private static final Map<ScanFormat, JsonFactory> FACTORIES = new EnumMap<>(ScanFormat.class);
+    private static final JsonFactory JSON_FACTORY;
+
+    static {
+        for (final ScanFormat format : ScanFormat.values()) {
+            final JsonFactory factory = format.createFactory();
+            factory.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            FACTORIES.put(format, factory);
+        }
+        JSON_FACTORY = FACTORIES.get(ScanFormat.JSON);
+    }
+
+    private enum State {
+        FIELDS, ARRAY, LINES, DONE
+    }
+
+    private final JsonParser jsonParser;
+    private State state = State.FIELDS;
+    private boolean findingsArray;
+
+    /**
+     * @param jsonParser parser at the start of the object the content begins with
+     */
+    FindingEntryReader(final JsonParser jsonParser) {
+        this.jsonParser = jsonParser;
+    }
+
+    /**
+     * Parser of the content in the format recognized by its signature, binary formats are read by the same streaming parser API.
+     * The content is not closed with the parser.
+     */
+    static JsonParser createParser(final PushbackInputStream content) throws IOException {
+        return FACTORIES.get(ScanFormat.detect(content)).createParser(content);
+    }
+
+    /**
+     * Parser of the findings of a batch split by {@link #splitFindings}
+     */
+    static JsonParser createParser(final FindingSplitter.Batch batch) throws IOException {
+        return JSON_FACTORY.createParser(batch.data, 0, batch.length);
+    }
+
+    /**
+     * Moves to the findings unless it is among them already, the parser is then after the opening bracket of the findings array,
+     * or after the object of the NDJSON header line. The rest of the input can be read by a {@link FindingSplitter} from there.
+     *
+     * @return {@code false} if there are no more findings
+     */
+    boolean moveToFindings() throws IOException {
+        while (state == State.FIELDS) {
+            final JsonToken token = jsonParser.nextToken();
+            if (token == JsonToken.END_OBJECT) {
+                state = findingsArray ? State.DONE : State.LINES;
+            } else if (token != JsonToken.FIELD_NAME) {
+                throw new JsonParseException(jsonParser, token == null ? "Unexpected end of content" : String.format("Unexpected %s", token),
+                        jsonParser.getTokenLocation());
+            } else if (FINDINGS_FIELD.equals(jsonParser.getCurrentName())) {
+                if (jsonParser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new JsonParseException(jsonParser, "Expected array as a value for findings", jsonParser.getTokenLocation());
+                }
+                findingsArray = true;
+                state = State.ARRAY;
+            } else {
+                jsonParser.nextToken();
+                AttributeReaders.skipChildren(jsonParser);
+            }
+        }
+        return state != State.DONE;
+    }
+
+    /**
+     * Moves to the next finding, the parser is then at its first token
+     *
+     * @return {@code false} after the last finding
+     */
+    boolean nextFinding() throws IOException {
+        while (moveToFindings()) {
+            final JsonToken token = jsonParser.nextToken();
+            if (state == State.LINES) {
+                if (token != null) {
+                    return true;
+                }
+                state = State.DONE;
+            } else if (token == null) {
+                throw new JsonParseException(jsonParser, "Unexpected end of findings array", jsonParser.getCurrentLocation());
+            } else if (token == JsonToken.END_ARRAY) {
+                // fields may follow the findings array
+                state = State.FIELDS;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves to the next finding like {@link #nextFinding()} and fails if it is not an object
+     */
+    boolean nextObject() throws IOException {
+        if (!nextFinding()) {
+            return false;
+        }
+        if (jsonParser.currentToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(jsonParser, "Expected object start", jsonParser.getTokenLocation());
+        }
+        return true;
+    }
+
+    /**
+     * Splitter of the rest of the findings after {@link #moveToFindings()}, the parser is not to be used after that.
+     * <BR>{@link FindingSplitter} handles UTF-8 JSON text read from a stream only, other content can't be split.
+     *
+     * @param objectsOnly whether the splitter fails on findings other than objects, or passes them on
+     * @return splitter or {@code null} if the content can't be split
+     */
+    FindingSplitter splitFindings(final int batchSize, final boolean objectsOnly) throws IOException {
+        if (!(jsonParser instanceof UTF8StreamJsonParser && jsonParser.getInputSource() instanceof InputStream)) {
+            return null;
+        }
+        // bytes already read ahead by the parser continue the findings
+        final long offset = jsonParser.getCurrentLocation().getByteOffset();
+        final ByteArrayOutputStream readAhead = new ByteArrayOutputStream();
+        jsonParser.releaseBuffered(readAhead);
+        final InputStream rest = new SequenceInputStream(new ByteArrayInputStream(readAhead.toByteArray()), (InputStream) jsonParser.getInputSource());
+        return new FindingSplitter(rest, offset, batchSize, isLines(), objectsOnly);
+    }
+
+    /**
+     * Whether the findings are the root-level values following the header line of {@link ScanFormat#NDJSON} content
+     */
+    boolean isLines() {
+        return state == State.LINES;
+    }
+}
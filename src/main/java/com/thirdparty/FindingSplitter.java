@@ -0,0 +1,339 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fortify.plugin.api.ScanParsingException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * <P>Structural pre-pass over the content of the findings array.
+ * <BR>Splits UTF-8 JSON input positioned right after the opening bracket of the array into batches of complete finding objects
+ * without tokenizing them. Only string, escape and nesting state is tracked, so a batch can be handed over to another thread
+ * and parsed there by an ordinary {@link com.fasterxml.jackson.core.JsonParser}.
+ * <BR>Findings of {@link ScanFormat#NDJSON} input are split at new lines, which JSON strings can't contain unescaped.
+ * <BR>Separators are checked as a parser would, so a missing or extra comma fails the split rather than being parsed past.
+ * <BR>A value other than an object fails the split, unless the splitter is asked to pass such values on to the parser of the batch,
+ * e.g. for {@link ScanValidator} to report them with the rest of the findings.
+ */
+final class FindingSplitter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_BATCH_BYTES = 1024 * 1024;
+
+    private final InputStream in;
+    private final long baseOffset;
+    private final int batchSize;
+    private final boolean lines;
+    private final boolean objectsOnly;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private long consumed;
+    private boolean done;
+    private boolean first = true;
+    private ScanLimitException truncated;
+
+    private byte[] batch;
+    private int batchLength;
+    private long[] offsets = new long[16];
+
+    /**
+     * @param in input positioned after the opening bracket of the findings array
+     * @param baseOffset byte offset of the input start in the JSON entry, used in error messages
+     * @param batchSize maximal number of findings in one batch
+     * @param lines whether the input is positioned after the header line of {@link ScanFormat#NDJSON} content instead
+     * @param objectsOnly whether a finding other than an object fails the split, otherwise it is passed on in the batch
+     */
+    FindingSplitter(final InputStream in, final long baseOffset, final int batchSize, final boolean lines, final boolean objectsOnly) {
+        this.in = in;
+        this.baseOffset = baseOffset;
+        this.batchSize = batchSize;
+        this.lines = lines;
+        this.objectsOnly = objectsOnly;
+        this.batch = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Returns next batch of findings or {@code null} when the end of the findings array has been reached.
+     * <BR>When a truncating {@link ScanLimitException} stops the input, the findings split before it are returned first
+     * and the exception is thrown by the next call.
+     */
+    Batch next() throws IOException, ScanParsingException {
+        if (truncated != null) {
+            final ScanLimitException e = truncated;
+            truncated = null;
+            done = true;
+            throw e;
+        }
+        if (done) {
+            return null;
+        }
+        batchLength = 0;
+        int count = 0;
+        int completeLength = 0;
+        try {
+            while (count < batchSize && batchLength < MAX_BATCH_BYTES) {
+                final int c = nextValueStart();
+                if (lines ? c < 0 : c == ']') {
+                    done = true;
+                    break;
+                }
+                if (c < 0 || c != '{' && objectsOnly) {
+                    throw new ScanParsingException(c < 0
+                            ? String.format("Unexpected end of findings array at byte offset %d", position())
+                            : String.format("Expected object start in findings %s at byte offset %d", lines ? "line" : "array", position() - 1));
+                }
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count] = position() - 1;
+                if (c == '{') {
+                    copyObject();
+                    if (lines) {
+                        skipLineEnd();
+                    }
+                } else if (lines) {
+                    copyLine((byte) c);
+                } else {
+                    copyOther((byte) c);
+                }
+                count++;
+                completeLength = batchLength;
+            }
+        } catch (ScanLimitException e) {
+            if (!e.isTruncate() || count == 0) {
+                throw e;
+            }
+            // the finding being copied is cut off, the ones before it are complete
+            truncated = e;
+            batchLength = completeLength;
+        }
+        if (count == 0) {
+            return null;
+        }
+        final Batch result = new Batch(batch, batchLength, count, Arrays.copyOf(offsets, count));
+        // next batch is likely to be of similar size
+        batch = new byte[Math.max(BUFFER_SIZE, batchLength)];
+        return result;
+    }
+
+    /**
+     * Skips the white space and the comma before the next finding, exactly one comma must separate the elements of the array
+     * and none may precede the first element or follow the last one. Lines of {@link ScanFormat#NDJSON} input have no commas.
+     *
+     * @return first byte of the next finding, the closing bracket of the array or -1 at the end of the input
+     */
+    private int nextValueStart() throws IOException, ScanParsingException {
+        int c = skipWhitespace();
+        if (lines || c < 0) {
+            if (c == ',') {
+                throw new ScanParsingException(String.format("Unexpected comma between findings lines at byte offset %d", position() - 1));
+            }
+            return c;
+        }
+        if (!first && c != ']') {
+            if (c != ',') {
+                throw new ScanParsingException(String.format("Expected comma between findings at byte offset %d", position() - 1));
+            }
+            c = skipWhitespace();
+            if (c == ']') {
+                throw new ScanParsingException(String.format("Unexpected end of findings array after comma at byte offset %d", position() - 1));
+            }
+        }
+        if (c == ',') {
+            throw new ScanParsingException(String.format("Unexpected comma in findings array at byte offset %d", position() - 1));
+        }
+        first = false;
+        return c;
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            final byte c = buf[pos++];
+            switch (c) {
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\r':
+                    break;
+                default:
+                    return c;
+            }
+        }
+    }
+
+    private void copyObject() throws IOException, ScanParsingException {
+        append((byte) '{');
+        int depth = 1;
+        boolean inString = false;
+        boolean escaped = false;
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw new ScanParsingException(String.format("Unexpected end of finding object at byte offset %d", position()));
+            }
+            final int start = pos;
+            while (pos < limit) {
+                final byte c = buf[pos++];
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if ((c == '}' || c == ']') && --depth == 0) {
+                    append(buf, start, pos - start);
+                    append((byte) '\n');
+                    return;
+                }
+            }
+            append(buf, start, pos - start);
+        }
+    }
+
+    /**
+     * Copies a value other than an object up to the separator following it, nested arrays and strings included
+     */
+    private void copyOther(final byte first) throws IOException, ScanParsingException {
+        append(first);
+        int depth = first == '[' ? 1 : 0;
+        boolean inString = first == '"';
+        boolean escaped = false;
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw new ScanParsingException(String.format("Unexpected end of findings array at byte offset %d", position()));
+            }
+            final byte c = buf[pos];
+            if (!inString && depth == 0 && (c == ',' || c == ']' || c == ' ' || c == '\t' || c == '\n' || c == '\r')) {
+                // the separator is left to nextValueStart, the closing bracket ends the array
+                append((byte) '\n');
+                return;
+            }
+            pos++;
+            append(c);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if ((c == '}' || c == ']') && depth > 0) {
+                depth--;
+            }
+        }
+    }
+
+    private void copyLine(final byte first) throws IOException {
+        append(first);
+        while (pos < limit || fill()) {
+            final int start = pos;
+            while (pos < limit) {
+                if (buf[pos++] == '\n') {
+                    append(buf, start, pos - start);
+                    return;
+                }
+            }
+            append(buf, start, pos - start);
+        }
+        // last line without a new line
+        append((byte) '\n');
+    }
+
+    /**
+     * Skips the rest of the line of a finding object, only white space may follow it there
+     */
+    private void skipLineEnd() throws IOException, ScanParsingException {
+        while (pos < limit || fill()) {
+            final byte c = buf[pos++];
+            if (c == '\n') {
+                return;
+            }
+            if (c != ' ' && c != '\t' && c != '\r') {
+                throw new ScanParsingException(c == ','
+                        ? String.format("Unexpected comma between findings lines at byte offset %d", position() - 1)
+                        : String.format("Expected end of findings line at byte offset %d", position() - 1));
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        final int read = in.read(buf, 0, buf.length);
+        if (read <= 0) {
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    private long position() {
+        return baseOffset + consumed + pos;
+    }
+
+    private void append(final byte b) {
+        ensureCapacity(1);
+        batch[batchLength++] = b;
+    }
+
+    private void append(final byte[] src, final int offset, final int length) {
+        ensureCapacity(length);
+        System.arraycopy(src, offset, batch, batchLength, length);
+        batchLength += length;
+    }
+
+    private void ensureCapacity(final int length) {
+        if (batchLength + length > batch.length) {
+            batch = Arrays.copyOf(batch, Math.max(batch.length * 2, batchLength + length));
+        }
+    }
+
+    /**
+     * Complete finding objects separated by new lines, ready to be parsed as a sequence of root-level values.
+     * <BR>Bytes of each finding are copied as they are, so a byte of a finding is at its offset in the batch plus the difference
+     * of the offset of the finding in the entry and its offset in the batch.
+     */
+    static final class Batch {
+        final byte[] data;
+        final int length;
+        final int findingCount;
+        /** byte offset of each finding in the JSON entry */
+        final long[] offsets;
+
+        Batch(final byte[] data, final int length, final int findingCount, final long[] offsets) {
+            this.data = data;
+            this.length = length;
+            this.findingCount = findingCount;
+            this.offsets = offsets;
+        }
+    }
+}
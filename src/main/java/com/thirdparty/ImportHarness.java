@@ -0,0 +1,124 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fortify.plugin.api.ScanData;
+import com.fortify.plugin.api.ScanParsingException;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * <P>Local end-to-end import of a scan zip, driving the plugin through the same calls SSC does:
+ * {@code start}, {@code parseScan}, {@code parseVulnerabilities} and {@code stop}.
+ * <BR>SSC objects are replaced by counting stand-ins from {@link PluginApiStubs}, so the measured time is the time spent in the plugin.
+ * Run it under a profiler (async-profiler, JFR) to see the plugin code paths SSC uses. Parser options are read from
+ * {@code sample.parser.*} system properties like in SSC.
+ */
+public class ImportHarness {
+
+    private static final double MB = 1024 * 1024;
+
+    private final File scanFile;
+    private final int iterations;
+
+    private ImportHarness(final File scanFile, final int iterations) {
+        this.scanFile = scanFile;
+        this.iterations = iterations;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println(String.format("Usage:\n" +
+                    "\tjava -cp <class_path> %s <SCAN_ZIP_NAME> [<ITERATIONS>]\n", ImportHarness.class.getName()));
+            System.exit(1);
+        }
+        new ImportHarness(new File(args[0]), args.length > 1 ? Integer.parseInt(args[1]) : 1).run();
+    }
+
+    private void run() throws Exception {
+        try (final ZipFile zipFile = new ZipFile(scanFile)) {
+            long uncompressedSize = 0;
+            for (final Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements(); ) {
+                uncompressedSize += entries.nextElement().getSize();
+            }
+            final long compressedSize = scanFile.length();
+            System.out.println(String.format("Scan %s: %.1f MB compressed, %.1f MB uncompressed", scanFile.getPath(), compressedSize / MB, uncompressedSize / MB));
+
+            for (int i = 1; i <= iterations; i++) {
+                final ScanData scanData = PluginApiStubs.scanData(UUID.randomUUID().toString(), zipFile);
+                resetPeakHeap();
+                final long startTime = System.nanoTime();
+                final Result result = importScan(scanData);
+                final double seconds = (System.nanoTime() - startTime) / 1e9;
+                System.out.println(String.format("Iteration %d: %d findings (%d attribute values) in %.3f s, %.0f findings/s, %.1f MB/s compressed, %.1f MB/s uncompressed, peak heap %.1f MB",
+                        i, result.counters.completed, result.counters.values, seconds, result.counters.completed / seconds,
+                        compressedSize / MB / seconds, uncompressedSize / MB / seconds, peakHeap() / MB));
+                if (i == 1) {
+                    System.out.println("Scan header: " + result.header);
+                }
+                if (result.counters.started != result.counters.completed) {
+                    System.err.println(String.format("%d vulnerabilities were started but only %d completed", result.counters.started, result.counters.completed));
+                }
+            }
+        }
+    }
+
+    private static Result importScan(final ScanData scanData) throws Exception {
+        final Result result = new Result();
+        final SampleParserPlugin plugin = new SampleParserPlugin();
+        plugin.start();
+        try {
+            plugin.parseScan(scanData, PluginApiStubs.scanBuilder(result.header));
+            plugin.parseVulnerabilities(scanData, PluginApiStubs.countingVulnerabilityHandler(result.counters));
+        } finally {
+            plugin.stop();
+        }
+        return result;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /** Sum of peaks of the heap memory pools, it is an upper bound because the pools peak at different times */
+    private static long peakHeap() {
+        long peak = 0;
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static final class Result {
+        final Map<String, Object> header = new LinkedHashMap<>();
+        final PluginApiStubs.Counters counters = new PluginApiStubs.Counters();
+    }
+}
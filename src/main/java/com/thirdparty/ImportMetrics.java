@@ -0,0 +1,153 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <P>Metrics of scans imported by a plugin instance, accumulated from {@link ScanMetrics} of each scan.
+ * <BR>Scans of different sessions can be parsed concurrently, so accumulation and reads are synchronized; it happens once per scan.
+ */
+final class ImportMetrics implements ImportMetricsMXBean {
+    private static final Logger LOG = LoggerFactory.getLogger(ImportMetrics.class);
+
+    static final String OBJECT_NAME = "com.thirdparty:type=SampleParserPlugin,name=ImportMetrics";
+
+    private ParseMetrics totals;
+    private long scans;
+    private long scanNanos;
+    private String lastScan;
+    private ObjectName registeredName;
+
+    ImportMetrics() {
+        reset();
+    }
+
+    /**
+     * Registers the metrics to the platform MBean server, failure is only logged because the import doesn't depend on it
+     */
+    synchronized void register() {
+        if (registeredName != null) {
+            return;
+        }
+        try {
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            registeredName = name;
+        } catch (JMException e) {
+            LOG.warn("Import metrics can't be registered as {}: {}", OBJECT_NAME, e.toString());
+        }
+    }
+
+    synchronized void unregister() {
+        if (registeredName == null) {
+            return;
+        }
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(registeredName);
+        } catch (JMException e) {
+            LOG.warn("Import metrics can't be unregistered from {}: {}", registeredName, e.toString());
+        }
+        registeredName = null;
+    }
+
+    synchronized void record(final ScanMetrics scan, final ParseMetrics scanTotals, final String summary) {
+        scans++;
+        scanNanos += scan.getElapsedNanos();
+        totals.merge(scanTotals);
+        lastScan = summary;
+    }
+
+    @Override
+    public synchronized long getScans() {
+        return scans;
+    }
+
+    @Override
+    public synchronized long getFindings() {
+        return totals.getFindings();
+    }
+
+    @Override
+    public synchronized long getBytesIn() {
+        return totals.getBytesIn();
+    }
+
+    @Override
+    public synchronized long getScanMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(scanNanos);
+    }
+
+    @Override
+    public synchronized long getLoadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totals.getLoadNanos());
+    }
+
+    @Override
+    public synchronized long getPopulateMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totals.getPopulateNanos());
+    }
+
+    @Override
+    public synchronized long getCompleteMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totals.getCompleteNanos());
+    }
+
+    @Override
+    public synchronized long getLongTextLength() {
+        return totals.getLongTextLength();
+    }
+
+    @Override
+    public synchronized long getDateParses() {
+        return totals.getDateParses();
+    }
+
+    @Override
+    public synchronized long getDuplicates() {
+        return totals.getDuplicates();
+    }
+
+    @Override
+    public synchronized Map<String, Long> getLoadLatencyNanos() {
+        return totals.getLoadLatency().summary();
+    }
+
+    @Override
+    public synchronized Map<String, Long> getHandlerLatencyNanos() {
+        return totals.getHandlerLatency().summary();
+    }
+
+    @Override
+    public synchronized String getLastScan() {
+        return lastScan;
+    }
+
+    @Override
+    public synchronized void reset() {
+        totals = new ParseMetrics();
+        scans = 0;
+        scanNanos = 0;
+        lastScan = null;
+    }
+}
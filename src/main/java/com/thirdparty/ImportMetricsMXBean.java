@@ -0,0 +1,67 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Map;
+
+/**
+ * <P>Metrics of scans imported by the plugin since it was started or the metrics were reset.
+ * <BR>Registered as {@code com.thirdparty:type=SampleParserPlugin,name=ImportMetrics} in the platform MBean server while the plugin is started,
+ * so they can be watched with JConsole or any other JMX client connected to SSC.
+ * Times are 0 unless {@code sample.parser.metrics.timers} is enabled.
+ */
+public interface ImportMetricsMXBean {
+
+    /** Number of scans whose vulnerabilities were parsed successfully */
+    long getScans();
+
+    /** Number of findings parsed */
+    long getFindings();
+
+    /** Number of inflated bytes read from scan entries */
+    long getBytesIn();
+
+    /** Wall clock time of parsing vulnerabilities */
+    long getScanMillis();
+
+    /** Time spent reading findings from the input, summed over all parsing threads */
+    long getLoadMillis();
+
+    /** Time spent starting vulnerabilities and setting values of parsed findings to them */
+    long getPopulateMillis();
+
+    /** Time spent completing vulnerabilities */
+    long getCompleteMillis();
+
+    /** Total length of long text values */
+    long getLongTextLength();
+
+    /** Number of finding dates converted */
+    long getDateParses();
+
+    /** Number of findings whose uniqueId occurred before in their scan */
+    long getDuplicates();
+
+    /** Percentiles (p50, p90, p99) and maximum of the time spent loading a finding, in nanoseconds */
+    Map<String, Long> getLoadLatencyNanos();
+
+    /** Percentiles (p50, p90, p99) and maximum of the time spent handing a finding over to SSC, in nanoseconds */
+    Map<String, Long> getHandlerLatencyNanos();
+
+    /** Summary of the last scan, the same as the one logged at the end of the scan */
+    String getLastScan();
+
+    /** Sets all metrics to 0 */
+    void reset();
+}
@@ -0,0 +1,100 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * <P>Reusable target of streamed base64 decoding of long text values.
+ * <BR>Keeps at most {@code maxLength} bytes of a value, the rest is only counted, so an oversized value doesn't need
+ * to be held in memory. Text of a truncated value ends with a marker stating the original length, which is kept within
+ * {@code maxLength} too.
+ */
+final class LongTextBuffer extends OutputStream {
+
+    static final String TRUNCATION_MARKER = "\n[truncated, original length %d characters]";
+
+    private static final int INITIAL_SIZE = 8 * 1024;
+
+    private final int maxLength;
+    private byte[] buf;
+    private int count;
+    private long totalLength;
+
+    LongTextBuffer(final int maxLength) {
+        this.maxLength = maxLength;
+        this.buf = new byte[Math.min(INITIAL_SIZE, maxLength)];
+    }
+
+    void reset() {
+        count = 0;
+        totalLength = 0;
+    }
+
+    boolean isTruncated() {
+        return totalLength > count;
+    }
+
+    long getTotalLength() {
+        return totalLength;
+    }
+
+    @Override
+    public void write(final int b) {
+        totalLength++;
+        if (count < maxLength) {
+            ensureCapacity(count + 1);
+            buf[count++] = (byte) b;
+        }
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {
+        totalLength += len;
+        final int stored = Math.min(len, maxLength - count);
+        if (stored > 0) {
+            ensureCapacity(count + stored);
+            System.arraycopy(b, off, buf, count, stored);
+            count += stored;
+        }
+    }
+
+    /**
+     * Text of the value decoded so far, US-ASCII like the generator encodes it
+     */
+    String toText() {
+        if (!isTruncated()) {
+            return new String(buf, 0, count, StandardCharsets.US_ASCII);
+        }
+        final String marker = truncationMarker(totalLength, maxLength);
+        return new String(buf, 0, Math.min(count, maxLength - marker.length()), StandardCharsets.US_ASCII) + marker;
+    }
+
+    /**
+     * Marker ending a value truncated to {@code maxLength} characters, the kept text of the value is to be shortened by its length.
+     * A limit too short to hold the marker truncates values without it.
+     */
+    static String truncationMarker(final long originalLength, final long maxLength) {
+        final String marker = String.format(TRUNCATION_MARKER, originalLength);
+        return marker.length() <= maxLength ? marker : "";
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > buf.length) {
+            buf = Arrays.copyOf(buf, (int) Math.min(maxLength, Math.max(capacity, 2L * buf.length)));
+        }
+    }
+}
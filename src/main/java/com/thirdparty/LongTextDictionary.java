@@ -0,0 +1,156 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * <P>Bounded dictionary of long text values, e.g. a description shared by the findings of one category.
+ * <BR>Long values are mostly distinct, so a value is kept only once it repeats: its first occurrence leaves just a 64-bit hash
+ * of its content in a table of recently seen hashes, a later occurrence of the same hash keeps the value. Both tables are
+ * direct mapped by the hash and a new entry replaces the one in its slot, so distinct values pass through without filling the
+ * dictionary and values repeated later still get in. A kept value is returned only if its content equals the looked up text.
+ * <BR>It is not thread safe, each {@link ParseContext} has its own.
+ */
+final class LongTextDictionary {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long maxChars;
+    private final long[] seen;
+    private final long[] hashes;
+    private final String[] values;
+
+    private int size;
+    private long chars;
+    private long hits;
+    private long hitChars;
+    private long misses;
+
+    /**
+     * @param maxEntries maximal number of distinct values kept, 0 disables the dictionary
+     * @param maxChars maximal total length of the values kept
+     */
+    LongTextDictionary(final int maxEntries, final long maxChars) {
+        this.maxChars = maxChars;
+        final int capacity = maxEntries <= 0 ? 0 : Integer.highestOneBit(Math.max(1, maxEntries - 1)) << 1;
+        this.values = new String[capacity];
+        this.hashes = new long[capacity];
+        // hashes of values seen once are cheap to keep, more of them let values repeating further apart in
+        this.seen = new long[capacity * 4];
+    }
+
+    /**
+     * Returns the dictionary instance of the text, the text is copied if it is not in the dictionary
+     */
+    String get(final char[] buf, final int offset, final int length) {
+        if (values.length == 0) {
+            return new String(buf, offset, length);
+        }
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = (hash ^ buf[i]) * FNV_PRIME;
+        }
+        final int slot = slot(hash, values.length);
+        final String value = values[slot];
+        if (value != null && hashes[slot] == hash && contentEquals(value, buf, offset, length)) {
+            return hit(value);
+        }
+        return miss(slot, hash, new String(buf, offset, length));
+    }
+
+    /**
+     * Returns the dictionary instance equal to the text, or the text itself
+     */
+    String get(final String text) {
+        if (values.length == 0) {
+            return text;
+        }
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+        }
+        final int slot = slot(hash, values.length);
+        final String value = values[slot];
+        if (value != null && hashes[slot] == hash && value.equals(text)) {
+            return hit(value);
+        }
+        return miss(slot, hash, text);
+    }
+
+    private String hit(final String value) {
+        hits++;
+        hitChars += value.length();
+        return value;
+    }
+
+    private String miss(final int slot, final long hash, final String value) {
+        misses++;
+        final int seenSlot = slot(hash, seen.length);
+        // 0 marks an empty slot of the seen hashes, a value of that hash is never kept
+        if (hash == 0 || seen[seenSlot] != hash) {
+            seen[seenSlot] = hash;
+            return value;
+        }
+        final String replaced = values[slot];
+        final long charsLeft = maxChars - chars + (replaced == null ? 0 : replaced.length());
+        if (value.length() <= charsLeft) {
+            if (replaced == null) {
+                size++;
+            } else {
+                chars -= replaced.length();
+            }
+            values[slot] = value;
+            hashes[slot] = hash;
+            chars += value.length();
+            seen[seenSlot] = 0;
+        }
+        return value;
+    }
+
+    private static int slot(final long hash, final int capacity) {
+        return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+    }
+
+    private static boolean contentEquals(final String value, final char[] buf, final int offset, final int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != buf[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Number of lookups which returned a value already in the dictionary */
+    long getHits() {
+        return hits;
+    }
+
+    /** Total length of the values returned from the dictionary, i.e. characters not held by another string */
+    long getHitChars() {
+        return hitChars;
+    }
+
+    /** Number of lookups of values not found in the dictionary */
+    long getMisses() {
+        return misses;
+    }
+
+    /** Number of distinct values kept */
+    int size() {
+        return size;
+    }
+}
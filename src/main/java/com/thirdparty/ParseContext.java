@@ -0,0 +1,125 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * <P>State of finding parsing reused across findings.
+ * <BR>It is not thread safe, each thread parsing findings uses its own context.
+ */
+final class ParseContext {
+
+    /** Values of low cardinality attributes longer than this are not worth a dictionary lookup */
+    private static final int MAX_SHORT_VALUE_LENGTH = 256;
+
+    private final LongTextBuffer longTextBuffer;
+    private final FindingRecord findingRecord = new FindingRecord();
+    private final StringDictionary shortStrings;
+    private final LongTextDictionary longStrings;
+    private final ParseMetrics metrics;
+    private final ParserSettings.Limit maxStringLength;
+    private final ParserSettings.Limit maxLongStringLength;
+    private int truncatedValues;
+    private int coercedValues;
+    private ValueObserver valueObserver;
+
+    ParseContext(final ParserSettings settings) {
+        this.maxStringLength = settings.getMaxStringLength();
+        this.maxLongStringLength = settings.getMaxLongStringLength();
+        // a truncated long string doesn't need more of the decoded textBase64 value kept
+        this.longTextBuffer = new LongTextBuffer(maxLongStringLength.isSet() && maxLongStringLength.isTruncate()
+                ? (int) Math.min(settings.getMaxLongTextLength(), maxLongStringLength.getMax()) : settings.getMaxLongTextLength());
+        this.shortStrings = new StringDictionary(settings.getDictionarySize(), MAX_SHORT_VALUE_LENGTH);
+        this.longStrings = new LongTextDictionary(settings.getLongTextDictionarySize(), settings.getDictionaryMaxLongTextChars());
+        this.metrics = new ParseMetrics(settings);
+    }
+
+    LongTextBuffer getLongTextBuffer() {
+        return longTextBuffer;
+    }
+
+    FindingRecord getFindingRecord() {
+        return findingRecord;
+    }
+
+    /** Dictionary of values of low cardinality attributes, e.g. category, categoryId, buildNumber or priority */
+    StringDictionary getShortStrings() {
+        return shortStrings;
+    }
+
+    /** Dictionary of long text values repeating across findings, e.g. descriptions of findings of one category */
+    LongTextDictionary getLongStrings() {
+        return longStrings;
+    }
+
+    /** Metrics of the findings parsed with the context */
+    ParseMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Limit of values of {@code STRING} attributes */
+    ParserSettings.Limit getMaxStringLength() {
+        return maxStringLength;
+    }
+
+    /** Limit of values of {@code LONG_STRING} attributes */
+    ParserSettings.Limit getMaxLongStringLength() {
+        return maxLongStringLength;
+    }
+
+    /** Sets the observer of values the parser changes without failing, {@code null} for none */
+    void setValueObserver(final ValueObserver valueObserver) {
+        this.valueObserver = valueObserver;
+    }
+
+    /**
+     * The value at the parser is cut to its length limit
+     */
+    void valueTruncated(final JsonParser jsonParser) throws IOException {
+        truncatedValues++;
+        if (valueObserver != null) {
+            valueObserver.valueTruncated(jsonParser);
+        }
+    }
+
+    int getTruncatedValues() {
+        return truncatedValues;
+    }
+
+    /**
+     * The value at the parser is not known for its attribute and has been replaced with the default
+     */
+    void valueCoerced(final JsonParser jsonParser, final String value, final Enum<?> replacement) throws IOException {
+        coercedValues++;
+        if (valueObserver != null) {
+            valueObserver.valueCoerced(jsonParser, value, replacement);
+        }
+    }
+
+    int getCoercedValues() {
+        return coercedValues;
+    }
+
+    /**
+     * Receives values which are imported other than they are in the scan, the parser is at the value
+     */
+    interface ValueObserver {
+        void valueTruncated(JsonParser jsonParser) throws IOException;
+
+        void valueCoerced(JsonParser jsonParser, String value, Enum<?> replacement) throws IOException;
+    }
+}
@@ -0,0 +1,329 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <P>Counters and timers of finding parsing collected by one thread.
+ * <BR>It is not thread safe, like {@link ParseContext} each thread has its own and the metrics of a scan are merged when it is parsed.
+ * Times are measured only if {@code sample.parser.metrics.timers} is enabled, otherwise {@link #now()} returns 0 and all times stay 0.
+ * Metrics of a parsing thread also emit the frequent {@link ParserEvents}, as they already have the values the events carry.
+ */
+final class ParseMetrics {
+
+    private final boolean timed;
+    private long findings;
+    private long bytesIn;
+    private long loadNanos;
+    private long populateNanos;
+    private long completeNanos;
+    private long longTextLength;
+    private long dateParses;
+    private long duplicates;
+    private final Histogram loadLatency = new Histogram();
+    private final Histogram handlerLatency = new Histogram();
+
+    private final int batchSize;
+    private final long oversizedAttributeLength;
+    private final long slowHandlerNanos;
+    private ParserEvents.FindingBatchEvent batch;
+    private long batchFindings;
+    private long batchBytesIn;
+    private long batchLongTextLength;
+    private long batchLoadNanos;
+
+    /**
+     * Metrics of a parsing thread
+     */
+    ParseMetrics(final ParserSettings settings) {
+        this.timed = settings.isMetricsTimers();
+        final boolean events = ParserEvents.AVAILABLE;
+        this.batchSize = events ? settings.getJfrBatchSize() : 0;
+        this.oversizedAttributeLength = events ? settings.getJfrOversizedAttributeLength() : 0;
+        this.slowHandlerNanos = events ? TimeUnit.MILLISECONDS.toNanos(settings.getJfrSlowHandlerMillis()) : 0;
+        if (batchSize > 0) {
+            beginBatch();
+        }
+    }
+
+    /**
+     * Metrics merged from other metrics, they emit no events
+     */
+    ParseMetrics() {
+        this.timed = false;
+        this.batchSize = 0;
+        this.oversizedAttributeLength = 0;
+        this.slowHandlerNanos = 0;
+    }
+
+    /** Timestamp passed to the methods recording times */
+    long now() {
+        return timed ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Finding was read from the input, in direct mode without the time spent setting its values to the started vulnerability
+     */
+    void findingLoaded(final long startNanos, final long endNanos) {
+        findings++;
+        loadNanos += endNanos - startNanos;
+        loadLatency.record(endNanos - startNanos);
+        if (batchSize > 0 && findings - batchFindings >= batchSize) {
+            commitBatch();
+            beginBatch();
+        }
+    }
+
+    /**
+     * Finding was handed over to SSC, from starting the vulnerability through populating it to completing it.
+     * <BR>In direct mode values are set to the vulnerability while loading the finding, populating is the time spent in the handler
+     * and the builder setters then, added up and counted as if it preceded completing the vulnerability.
+     */
+    void findingHandedOver(final String uniqueId, final long startNanos, final long populatedNanos, final long endNanos) {
+        populateNanos += populatedNanos - startNanos;
+        completeNanos += endNanos - populatedNanos;
+        handlerLatency.record(endNanos - startNanos);
+        if (slowHandlerNanos > 0 && endNanos - startNanos >= slowHandlerNanos) {
+            ParserEvents.slowHandler(uniqueId, populatedNanos - startNanos, endNanos - populatedNanos);
+        }
+    }
+
+    /**
+     * Long text value at the current token of the parser was read
+     */
+    void longTextRead(final long length, final JsonParser jsonParser) throws IOException {
+        longTextLength += length;
+        if (oversizedAttributeLength > 0 && length >= oversizedAttributeLength) {
+            ParserEvents.oversizedAttribute(jsonParser.getCurrentName(), length, jsonParser.getTokenLocation().getByteOffset());
+        }
+    }
+
+    void dateParsed() {
+        dateParses++;
+    }
+
+    void duplicateFound() {
+        duplicates++;
+    }
+
+    /**
+     * Counts bytes read from the stream, the stream has to be read by the thread owning the metrics
+     */
+    InputStream count(final InputStream in) {
+        if (in == null) {
+            return null;
+        }
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                final int b = super.read();
+                if (b >= 0) {
+                    bytesIn++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                final int n = super.read(b, off, len);
+                if (n > 0) {
+                    bytesIn += n;
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(final long n) throws IOException {
+                final long skipped = super.skip(n);
+                bytesIn += skipped;
+                return skipped;
+            }
+        };
+    }
+
+    /**
+     * Commits the batch event of findings loaded since the last full batch
+     */
+    void flushBatch() {
+        if (batch != null && findings > batchFindings) {
+            commitBatch();
+        }
+        batch = null;
+    }
+
+    private void beginBatch() {
+        batch = ParserEvents.beginBatch();
+        batchFindings = findings;
+        batchBytesIn = bytesIn;
+        batchLongTextLength = longTextLength;
+        batchLoadNanos = loadNanos;
+    }
+
+    private void commitBatch() {
+        ParserEvents.commitBatch(batch, findings - batchFindings, bytesIn - batchBytesIn, longTextLength - batchLongTextLength, loadNanos - batchLoadNanos);
+    }
+
+    void merge(final ParseMetrics other) {
+        findings += other.findings;
+        bytesIn += other.bytesIn;
+        loadNanos += other.loadNanos;
+        populateNanos += other.populateNanos;
+        completeNanos += other.completeNanos;
+        longTextLength += other.longTextLength;
+        dateParses += other.dateParses;
+        duplicates += other.duplicates;
+        loadLatency.merge(other.loadLatency);
+        handlerLatency.merge(other.handlerLatency);
+    }
+
+    /** Number of parsed findings */
+    long getFindings() {
+        return findings;
+    }
+
+    /** Number of inflated bytes read from scan entries */
+    long getBytesIn() {
+        return bytesIn;
+    }
+
+    /** Time spent reading findings from the input */
+    long getLoadNanos() {
+        return loadNanos;
+    }
+
+    /** Time spent starting vulnerabilities and setting values of {@link com.thirdparty.scan.Finding} objects to them */
+    long getPopulateNanos() {
+        return populateNanos;
+    }
+
+    /** Time spent in completeVulnerability */
+    long getCompleteNanos() {
+        return completeNanos;
+    }
+
+    /** Total length of long text values, decoded bytes of textBase64 values and characters of the others */
+    long getLongTextLength() {
+        return longTextLength;
+    }
+
+    /** Number of finding dates converted */
+    long getDateParses() {
+        return dateParses;
+    }
+
+    /** Number of findings whose uniqueId occurred before in the scan */
+    long getDuplicates() {
+        return duplicates;
+    }
+
+    /** Distribution of time spent loading a finding */
+    Histogram getLoadLatency() {
+        return loadLatency;
+    }
+
+    /** Distribution of time spent handing a finding over to SSC */
+    Histogram getHandlerLatency() {
+        return handlerLatency;
+    }
+
+    /**
+     * <P>Histogram of nanosecond latencies with 4 buckets per power of two, so a percentile is off by at most 25%.
+     * <BR>Recording is a few shifts and an array increment, there are no allocations.
+     */
+    static final class Histogram {
+        private static final int SUB_BITS = 2;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS) << SUB_BITS;
+
+        private final long[] counts = new long[BUCKETS];
+        private long count;
+        private long max;
+
+        void record(final long nanos) {
+            final long value = Math.max(nanos, 0);
+            counts[bucket(value)]++;
+            count++;
+            max = Math.max(max, value);
+        }
+
+        void merge(final Histogram other) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += other.counts[i];
+            }
+            count += other.count;
+            max = Math.max(max, other.max);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getMax() {
+            return max;
+        }
+
+        /**
+         * @return upper bound of the bucket holding the value at the percentile, 0 if nothing has been recorded
+         */
+        long percentile(final double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        /** 50th, 90th and 99th percentile and maximum, ordered for display */
+        Map<String, Long> summary() {
+            final Map<String, Long> summary = new LinkedHashMap<>();
+            summary.put("p50", percentile(50));
+            summary.put("p90", percentile(90));
+            summary.put("p99", percentile(99));
+            summary.put("max", max);
+            return summary;
+        }
+
+        private static int bucket(final long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            final int exp = 63 - Long.numberOfLeadingZeros(value);
+            return ((exp - SUB_BITS + 1) << SUB_BITS) | (int) ((value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1));
+        }
+
+        private static long upperBound(final int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            final int exp = (bucket >>> SUB_BITS) + SUB_BITS - 1;
+            final long sub = bucket & (SUB_BUCKETS - 1);
+            return ((SUB_BUCKETS + sub + 1) << (exp - SUB_BITS)) - 1;
+        }
+    }
+}
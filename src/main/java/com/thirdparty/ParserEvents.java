@@ -0,0 +1,201 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * <P>JDK Flight Recorder events of scan parsing, so an import can be correlated with GC pauses and SSC activity in one recording.
+ * <BR>Events are recorded only if a recording enables them, e.g. {@code jcmd <pid> JFR.start settings=profile} enables all of them,
+ * otherwise committing an event is a cheap no-op. The parser creates the frequent events only when they pass the thresholds of
+ * {@code sample.parser.jfr.*} options, and none at all on JVMs without Flight Recorder, where event classes are never loaded.
+ */
+final class ParserEvents {
+
+    private static final String CATEGORY = "Sample Parser";
+
+    /** Whether the JVM has the Flight Recorder API */
+    static final boolean AVAILABLE = isAvailable();
+
+    private ParserEvents() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, ParserEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return event of the scan begun now, {@code null} if Flight Recorder is not available
+     */
+    static ScanParseEvent beginScan(final String sessionId) {
+        if (!AVAILABLE) {
+            return null;
+        }
+        final ScanParseEvent event = new ScanParseEvent();
+        event.sessionId = sessionId;
+        event.begin();
+        return event;
+    }
+
+    static void commitScan(final ScanParseEvent event, final ParseMetrics totals, final boolean succeeded) {
+        if (event == null || !event.shouldCommit()) {
+            return;
+        }
+        event.findings = totals.getFindings();
+        event.bytesIn = totals.getBytesIn();
+        event.longTextLength = totals.getLongTextLength();
+        event.duplicates = totals.getDuplicates();
+        event.succeeded = succeeded;
+        event.commit();
+    }
+
+    static FindingBatchEvent beginBatch() {
+        final FindingBatchEvent event = new FindingBatchEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitBatch(final FindingBatchEvent event, final long findings, final long bytesIn, final long longTextLength, final long loadNanos) {
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.findings = findings;
+        event.bytesIn = bytesIn;
+        event.longTextLength = longTextLength;
+        event.loadTime = loadNanos;
+        event.commit();
+    }
+
+    static void oversizedAttribute(final String attribute, final long length, final long byteOffset) {
+        final OversizedAttributeEvent event = new OversizedAttributeEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.attribute = attribute;
+        event.length = length;
+        event.byteOffset = byteOffset;
+        event.commit();
+    }
+
+    static void slowHandler(final String uniqueId, final long populateNanos, final long completeNanos) {
+        final SlowHandlerEvent event = new SlowHandlerEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.uniqueId = uniqueId;
+        event.populateTime = populateNanos;
+        event.completeTime = completeNanos;
+        event.commit();
+    }
+
+    @Name("com.thirdparty.ScanParse")
+    @Label("Scan Parse")
+    @Category(CATEGORY)
+    @Description("Vulnerabilities of a scan parsed and handed over to SSC")
+    @StackTrace(false)
+    static final class ScanParseEvent extends Event {
+        @Label("Session Id")
+        String sessionId;
+
+        @Label("Findings")
+        long findings;
+
+        @Label("Bytes In")
+        @Description("Inflated bytes read from the scan entries")
+        @DataAmount
+        long bytesIn;
+
+        @Label("Long Text Length")
+        long longTextLength;
+
+        @Label("Duplicates")
+        @Description("Findings whose uniqueId occurred before in the scan")
+        long duplicates;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+
+    @Name("com.thirdparty.FindingBatch")
+    @Label("Finding Batch")
+    @Category(CATEGORY)
+    @Description("Batch of findings loaded by a parsing thread, see sample.parser.jfr.batchSize")
+    @StackTrace(false)
+    static final class FindingBatchEvent extends Event {
+        @Label("Findings")
+        long findings;
+
+        @Label("Bytes In")
+        @Description("Inflated bytes read by the thread, 0 on threads parsing findings split from the scan entry by the calling thread")
+        @DataAmount
+        long bytesIn;
+
+        @Label("Long Text Length")
+        long longTextLength;
+
+        @Label("Load Time")
+        @Description("Time spent loading the findings, the rest of the batch duration is spent handing them over or waiting")
+        @Timespan
+        long loadTime;
+    }
+
+    @Name("com.thirdparty.OversizedAttribute")
+    @Label("Oversized Attribute")
+    @Category(CATEGORY)
+    @Description("Long text value at least sample.parser.jfr.oversizedAttributeLength long")
+    @StackTrace(false)
+    static final class OversizedAttributeEvent extends Event {
+        @Label("Attribute")
+        String attribute;
+
+        @Label("Length")
+        @Description("Decoded bytes of a textBase64 value, characters of other values")
+        long length;
+
+        @Label("Byte Offset")
+        @Description("Offset of the value in the entry, -1 if unknown")
+        long byteOffset;
+    }
+
+    @Name("com.thirdparty.SlowHandler")
+    @Label("Slow Handler")
+    @Category(CATEGORY)
+    @Description("Finding whose hand-over to SSC took at least sample.parser.jfr.slowHandlerMillis")
+    @StackTrace(false)
+    static final class SlowHandlerEvent extends Event {
+        @Label("Unique Id")
+        String uniqueId;
+
+        @Label("Populate Time")
+        @Description("Starting the vulnerability and setting values to it, in direct mode the time spent in the handler and the setters while loading")
+        @Timespan
+        long populateTime;
+
+        @Label("Complete Time")
+        @Timespan
+        long completeTime;
+    }
+}
@@ -0,0 +1,327 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * <P>Tuning options of the parser.
+ * <BR>Plugin framework doesn't pass any configuration to parser plugins, so the options are read from system properties
+ * prefixed with {@value #PREFIX}, e.g. {@code -Dsample.parser.parallelism=8} added to SSC JVM options.
+ * <BR>A value out of range of its option fails creation of the settings, and so of the plugin, with the name of the property in the message.
+ */
+final class ParserSettings {
+    private static final Logger LOG = LoggerFactory.getLogger(ParserSettings.class);
+
+    static final String PREFIX = "sample.parser.";
+
+    private final int parallelism;
+    private final int parallelBatchSize;
+    private final int maxLongTextLength;
+    private final boolean directMode;
+    private final int dictionarySize;
+    private final int longTextDictionarySize;
+    private final int dictionaryMaxLongTextChars;
+    private final boolean spool;
+    private final int spoolHeapThreshold;
+    private final String spoolDirectory;
+    private final boolean metricsTimers;
+    private final int jfrBatchSize;
+    private final int jfrOversizedAttributeLength;
+    private final int jfrSlowHandlerMillis;
+    private final Limit maxBytes;
+    private final Limit maxInflateRatio;
+    private final Limit maxFindings;
+    private final Limit maxSeconds;
+    private final Limit maxStringLength;
+    private final Limit maxLongStringLength;
+    private final DuplicatePolicy duplicates;
+    private final int duplicatesMaxIds;
+
+    ParserSettings(final Properties props) {
+        this.parallelism = getInt(props, "parallelism", 1, 1);
+        this.parallelBatchSize = getInt(props, "parallel.batchSize", 64, 1);
+        this.maxLongTextLength = getInt(props, "maxLongTextLength", Integer.MAX_VALUE, 0);
+        this.directMode = getBoolean(props, "directMode", true);
+        this.dictionarySize = getInt(props, "dictionary.size", 4096, 0);
+        this.longTextDictionarySize = getInt(props, "dictionary.longTextSize", 1024, 0);
+        this.dictionaryMaxLongTextChars = getInt(props, "dictionary.maxLongTextChars", 4 * 1024 * 1024, 0);
+        this.spool = getBoolean(props, "spool", false);
+        this.spoolHeapThreshold = getInt(props, "spool.heapThreshold", 32 * 1024 * 1024, 0);
+        this.spoolDirectory = props.getProperty(PREFIX + "spool.directory");
+        this.metricsTimers = getBoolean(props, "metrics.timers", true);
+        this.jfrBatchSize = getInt(props, "jfr.batchSize", 1000, 0);
+        this.jfrOversizedAttributeLength = getInt(props, "jfr.oversizedAttributeLength", 1024 * 1024, 0);
+        this.jfrSlowHandlerMillis = getInt(props, "jfr.slowHandlerMillis", 100, 0);
+        this.maxBytes = getLimit(props, "limits.maxBytes", LimitPolicy.FAIL);
+        this.maxInflateRatio = getLimit(props, "limits.maxInflateRatio", LimitPolicy.FAIL);
+        this.maxFindings = getLimit(props, "limits.maxFindings", LimitPolicy.FAIL);
+        this.maxSeconds = getLimit(props, "limits.maxSeconds", LimitPolicy.FAIL);
+        this.maxStringLength = getLimit(props, "limits.maxStringLength", LimitPolicy.TRUNCATE);
+        this.maxLongStringLength = getLimit(props, "limits.maxLongStringLength", LimitPolicy.TRUNCATE);
+        this.duplicates = getEnum(props, "duplicates", DuplicatePolicy.class, DuplicatePolicy.OFF);
+        this.duplicatesMaxIds = getInt(props, "duplicates.maxIds", 10000000, 1);
+    }
+
+    static ParserSettings fromSystemProperties() {
+        return new ParserSettings(System.getProperties());
+    }
+
+    /** Number of threads parsing findings, 1 means the findings array is parsed on the calling thread */
+    int getParallelism() {
+        return parallelism;
+    }
+
+    /** Number of findings handed to a parser thread at once */
+    int getParallelBatchSize() {
+        return parallelBatchSize;
+    }
+
+    /** Maximal number of decoded bytes of a textBase64 value passed to SSC, longer values are truncated */
+    int getMaxLongTextLength() {
+        return maxLongTextLength;
+    }
+
+    /** Whether findings parsed on the calling thread are set straight to vulnerability builders without creating {@link com.thirdparty.scan.Finding} objects */
+    boolean isDirectMode() {
+        return directMode;
+    }
+
+    /** Maximal number of distinct values kept in the string dictionary of a parsing thread, 0 disables the dictionary */
+    int getDictionarySize() {
+        return dictionarySize;
+    }
+
+    /** Maximal number of repeated long text values kept in the long text dictionary of a parsing thread, 0 disables the dictionary */
+    int getLongTextDictionarySize() {
+        return longTextDictionarySize;
+    }
+
+    /** Maximal total length of long text values kept in the dictionary of a parsing thread */
+    int getDictionaryMaxLongTextChars() {
+        return dictionaryMaxLongTextChars;
+    }
+
+    /** Whether a JSON entry read by parseScan is inflated once and kept for parseVulnerabilities of the same session */
+    boolean isSpool() {
+        return spool;
+    }
+
+    /** Maximal size of spooled JSON entry kept on heap, larger entries are spooled to a memory-mapped temporary file */
+    int getSpoolHeapThreshold() {
+        return spoolHeapThreshold;
+    }
+
+    /** Directory of spool files, {@code null} for the default temporary directory */
+    String getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    /** Whether time of loading and handing over is measured for each finding, counters are collected regardless */
+    boolean isMetricsTimers() {
+        return metricsTimers;
+    }
+
+    /** Number of findings loaded by a thread per Flight Recorder batch event, 0 disables the events */
+    int getJfrBatchSize() {
+        return jfrBatchSize;
+    }
+
+    /** Minimal length of a long text value reported by a Flight Recorder event, 0 disables the events */
+    int getJfrOversizedAttributeLength() {
+        return jfrOversizedAttributeLength;
+    }
+
+    /** Minimal time of handing a finding over to SSC reported by a Flight Recorder event, 0 disables the events */
+    int getJfrSlowHandlerMillis() {
+        return jfrSlowHandlerMillis;
+    }
+
+    /** Maximal number of inflated bytes read from the entries of a scan */
+    Limit getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** Maximal ratio of inflated to compressed size of the scan entry, applied when {@code scan.info} states its compressed size */
+    Limit getMaxInflateRatio() {
+        return maxInflateRatio;
+    }
+
+    /** Maximal number of findings of a scan */
+    Limit getMaxFindings() {
+        return maxFindings;
+    }
+
+    /** Maximal wall time of parsing a scan in seconds */
+    Limit getMaxSeconds() {
+        return maxSeconds;
+    }
+
+    /** Maximal length of a value of a {@code STRING} attribute */
+    Limit getMaxStringLength() {
+        return maxStringLength;
+    }
+
+    /** Maximal length of a value of a {@code LONG_STRING} attribute, characters of a text or decoded bytes of a textBase64 value */
+    Limit getMaxLongStringLength() {
+        return maxLongStringLength;
+    }
+
+    /** What happens with findings whose uniqueId occurred before in the scan */
+    DuplicatePolicy getDuplicatePolicy() {
+        return duplicates;
+    }
+
+    /** Maximal number of distinct uniqueIds kept to check for duplicates, 16 to 32 bytes each */
+    int getDuplicatesMaxIds() {
+        return duplicatesMaxIds;
+    }
+
+    private static Limit getLimit(final Properties props, final String name, final LimitPolicy defaultPolicy) {
+        return new Limit(name, getLong(props, name, 0, 0), getEnum(props, name + ".policy", LimitPolicy.class, defaultPolicy));
+    }
+
+    private static <E extends Enum<E>> E getEnum(final Properties props, final String name, final Class<E> type, final E defaultValue) {
+        final String value = props.getProperty(PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Ignoring invalid value '{}' of {}{}, using {}", value, PREFIX, name, defaultValue.name().toLowerCase(Locale.ROOT));
+            return defaultValue;
+        }
+    }
+
+    private static boolean getBoolean(final Properties props, final String name, final boolean defaultValue) {
+        final String value = props.getProperty(PREFIX + name);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is less than the minimum, a value which is not a number is ignored with a warning
+     */
+    private static long getLong(final Properties props, final String name, final long defaultValue, final long min) {
+        final String value = props.getProperty(PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        final long result;
+        try {
+            result = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid value '{}' of {}{}, using {}", value, PREFIX, name, defaultValue);
+            return defaultValue;
+        }
+        return checkMin(name, result, min);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is less than the minimum, a value which is not a number is ignored with a warning
+     */
+    private static int getInt(final Properties props, final String name, final int defaultValue, final int min) {
+        final String value = props.getProperty(PREFIX + name);
+        if (value == null) {
+            return defaultValue;
+        }
+        final int result;
+        try {
+            result = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring invalid value '{}' of {}{}, using {}", value, PREFIX, name, defaultValue);
+            return defaultValue;
+        }
+        return (int) checkMin(name, result, min);
+    }
+
+    private static long checkMin(final String name, final long value, final long min) {
+        if (value < min) {
+            throw new IllegalArgumentException(String.format("Invalid value %d of %s%s, it must be at least %d", value, PREFIX, name, min));
+        }
+        return value;
+    }
+
+    /**
+     * What happens when a scan exceeds a limit
+     */
+    enum LimitPolicy {
+        /** Import fails with a {@link com.fortify.plugin.api.ScanParsingException} */
+        FAIL,
+        /** Value is cut to the limit, or the findings handed over before the limit was reached are imported */
+        TRUNCATE
+    }
+
+    /**
+     * What happens with a finding whose uniqueId occurred before in the scan
+     */
+    enum DuplicatePolicy {
+        /** Ids are not checked */
+        OFF,
+        /** Finding is handed over to SSC, duplicates are counted and logged at the end of the scan */
+        LOG,
+        /** Import fails with a {@link com.fortify.plugin.api.ScanParsingException} */
+        FAIL,
+        /** Finding is skipped, the first occurrence is kept */
+        FIRST,
+        /** Occurrence with the latest lastChangeDate is kept, the last one of those with the same date */
+        LAST
+    }
+
+    /**
+     * Resource limit read from {@code sample.parser.limits.<name>} and {@code sample.parser.limits.<name>.policy}, 0 means unlimited
+     */
+    static final class Limit {
+        private final String name;
+        private final long max;
+        private final LimitPolicy policy;
+
+        Limit(final String name, final long max, final LimitPolicy policy) {
+            this.name = name;
+            this.max = max;
+            this.policy = policy;
+        }
+
+        boolean isSet() {
+            return max > 0;
+        }
+
+        /** Whether the value is over the limit */
+        boolean isExceeded(final long value) {
+            return max > 0 && value > max;
+        }
+
+        long getMax() {
+            return max;
+        }
+
+        LimitPolicy getPolicy() {
+            return policy;
+        }
+
+        boolean isTruncate() {
+            return policy == LimitPolicy.TRUNCATE;
+        }
+
+        /** Option name of the limit */
+        @Override
+        public String toString() {
+            return PREFIX + name;
+        }
+    }
+}
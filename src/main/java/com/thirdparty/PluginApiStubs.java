@@ -0,0 +1,447 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fortify.plugin.api.ScanBuilder;
+import com.fortify.plugin.api.ScanData;
+import com.fortify.plugin.api.ScanEntry;
+import com.fortify.plugin.api.StaticVulnerabilityBuilder;
+import com.fortify.plugin.api.VulnerabilityHandler;
+import com.fortify.plugin.spi.VulnerabilityAttribute;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * <P>Stand-ins of the plugin-api objects SSC passes to the parser, so the parser can be run and profiled outside of SSC.
+ * <BR>They are plain classes with empty or counting method bodies, so a setter call costs what a call of the SSC builder costs
+ * besides its work, and the times measured with them are the times spent in the plugin.
+ */
+final class PluginApiStubs {
+
+    private PluginApiStubs() {
+    }
+
+    /** {@link ScanData} reading entries of a scan zip file */
+    static ScanData scanData(final String sessionId, final ZipFile zipFile) {
+        return new ZipFileScanData(sessionId, zipFile);
+    }
+
+    /** {@link ScanData} reading entries of an in-memory scan zip */
+    static ScanData scanData(final String sessionId, final byte[] scanZip) {
+        return new InMemoryScanData(sessionId, scanZip);
+    }
+
+    /** {@link ScanBuilder} which collects values set by the parser, keyed by setter name */
+    static ScanBuilder scanBuilder(final Map<String, Object> values) {
+        return new RecordingScanBuilder(values);
+    }
+
+    static VulnerabilityHandler noOpVulnerabilityHandler() {
+        return countingVulnerabilityHandler(new Counters());
+    }
+
+    static StaticVulnerabilityBuilder noOpStaticVulnerabilityBuilder() {
+        return countingStaticVulnerabilityBuilder(new Counters());
+    }
+
+    static VulnerabilityHandler countingVulnerabilityHandler(final Counters counters) {
+        return new CountingVulnerabilityHandler(counters);
+    }
+
+    static StaticVulnerabilityBuilder countingStaticVulnerabilityBuilder(final Counters counters) {
+        return new CountingStaticVulnerabilityBuilder(counters);
+    }
+
+    /** Numbers of calls of the vulnerability stand-ins, they are meant to be used from one thread like SSC does */
+    static final class Counters {
+        long started;
+        long completed;
+        long values;
+    }
+
+    static InputStream openEntry(final byte[] scanZip, final Predicate<String> matcher) throws IOException {
+        final ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(scanZip));
+        ZipEntry entry;
+        while ((entry = zipIn.getNextEntry()) != null) {
+            if (matcher.test(entry.getName())) {
+                return zipIn;
+            }
+        }
+        zipIn.close();
+        return null;
+    }
+
+    private static final class NamedScanEntry implements ScanEntry {
+        private final String name;
+
+        NamedScanEntry(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getEntryName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static final class ZipFileScanData implements ScanData {
+        private final String sessionId;
+        private final ZipFile zipFile;
+
+        ZipFileScanData(final String sessionId, final ZipFile zipFile) {
+            this.sessionId = sessionId;
+            this.zipFile = zipFile;
+        }
+
+        @Override
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        @Override
+        public List<ScanEntry> getScanEntries() {
+            final List<ScanEntry> entries = new ArrayList<>();
+            for (final Enumeration<? extends ZipEntry> it = zipFile.entries(); it.hasMoreElements(); ) {
+                entries.add(new NamedScanEntry(it.nextElement().getName()));
+            }
+            return entries;
+        }
+
+        @Override
+        public InputStream getInputStream(final ScanEntry scanEntry) throws IOException {
+            return getInputStream(name -> name.equals(scanEntry.getEntryName()));
+        }
+
+        @Override
+        public InputStream getInputStream(final Predicate<String> matcher) throws IOException {
+            for (final Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements(); ) {
+                final ZipEntry entry = entries.nextElement();
+                if (matcher.test(entry.getName())) {
+                    return zipFile.getInputStream(entry);
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class InMemoryScanData implements ScanData {
+        private final String sessionId;
+        private final byte[] scanZip;
+
+        InMemoryScanData(final String sessionId, final byte[] scanZip) {
+            this.sessionId = sessionId;
+            this.scanZip = scanZip;
+        }
+
+        @Override
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        @Override
+        public List<ScanEntry> getScanEntries() {
+            final List<ScanEntry> entries = new ArrayList<>();
+            try (final ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(scanZip))) {
+                ZipEntry entry;
+                while ((entry = zipIn.getNextEntry()) != null) {
+                    entries.add(new NamedScanEntry(entry.getName()));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("In-memory scan zip can't be read", e);
+            }
+            return entries;
+        }
+
+        @Override
+        public InputStream getInputStream(final ScanEntry scanEntry) throws IOException {
+            return getInputStream(name -> name.equals(scanEntry.getEntryName()));
+        }
+
+        @Override
+        public InputStream getInputStream(final Predicate<String> matcher) throws IOException {
+            return openEntry(scanZip, matcher);
+        }
+    }
+
+    private static final class RecordingScanBuilder implements ScanBuilder {
+        private final Map<String, Object> values;
+
+        RecordingScanBuilder(final Map<String, Object> values) {
+            this.values = values;
+        }
+
+        @Override
+        public void setBuildId(final String buildId) {
+            values.put("BuildId", buildId);
+        }
+
+        @Override
+        public void setElapsedTime(final Integer elapsedTime) {
+            values.put("ElapsedTime", elapsedTime);
+        }
+
+        @Override
+        public void setEngineVersion(final String engineVersion) {
+            values.put("EngineVersion", engineVersion);
+        }
+
+        @Override
+        public void setFortifyAnnotationsLOC(final Integer fortifyAnnotationsLOC) {
+            values.put("FortifyAnnotationsLOC", fortifyAnnotationsLOC);
+        }
+
+        @Override
+        public void setHostName(final String hostName) {
+            values.put("HostName", hostName);
+        }
+
+        @Override
+        public void setNumFiles(final Integer numFiles) {
+            values.put("NumFiles", numFiles);
+        }
+
+        @Override
+        public void setScanDate(final Date scanDate) {
+            values.put("ScanDate", scanDate);
+        }
+
+        @Override
+        public void setScanLabel(final String scanLabel) {
+            values.put("ScanLabel", scanLabel);
+        }
+
+        @Override
+        public void setTotalLOC(final Integer totalLOC) {
+            values.put("TotalLOC", totalLOC);
+        }
+
+        @Override
+        public void completeScan() {
+        }
+    }
+
+    private static final class CountingVulnerabilityHandler implements VulnerabilityHandler {
+        private final Counters counters;
+        private final StaticVulnerabilityBuilder vb;
+
+        CountingVulnerabilityHandler(final Counters counters) {
+            this.counters = counters;
+            this.vb = new CountingStaticVulnerabilityBuilder(counters);
+        }
+
+        @Override
+        public StaticVulnerabilityBuilder startStaticVulnerability(final String uniqueId) {
+            counters.started++;
+            return vb;
+        }
+    }
+
+    /**
+     * Builder counting the values set, one instance serves all vulnerabilities of a handler
+     */
+    private static final class CountingStaticVulnerabilityBuilder implements StaticVulnerabilityBuilder {
+        private final Counters counters;
+
+        CountingStaticVulnerabilityBuilder(final Counters counters) {
+            this.counters = counters;
+        }
+
+        @Override
+        public void setAccuracy(final Float accuracy) {
+            counters.values++;
+        }
+
+        @Override
+        public void setAnalyzer(final String analyzer) {
+            counters.values++;
+        }
+
+        @Override
+        public void setCategory(final String category) {
+            counters.values++;
+        }
+
+        @Override
+        public void setClassName(final String className) {
+            counters.values++;
+        }
+
+        @Override
+        public void setConfidence(final Float confidence) {
+            counters.values++;
+        }
+
+        @Override
+        public void setImpact(final Float impact) {
+            counters.values++;
+        }
+
+        @Override
+        public void setInstanceSeverity(final Float instanceSeverity) {
+            counters.values++;
+        }
+
+        @Override
+        public void setKingdom(final String kingdom) {
+            counters.values++;
+        }
+
+        @Override
+        public void setLikelihood(final Float likelihood) {
+            counters.values++;
+        }
+
+        @Override
+        public void setMappedCategory(final String mappedCategory) {
+            counters.values++;
+        }
+
+        @Override
+        public void setPackageName(final String packageName) {
+            counters.values++;
+        }
+
+        @Override
+        public void setPriority(final Priority priority) {
+            counters.values++;
+        }
+
+        @Override
+        public void setProbability(final Float probability) {
+            counters.values++;
+        }
+
+        @Override
+        public void setRemediationConstant(final Float remediationConstant) {
+            counters.values++;
+        }
+
+        @Override
+        public void setSubCategory(final String subCategory) {
+            counters.values++;
+        }
+
+        @Override
+        public void setVulnerabilityAbstract(final String vulnerabilityAbstract) {
+            counters.values++;
+        }
+
+        @Override
+        public void setVulnerabilityRecommendation(final String vulnerabilityRecommendation) {
+            counters.values++;
+        }
+
+        @Override
+        public void setStringCustomAttributeValue(final VulnerabilityAttribute attribute, final String value) {
+            counters.values++;
+        }
+
+        @Override
+        public void setDecimalCustomAttributeValue(final VulnerabilityAttribute attribute, final BigDecimal value) {
+            counters.values++;
+        }
+
+        @Override
+        public void setDateCustomAttributeValue(final VulnerabilityAttribute attribute, final Date value) {
+            counters.values++;
+        }
+
+        @Override
+        public void setFileName(final String fileName) {
+            counters.values++;
+        }
+
+        @Override
+        public void setFullFileName(final String fullFileName) {
+            counters.values++;
+        }
+
+        @Override
+        public void setFunctionName(final String functionName) {
+            counters.values++;
+        }
+
+        @Override
+        public void setLineNumber(final Integer lineNumber) {
+            counters.values++;
+        }
+
+        @Override
+        public void setMinVirtualCallConfidence(final Float minVirtualCallConfidence) {
+            counters.values++;
+        }
+
+        @Override
+        public void setRuleGuid(final String ruleGuid) {
+            counters.values++;
+        }
+
+        @Override
+        public void setSink(final String sink) {
+            counters.values++;
+        }
+
+        @Override
+        public void setSinkContext(final String sinkContext) {
+            counters.values++;
+        }
+
+        @Override
+        public void setSource(final String source) {
+            counters.values++;
+        }
+
+        @Override
+        public void setSourceContext(final String sourceContext) {
+            counters.values++;
+        }
+
+        @Override
+        public void setSourceFile(final String sourceFile) {
+            counters.values++;
+        }
+
+        @Override
+        public void setSourceLine(final Integer sourceLine) {
+            counters.values++;
+        }
+
+        @Override
+        public void setTaintFlag(final String taintFlag) {
+            counters.values++;
+        }
+
+        @Override
+        public void completeVulnerability() {
+            counters.completed++;
+        }
+    }
+}
@@ -13,10 +13,10 @@ package com.thirdparty;
  * limitations under the License.
  */
 
-import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.JsonToken;
-import com.fortify.plugin.api.BasicVulnerabilityBuilder;
 import com.fortify.plugin.api.ScanBuilder;
 import com.fortify.plugin.api.ScanData;
 import com.fortify.plugin.api.ScanParsingException;
@@ -30,32 +30,74 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 import static com.fasterxml.jackson.core.JsonToken.START_OBJECT;
 import static com.thirdparty.CustomVulnAttribute.*;
-import static com.thirdparty.ScanGenerator.GenPriority;
-import static com.thirdparty.ScanGenerator.CustomStatus;
+import static com.thirdparty.ScanGenerator.SCAN_INFO_ENTRY;
+import static com.thirdparty.ScanGenerator.SCAN_INFO_FINDING_COUNT;
+import static com.thirdparty.ScanGenerator.SCAN_INFO_JSON_ENTRY;
+import static com.thirdparty.ScanGenerator.SCAN_INFO_JSON_ENTRY_COMPRESSED_SIZE;
+import static com.thirdparty.ScanGenerator.SCAN_INFO_JSON_ENTRY_SIZE;
+import static com.thirdparty.ScanGenerator.SCAN_INFO_SHARD_ENTRY_COMPRESSED_SIZE;
+import static com.thirdparty.ScanGenerator.SCAN_INFO_SHARD_ENTRY_SIZE;
 
 public class SampleParserPlugin implements ParserPlugin<CustomVulnAttribute> {
     private static final Logger LOG = LoggerFactory.getLogger(SampleParserPlugin.class);
 
-    private static final JsonFactory JSON_FACTORY;
     private static final DateDeserializer DATE_DESERIALIZER = new DateDeserializer();
+    private static final Set<VulnAttribute> HEADER_FIELDS = EnumSet.of(
+            VulnAttribute.ENGINE_VERSION, VulnAttribute.SCAN_DATE, VulnAttribute.BUILD_SERVER, VulnAttribute.ELAPSED);
+    private static final Predicate<String> JSON_ENTRY = ScanFormat::isScanEntry;
+    // batches of a shard parsed ahead of the handler thread, workers of later shards wait once they have parsed that many
+    private static final int SHARD_QUEUE_BATCHES = 4;
+
+    private final ParserSettings settings;
+    private final ScanSpool spool;
+    private final ImportMetrics importMetrics = new ImportMetrics();
+
+    public SampleParserPlugin() {
+        this(ParserSettings.fromSystemProperties());
+    }
 
-    static {
-        JSON_FACTORY = new JsonFactory();
-        JSON_FACTORY.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    SampleParserPlugin(final ParserSettings settings) {
+        this.settings = settings;
+        this.spool = new ScanSpool(settings);
     }
 
     @Override
     public void start() throws Exception {
         LOG.info("SampleParserPlugin plugin is starting");
+        importMetrics.register();
     }
 
     @Override
     public void stop() throws Exception {
         LOG.info("SampleParserPlugin plugin is stopping");
+        spool.releaseAll();
+        importMetrics.unregister();
     }
 
     @Override
@@ -65,17 +107,137 @@ public class SampleParserPlugin implements ParserPlugin<CustomVulnAttribute> {
 
     @Override
     public void parseScan(final ScanData scanData, final ScanBuilder scanBuilder) throws ScanParsingException, IOException {
-        parseJson(scanData, scanBuilder, this::parseScanInternal);
+        final Set<VulnAttribute> pendingHeaderFields = EnumSet.copyOf(HEADER_FIELDS);
+        // Generator writes header fields to scan.info, so the (possibly huge) JSON entry does not need to be read at all
+        final Properties scanInfo = readScanInfo(scanData);
+        if (scanInfo != null) {
+            parseScanInfo(scanData, scanInfo, scanBuilder, pendingHeaderFields);
+        }
+        if (!pendingHeaderFields.isEmpty()) {
+            // Legacy scan, read the missing header fields from the JSON entry
+            // spooled entry is read again by parseVulnerabilities without inflating it
+            final ScanGuard guard = new ScanGuard(settings);
+            final long compressedSize = getCompressedSize(scanInfo, SCAN_INFO_JSON_ENTRY_COMPRESSED_SIZE, SCAN_INFO_JSON_ENTRY_SIZE);
+            try {
+                final InputStream content = settings.isSpool() ? spool.open(scanData, JSON_ENTRY, guard, compressedSize)
+                        : guard.guard(scanData.getInputStream(JSON_ENTRY), compressedSize);
+                parseJson(scanData, content, scanBuilder, (data, builder, jsonParser) -> parseScanInternal(builder, jsonParser, pendingHeaderFields));
+            } catch (ScanLimitException e) {
+                spool.release(scanData);
+                if (!e.isTruncate()) {
+                    throw new ScanParsingException(String.format("%s in session %s", e.getMessage(), scanData.getSessionId()), e);
+                }
+                LOG.warn("{} in session {}, header fields not read yet are left unset", e.getMessage(), scanData.getSessionId());
+            } catch (IOException | ScanParsingException | RuntimeException e) {
+                spool.release(scanData);
+                throw e;
+            }
+        }
         // complete scan building
         scanBuilder.completeScan();
     }
 
-    private void parseScanInternal(final ScanData scanData, final ScanBuilder scanBuilder, final JsonParser jsonParser) throws IOException, ScanParsingException {
-        // load data from top-level object fields
-        while (jsonParser.nextToken() != JsonToken.END_OBJECT) {
+    /**
+     * @return content of {@code scan.info} or {@code null} if the scan doesn't have it
+     */
+    static Properties readScanInfo(final ScanData scanData) throws IOException {
+        try (final InputStream content = scanData.getInputStream(x -> x.endsWith(SCAN_INFO_ENTRY))) {
+            if (content == null) {
+                return null;
+            }
+            final Properties scanInfo = new Properties();
+            scanInfo.load(content);
+            return scanInfo;
+        }
+    }
+
+    /**
+     * Compressed size of an entry stated by {@code scan.info}, -1 if it is not known or not plausible.
+     * <BR>{@code scan.info} comes with the scan and can be forged, so the size is only used if it is positive and no larger than
+     * deflating the stated entry size can produce; the inflate ratio of the entry is not checked without it.
+     *
+     * @param compressedSizeKey key of the compressed size of the entry
+     * @param sizeKey key of the inflated size of the entry
+     */
+    static long getCompressedSize(final Properties scanInfo, final String compressedSizeKey, final String sizeKey) {
+        final long compressedSize = getSize(scanInfo, compressedSizeKey);
+        final long entrySize = getSize(scanInfo, sizeKey);
+        if (compressedSize <= 0 || entrySize < 0) {
+            return -1;
+        }
+        // deflate stores incompressible data in blocks of at most 65535 bytes with 5 bytes of overhead each
+        final long maxCompressedSize = entrySize + (entrySize / 65535 + 1) * 5 + 64;
+        return compressedSize <= maxCompressedSize ? compressedSize : -1;
+    }
+
+    /**
+     * Compressed size of a shard entry stated by {@code scan.info}, see {@link #getCompressedSize(Properties, String, String)}
+     */
+    static long getShardCompressedSize(final Properties scanInfo, final int shard) {
+        return getCompressedSize(scanInfo, SCAN_INFO_SHARD_ENTRY_COMPRESSED_SIZE + shard, SCAN_INFO_SHARD_ENTRY_SIZE + shard);
+    }
+
+    /**
+     * Size stated by {@code scan.info}, -1 if it is not there or not a number
+     */
+    private static long getSize(final Properties scanInfo, final String name) {
+        final String value = scanInfo == null ? null : scanInfo.getProperty(name);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void parseScanInfo(final ScanData scanData, final Properties scanInfo, final ScanBuilder scanBuilder, final Set<VulnAttribute> pendingHeaderFields) {
+        for (final Iterator<VulnAttribute> it = pendingHeaderFields.iterator(); it.hasNext(); ) {
+            final VulnAttribute vulnAttr = it.next();
+            final String value = scanInfo.getProperty(vulnAttr.attrName());
+            if (value == null) {
+                continue;
+            }
+            try {
+                switch (vulnAttr) {
+                    case SCAN_DATE:
+                        scanBuilder.setScanDate(DATE_DESERIALIZER.convert(value));
+                        break;
+
+                    case ENGINE_VERSION:
+                        scanBuilder.setEngineVersion(value);
+                        break;
+
+                    case ELAPSED:
+                        scanBuilder.setElapsedTime(Integer.valueOf(value));
+                        break;
+
+                    case BUILD_SERVER:
+                        scanBuilder.setHostName(value);
+                        break;
+                }
+            } catch (IllegalArgumentException e) {
+                // Leave the field pending, the JSON entry value will be used
+                LOG.warn("Ignoring invalid {} value '{}' in {} in session {}", vulnAttr.attrName(), value, SCAN_INFO_ENTRY, scanData.getSessionId());
+                continue;
+            }
+            it.remove();
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("{} of session {} reports {} findings in {} ({} bytes, {} compressed)", SCAN_INFO_ENTRY, scanData.getSessionId(),
+                    scanInfo.getProperty(SCAN_INFO_FINDING_COUNT), scanInfo.getProperty(SCAN_INFO_JSON_ENTRY),
+                    scanInfo.getProperty(SCAN_INFO_JSON_ENTRY_SIZE), scanInfo.getProperty(SCAN_INFO_JSON_ENTRY_COMPRESSED_SIZE));
+        }
+    }
+
+    private void parseScanInternal(final ScanBuilder scanBuilder, final JsonParser jsonParser, final Set<VulnAttribute> pendingHeaderFields) throws IOException, ScanParsingException {
+        // load data from top-level object fields, stop as soon as all header fields are known
+        while (!pendingHeaderFields.isEmpty() && jsonParser.nextToken() != JsonToken.END_OBJECT) {
             final VulnAttribute vulnAttr = VulnAttribute.get(jsonParser.getCurrentName());
             jsonParser.nextToken();
-            if (vulnAttr == null) {
+            if (vulnAttr == null || !pendingHeaderFields.remove(vulnAttr)) {
                 skipChildren(jsonParser);
                 continue;
             }
@@ -107,200 +269,654 @@ public class SampleParserPlugin implements ParserPlugin<CustomVulnAttribute> {
 
     @Override
     public void parseVulnerabilities(final ScanData scanData, final VulnerabilityHandler vh) throws ScanParsingException, IOException {
-        parseJson(scanData, vh, this::parseVulnerabilitiesInternal);
+        final ScanMetrics metrics = new ScanMetrics(scanData.getSessionId(), settings);
+        final ScanGuard guard = new ScanGuard(settings);
+        final DuplicateFilter duplicates = new DuplicateFilter(settings.getDuplicatePolicy(), settings.getDuplicatesMaxIds(), metrics.getCallerMetrics());
+        boolean succeeded = false;
+        try {
+            // sizes of the entries are only needed to check their inflate ratio
+            final Properties scanInfo = settings.getMaxInflateRatio().isSet() ? readScanInfo(scanData) : null;
+            final long compressedSize = getCompressedSize(scanInfo, SCAN_INFO_JSON_ENTRY_COMPRESSED_SIZE, SCAN_INFO_JSON_ENTRY_SIZE);
+            if (duplicates.isHolding()) {
+                duplicates.setDuplicateIds(findDuplicateIds(scanData, scanInfo, compressedSize, duplicates.newIdSet()));
+            }
+            final InputStream content = guard.guard(openScanEntry(scanData), compressedSize);
+            parseJson(scanData, metrics.getCallerMetrics().count(content), vh,
+                    (data, handler, jsonParser) -> parseVulnerabilitiesInternal(handler, jsonParser, metrics, guard, duplicates));
+            if (settings.getParallelism() > 1) {
+                parseShardsParallel(scanData, scanInfo, vh, metrics, guard, duplicates);
+            } else {
+                parseShards(scanData, scanInfo, vh, metrics, guard, duplicates);
+            }
+            handOverHeld(vh, duplicates, metrics.getCallerMetrics());
+            succeeded = true;
+        } catch (ScanLimitException e) {
+            if (!e.isTruncate()) {
+                throw new ScanParsingException(String.format("%s in session %s", e.getMessage(), scanData.getSessionId()), e);
+            }
+            // vulnerabilities handed over before the limit was reached are imported
+            LOG.warn("{} in session {}, the findings handed over until then are imported", e.getMessage(), scanData.getSessionId());
+            handOverHeld(vh, duplicates, metrics.getCallerMetrics());
+        } finally {
+            metrics.end(succeeded);
+            spool.release(scanData);
+        }
+        logScanSummary(metrics, duplicates);
     }
 
-    private void parseVulnerabilitiesInternal(final ScanData scanData, final VulnerabilityHandler vh, final JsonParser jsonParser) throws ScanParsingException, IOException {
-        int debugCounter = 0;
-        while (jsonParser.nextToken() != JsonToken.END_OBJECT) {
-            final String fieldName = jsonParser.getCurrentName();
-            jsonParser.nextToken();
-            if (fieldName.equals("findings")) {
-                if (jsonParser.currentToken() != JsonToken.START_ARRAY) {
-                    throw new ScanParsingException(String.format("Expected array as a value for findings at %s", jsonParser.getTokenLocation()));
+    /**
+     * Reads the uniqueId of each finding of the scan entry and the shards, skipping all other values
+     *
+     * @return ids occurring more than once
+     */
+    private Set<String> findDuplicateIds(final ScanData scanData, final Properties scanInfo, final long compressedSize, final UniqueIdSet ids)
+            throws ScanParsingException, IOException {
+        // the pass is checked against the same limits as parsing the findings, it reads the entries once more
+        final ScanGuard guard = new ScanGuard(settings);
+        final Set<String> duplicateIds = new HashSet<>();
+        final FindingVisitor visitor = jsonParser -> {
+            final String uniqueId = readUniqueId(jsonParser);
+            try {
+                if (uniqueId != null && !ids.add(uniqueId)) {
+                    duplicateIds.add(uniqueId);
                 }
-                while (jsonParser.nextToken() != JsonToken.END_ARRAY) {
-                    assertStartObject(jsonParser);
-                    final String uniqueId = parseVulnerability(scanData, vh, jsonParser);
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug(String.format("Parsed vulnerability %06d/%s in session %s", ++debugCounter, uniqueId, scanData.getSessionId()));
-                    }
+            } catch (IllegalStateException e) {
+                throw DuplicateFilter.tooManyIds(e);
+            }
+        };
+        try {
+            parseJson(scanData, guard.guard(openScanEntry(scanData), compressedSize), visitor,
+                    (data, v, jsonParser) -> forEachFinding(jsonParser, v));
+            for (int shard = 1; ; shard++) {
+                final InputStream content = openShard(scanData, shard);
+                if (content == null) {
+                    break;
                 }
+                parseJson(scanData, guard.guard(content, getShardCompressedSize(scanInfo, shard)), visitor, (data, v, jsonParser) -> forEachFinding(jsonParser, v));
+            }
+        } catch (ScanLimitException e) {
+            if (!e.isTruncate()) {
+                throw e;
+            }
+            // parsing the findings stops at the same point
+        }
+        return duplicateIds;
+    }
+
+    /**
+     * Reads the uniqueId of the finding at the parser and skips the rest of it
+     */
+    private static String readUniqueId(final JsonParser jsonParser) throws ScanParsingException, IOException {
+        assertStartObject(jsonParser);
+        String uniqueId = null;
+        while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+            final boolean isUniqueId = VulnAttribute.UNIQUE_ID.attrName().equals(jsonParser.getCurrentName());
+            jsonParser.nextToken();
+            if (isUniqueId) {
+                uniqueId = jsonParser.getText();
             } else {
                 skipChildren(jsonParser);
             }
         }
+        return uniqueId;
     }
 
-    private String parseVulnerability(final ScanData scanData, final VulnerabilityHandler vh, final JsonParser jsonParser) throws IOException {
-        final Finding fn = new Finding();
-        loadFinding(jsonParser, fn);    // Load data from one scan json vulnerability to the Finding onject
+    /**
+     * Hands over the findings held back by the duplicate filter, the occurrence kept of each duplicate id
+     */
+    private void handOverHeld(final VulnerabilityHandler vh, final DuplicateFilter duplicates, final ParseMetrics metrics) {
+        for (final Finding fn : duplicates.getHeld()) {
+            handOver(vh, fn, metrics);
+        }
+    }
 
-        final StaticVulnerabilityBuilder vb = vh.startStaticVulnerability(fn.getUniqueId());  // Start new vulnerability building
-        populateVulnerability(vb, fn);
-        vb.completeVulnerability();  // Complete vulnerability building
+    private void parseVulnerabilitiesInternal(final VulnerabilityHandler vh, final JsonParser jsonParser, final ScanMetrics metrics, final ScanGuard guard,
+                                              final DuplicateFilter duplicates) throws ScanParsingException, IOException {
+        final ParseContext ctx = metrics.getCallerContext();
+        final FindingEntryReader reader = new FindingEntryReader(jsonParser);
+        if (settings.getParallelism() > 1 && reader.moveToFindings()) {
+            final FindingSplitter splitter = reader.splitFindings(settings.getParallelBatchSize(), true);
+            if (splitter != null) {
+                // other top-level fields are not needed for vulnerabilities
+                parseFindingsParallel(vh, splitter, metrics, guard, duplicates);
+                return;
+            }
+        }
+        while (reader.nextFinding()) {
+            parseFinding(vh, jsonParser, ctx, metrics, guard, duplicates);
+        }
+    }
 
-        return fn.getUniqueId();
+    /**
+     * Parses findings of the shard entries {@code findings-0001.*}, {@code findings-0002.*}, ... until a shard is missing
+     */
+    private void parseShards(final ScanData scanData, final Properties scanInfo, final VulnerabilityHandler vh, final ScanMetrics metrics,
+                             final ScanGuard guard, final DuplicateFilter duplicates) throws ScanParsingException, IOException {
+        final ParseContext ctx = metrics.getCallerContext();
+        for (int shard = 1; ; shard++) {
+            final InputStream content = openShard(scanData, shard);
+            if (content == null) {
+                break;
+            }
+            parseJson(scanData, ctx.getMetrics().count(guard.guard(content, getShardCompressedSize(scanInfo, shard))), vh, (data, handler, jsonParser) ->
+                    forEachFinding(jsonParser, p -> parseFinding(handler, p, ctx, metrics, guard, duplicates)));
+        }
     }
 
-    private void loadFinding(final JsonParser jsonParser, Finding fn) throws IOException {
-        while (jsonParser.nextToken() != JsonToken.END_OBJECT) {
-            VulnAttribute vulnAttr = VulnAttribute.get(jsonParser.getCurrentName());
-            jsonParser.nextToken();
-            if (vulnAttr == null) {
-                skipChildren(jsonParser);
-                continue;
+    /**
+     * Shards are inflated and parsed to {@link Finding} objects by worker threads, each taking the next shard when it is done with one.
+     * Batches of parsed findings of each shard go through a bounded queue of the shard, they are handed over to the handler on this thread
+     * in the order of the shards. The findings are thus handed over in the same order as by {@link #parseShards}, which the duplicate
+     * policies and the truncating limits depend on.
+     * <BR>The first shard is opened before the workers are started, a scan without shards doesn't start them.
+     */
+    private void parseShardsParallel(final ScanData scanData, final Properties scanInfo, final VulnerabilityHandler vh, final ScanMetrics metrics,
+                                     final ScanGuard guard, final DuplicateFilter duplicates) throws ScanParsingException, IOException {
+        final InputStream firstShard = openShard(scanData, 1);
+        if (firstShard == null) {
+            return;
+        }
+        final int workers = settings.getParallelism();
+        final AtomicInteger nextShard = new AtomicInteger();
+        final ConcurrentMap<Integer, BlockingQueue<ShardBatch>> queues = new ConcurrentHashMap<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(workers, r -> {
+            final Thread t = new Thread(r, "sample-parser-shard");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (int i = 0; i < workers; i++) {
+                executor.execute(() -> parseShardsWorker(scanData, scanInfo, firstShard, nextShard, metrics.newContext(), queues, guard));
             }
+            for (int shard = 1; ; shard++) {
+                final BlockingQueue<ShardBatch> queue = shardQueue(queues, shard);
+                ShardBatch batch;
+                while ((batch = queue.take()) != ShardBatch.DONE) {
+                    if (batch == ShardBatch.MISSING) {
+                        return;
+                    } else if (batch.failure != null) {
+                        throw batch.failure;
+                    }
+                    for (final Finding fn : batch.findings) {
+                        guard.beforeFinding();
+                        emitVulnerability(vh, fn, metrics.getCallerMetrics(), duplicates);
+                    }
+                }
+                queues.remove(shard);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScanParsingException("Interrupted while parsing shards");
+        } catch (ScanParsingException | IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            executor.shutdownNow();
+            if (nextShard.get() == 0) {
+                // no worker has taken the first shard
+                try {
+                    firstShard.close();
+                } catch (IOException e) {
+                    LOG.debug("Failed to close the first shard of session {}", scanData.getSessionId(), e);
+                }
+            }
+        }
+    }
 
-            switch (vulnAttr) {
+    /**
+     * Parses shards until one is missing, the batches of each shard, then {@link ShardBatch#DONE}, {@link ShardBatch#MISSING}
+     * or the failure are put to the queue of the shard
+     *
+     * @param firstShard content of the first shard, opened already
+     */
+    private void parseShardsWorker(final ScanData scanData, final Properties scanInfo, final InputStream firstShard, final AtomicInteger nextShard,
+                                   final ParseContext ctx, final ConcurrentMap<Integer, BlockingQueue<ShardBatch>> queues, final ScanGuard guard) {
+        final ParseMetrics metrics = ctx.getMetrics();
+        while (true) {
+            final int shardNumber = nextShard.incrementAndGet();
+            final BlockingQueue<ShardBatch> queue = shardQueue(queues, shardNumber);
+            ShardBatch last;
+            try {
+                final InputStream shard = shardNumber == 1 ? firstShard : openShard(scanData, shardNumber);
+                if (shard == null) {
+                    last = ShardBatch.MISSING;
+                } else {
+                    final ShardBatcher batcher = new ShardBatcher(queue, settings.getParallelBatchSize());
+                    final long compressedSize = getShardCompressedSize(scanInfo, shardNumber);
+                    try (
+                            final PushbackInputStream content = new PushbackInputStream(metrics.count(guard.guard(shard, compressedSize)), ScanFormat.SIGNATURE_LENGTH);
+                            final JsonParser jsonParser = FindingEntryReader.createParser(content)
+                    ) {
+                        jsonParser.nextToken();
+                        assertStartObject(jsonParser);
+                        forEachFinding(jsonParser, p -> {
+                            assertStartObject(p);
+                            final Finding fn = new Finding();
+                            final long start = metrics.now();
+                            loadFinding(p, fn, ctx);
+                            metrics.findingLoaded(start, metrics.now());
+                            batcher.add(fn);
+                        });
+                    } catch (ScanLimitException e) {
+                        if (e.isTruncate()) {
+                            // findings loaded before the limit was reached are complete, they are handed over before stopping
+                            batcher.flush();
+                        }
+                        throw e;
+                    }
+                    batcher.flush();
+                    last = ShardBatch.DONE;
+                }
+            } catch (Exception e) {
+                last = new ShardBatch(null, e);
+            }
+            try {
+                queue.put(last);
+            } catch (InterruptedException e) {
+                // handler thread has given up already
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (last != ShardBatch.DONE) {
+                return;
+            }
+        }
+    }
 
-                // Custom mandatory attributes:
+    private static BlockingQueue<ShardBatch> shardQueue(final ConcurrentMap<Integer, BlockingQueue<ShardBatch>> queues, final int shard) {
+        return queues.computeIfAbsent(shard, x -> new ArrayBlockingQueue<>(SHARD_QUEUE_BATCHES));
+    }
 
-                case UNIQUE_ID:
-                    fn.setUniqueId(jsonParser.getText());
-                    break;
+    /**
+     * Stream of the scan entry, read from the spool if it was spooled by {@link #parseScan} so that it is not inflated once more
+     */
+    private InputStream openScanEntry(final ScanData scanData) throws IOException {
+        final InputStream spooled = spool.openSpooled(scanData);
+        return spooled != null ? spooled : scanData.getInputStream(JSON_ENTRY);
+    }
 
-                // Standard SSC attributes
+    private static InputStream openShard(final ScanData scanData, final int shard) throws IOException {
+        return scanData.getInputStream(x -> ScanFormat.isShardEntry(x, shard));
+    }
 
-                case CATEGORY:
-                    fn.setCategory(jsonParser.getText());
-                    break;
+    /**
+     * Calls the visitor with the parser at each finding of the JSON, NDJSON or binary content, the parser is at the first token of the content
+     */
+    private static void forEachFinding(final JsonParser jsonParser, final FindingVisitor visitor) throws ScanParsingException, IOException {
+        final FindingEntryReader reader = new FindingEntryReader(jsonParser);
+        while (reader.nextFinding()) {
+            visitor.visit(jsonParser);
+        }
+    }
 
-                case FILE_NAME:
-                    fn.setFileName(jsonParser.getText());
-                    break;
+    private interface FindingVisitor {
+        void visit(final JsonParser jsonParser) throws ScanParsingException, IOException;
+    }
 
-                case VULNERABILITY_ABSTRACT:
-                    fn.setVulnerabilityAbstract(jsonParser.getText());
-                    break;
+    /**
+     * Batch of findings parsed by a shard worker, or a signal of the shard being done, missing or failed
+     */
+    private static final class ShardBatch {
+        static final ShardBatch DONE = new ShardBatch(null, null);
+        static final ShardBatch MISSING = new ShardBatch(null, null);
 
-                case LINE_NUMBER:
-                    fn.setLineNumber(jsonParser.getIntValue());
-                    break;
+        final List<Finding> findings;
+        final Exception failure;
 
-                case CONFIDENCE:
-                    fn.setConfidence(jsonParser.getFloatValue());
-                    break;
+        ShardBatch(final List<Finding> findings, final Exception failure) {
+            this.findings = findings;
+            this.failure = failure;
+        }
+    }
 
-                case IMPACT:
-                    fn.setImpact(jsonParser.getFloatValue());
-                    break;
+    /**
+     * Collects findings of a shard worker into batches put to the queue of the handler thread
+     */
+    private static final class ShardBatcher {
+        private final BlockingQueue<ShardBatch> queue;
+        private final int batchSize;
+        private List<Finding> findings;
+
+        ShardBatcher(final BlockingQueue<ShardBatch> queue, final int batchSize) {
+            this.queue = queue;
+            this.batchSize = batchSize;
+            this.findings = new ArrayList<>(batchSize);
+        }
 
-                case PRIORITY:
-                    try {
-                        fn.setPriority(GenPriority.valueOf(jsonParser.getText()));
-                    } catch (IllegalArgumentException e) {
-                        fn.setPriority(GenPriority.Medium);
-                    }
-                    break;
+        void add(final Finding fn) throws InterruptedIOException {
+            findings.add(fn);
+            if (findings.size() >= batchSize) {
+                flush();
+            }
+        }
 
-                // Custom attributes
+        void flush() throws InterruptedIOException {
+            if (findings.isEmpty()) {
+                return;
+            }
+            try {
+                queue.put(new ShardBatch(findings, null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while handing over findings of a shard");
+            }
+            findings = new ArrayList<>(batchSize);
+        }
+    }
 
-                case CATEGORY_ID:
-                    fn.setCategoryId(jsonParser.getText());
-                    break;
+    private void parseFinding(final VulnerabilityHandler vh, final JsonParser jsonParser, final ParseContext ctx, final ScanMetrics metrics,
+                              final ScanGuard guard, final DuplicateFilter duplicates) throws ScanParsingException, IOException {
+        assertStartObject(jsonParser);
+        guard.beforeFinding();
+        if (settings.isDirectMode() && !guard.isTruncatingMidFinding() && !duplicates.isHolding()) {
+            loadVulnerability(jsonParser, vh, ctx, duplicates);    // Load data from one scan json vulnerability straight to the builder
+        } else {
+            final Finding fn = new Finding();
+            final long start = ctx.getMetrics().now();
+            loadFinding(jsonParser, fn, ctx);    // Load data from one scan json vulnerability to the Finding onject
+            ctx.getMetrics().findingLoaded(start, ctx.getMetrics().now());
+            emitVulnerability(vh, fn, metrics.getCallerMetrics(), duplicates);
+        }
+    }
 
-                case ARTIFACT:
-                    fn.setArtifact(jsonParser.getText());
-                    break;
+    /**
+     * Logs one line summarizing the parsed scan and records it to the import metrics
+     */
+    private void logScanSummary(final ScanMetrics metrics, final DuplicateFilter duplicates) {
+        final ParseMetrics totals = metrics.getTotals();
+        int truncatedValues = 0;
+        int coercedValues = 0;
+        long hits = 0;
+        long hitChars = 0;
+        long misses = 0;
+        int size = 0;
+        for (final ParseContext ctx : metrics.getContexts()) {
+            truncatedValues += ctx.getTruncatedValues();
+            coercedValues += ctx.getCoercedValues();
+            final StringDictionary dictionary = ctx.getShortStrings();
+            final LongTextDictionary longStrings = ctx.getLongStrings();
+            hits += dictionary.getHits() + longStrings.getHits();
+            hitChars += dictionary.getHitChars() + longStrings.getHitChars();
+            misses += dictionary.getMisses() + longStrings.getMisses();
+            size += dictionary.size() + longStrings.size();
+        }
+        if (truncatedValues > 0) {
+            LOG.warn("{} values longer than their length limits were truncated in session {}", truncatedValues, metrics.getSessionId());
+        }
+        if (coercedValues > 0) {
+            LOG.warn("{} {} or {} values unknown to the parser were replaced with defaults in session {}", coercedValues,
+                    VulnAttribute.PRIORITY.attrName(), VulnAttribute.CUSTOM_STATUS.attrName(), metrics.getSessionId());
+        }
+        if (duplicates.getDuplicates() > 0) {
+            LOG.warn("{} findings with a uniqueId occurring before in session {} were {}, e.g. {}", duplicates.getDuplicates(), metrics.getSessionId(),
+                    duplicates.getPolicy() == ParserSettings.DuplicatePolicy.LOG ? "imported" : "skipped", duplicates.getExamples());
+        }
+        if (duplicates.isIdsExhausted()) {
+            LOG.warn("Duplicates in session {} were checked among the first {} distinct uniqueIds only ({}duplicates.maxIds)", metrics.getSessionId(),
+                    duplicates.getMaxIds(), ParserSettings.PREFIX);
+        }
+        final String summary = String.format("%d findings, %d bytes in %d ms: load %d ms, populate %d ms, complete %d ms, " +
+                        "load latency %s ns, handler latency %s ns, %d long text bytes, %d dates, %d duplicates, dictionary %d hits sharing %d chars, %d misses, %d distinct values",
+                totals.getFindings(), totals.getBytesIn(), TimeUnit.NANOSECONDS.toMillis(metrics.getElapsedNanos()),
+                TimeUnit.NANOSECONDS.toMillis(totals.getLoadNanos()), TimeUnit.NANOSECONDS.toMillis(totals.getPopulateNanos()),
+                TimeUnit.NANOSECONDS.toMillis(totals.getCompleteNanos()), totals.getLoadLatency().summary(), totals.getHandlerLatency().summary(),
+                totals.getLongTextLength(), totals.getDateParses(), totals.getDuplicates(), hits, hitChars, misses, size);
+        importMetrics.record(metrics, totals, summary);
+        LOG.info("Parsed session {}: {}", metrics.getSessionId(), summary);
+    }
 
-                case DESCRIPTION:
-                    fn.setDescription(jsonParser.getText());
-                    break;
+    /**
+     * Splits the rest of the findings array or lines into batches which are parsed to {@link Finding} objects by a fork-join pool.
+     * Parsed batches pass a bounded reorder window, so vulnerabilities are handed over to the handler on this thread in the original order.
+     */
+    private void parseFindingsParallel(final VulnerabilityHandler vh, final FindingSplitter splitter, final ScanMetrics metrics,
+                                       final ScanGuard guard, final DuplicateFilter duplicates) throws ScanParsingException, IOException {
+        final ForkJoinPool pool = new ForkJoinPool(settings.getParallelism());
+        final ThreadLocal<ParseContext> threadContext = ThreadLocal.withInitial(metrics::newContext);
+        final Deque<ForkJoinTask<List<Finding>>> window = new ArrayDeque<>();
+        final int maxWindow = settings.getParallelism() * 4;
+        try {
+            try {
+                FindingSplitter.Batch batch;
+                while ((batch = splitter.next()) != null) {
+                    final FindingSplitter.Batch task = batch;
+                    window.addLast(pool.submit(() -> loadFindings(task, threadContext.get())));
+                    if (window.size() >= maxWindow) {
+                        emitVulnerabilities(vh, window.removeFirst(), metrics.getCallerMetrics(), guard, duplicates);
+                    }
+                }
+            } catch (ScanLimitException e) {
+                if (!e.isTruncate()) {
+                    throw e;
+                }
+                // batches split before the limit was reached hold complete findings, they are handed over before stopping
+                while (!window.isEmpty()) {
+                    emitVulnerabilities(vh, window.removeFirst(), metrics.getCallerMetrics(), guard, duplicates);
+                }
+                throw e;
+            }
+            while (!window.isEmpty()) {
+                emitVulnerabilities(vh, window.removeFirst(), metrics.getCallerMetrics(), guard, duplicates);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
 
-                case COMMENT:
-                    fn.setComment(jsonParser.getText());
-                    break;
+    /**
+     * Parses the findings of a batch, errors are reported at the byte offset in the scan entry rather than the offset in the batch
+     */
+    private List<Finding> loadFindings(final FindingSplitter.Batch batch, final ParseContext ctx) throws ScanParsingException, IOException {
+        final List<Finding> findings = new ArrayList<>(batch.findingCount);
+        final ParseMetrics metrics = ctx.getMetrics();
+        long offsetDelta = batch.offsets[0];
+        try (final JsonParser jsonParser = FindingEntryReader.createParser(batch)) {
+            try {
+                while (jsonParser.nextToken() != null) {
+                    offsetDelta = batch.offsets[Math.min(findings.size(), batch.findingCount - 1)] - jsonParser.getTokenLocation().getByteOffset();
+                    assertStartObject(jsonParser);
+                    final Finding fn = new Finding();
+                    final long start = metrics.now();
+                    loadFinding(jsonParser, fn, ctx);
+                    metrics.findingLoaded(start, metrics.now());
+                    findings.add(fn);
+                }
+            } catch (JsonProcessingException e) {
+                final JsonLocation location = e.getLocation();
+                throw new ScanParsingException(String.format("%s at byte offset %d", e.getOriginalMessage(),
+                        location == null ? -1 : location.getByteOffset() + offsetDelta), e);
+            } catch (ScanLimitException e) {
+                throw new ScanLimitException(atEntryOffset(e.getMessage(), jsonParser, offsetDelta), e.isTruncate());
+            } catch (ScanParsingException e) {
+                throw new ScanParsingException(atEntryOffset(e.getMessage(), jsonParser, offsetDelta), e);
+            }
+        }
+        return findings;
+    }
 
-                case BUILD_NUMBER:
-                    fn.setBuildNumber(jsonParser.getText());
-                    break;
+    /**
+     * Replaces the location of the current token of a batch parser in a message with the byte offset of the token in the scan entry
+     */
+    private static String atEntryOffset(final String message, final JsonParser jsonParser, final long offsetDelta) {
+        final JsonLocation location = jsonParser.getTokenLocation();
+        return message.replace(location.toString(), String.format("byte offset %d", location.getByteOffset() + offsetDelta));
+    }
 
-                case CUSTOM_STATUS:
-                    try {
-                        fn.setCustomStatus(CustomStatus.valueOf(jsonParser.getText()));
-                    } catch (IllegalArgumentException e) {
-                        fn.setCustomStatus(CustomStatus.NEW);
-                    }
-                    break;
+    private void emitVulnerabilities(final VulnerabilityHandler vh, final ForkJoinTask<List<Finding>> task, final ParseMetrics metrics, final ScanGuard guard,
+                                     final DuplicateFilter duplicates) throws ScanParsingException, IOException {
+        final List<Finding> findings;
+        try {
+            findings = task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScanParsingException("Interrupted while parsing findings");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // the pool wraps checked exceptions of a callable, once more when rethrowing them on this thread
+            while (cause.getClass() == RuntimeException.class && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof ScanParsingException) {
+                throw (ScanParsingException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        for (final Finding fn : findings) {
+            guard.beforeFinding();
+            emitVulnerability(vh, fn, metrics, duplicates);
+        }
+    }
 
-                case LAST_CHANGE_DATE:
-                    fn.setLastChangeDate(DATE_DESERIALIZER.convert(jsonParser.getText()));
-                    break;
+    private void emitVulnerability(final VulnerabilityHandler vh, final Finding fn, final ParseMetrics metrics, final DuplicateFilter duplicates) throws ScanParsingException {
+        if (duplicates.accept(fn)) {
+            handOver(vh, fn, metrics);
+        }
+    }
 
-                case ARTIFACT_BUILD_DATE:
-                    fn.setArtifactBuildDate(DATE_DESERIALIZER.convert(jsonParser.getText()));
-                    break;
+    private void handOver(final VulnerabilityHandler vh, final Finding fn, final ParseMetrics metrics) {
+        final long start = metrics.now();
+        final StaticVulnerabilityBuilder vb = vh.startStaticVulnerability(fn.getUniqueId());  // Start new vulnerability building
+        populateVulnerability(vb, fn);
+        final long populated = metrics.now();
+        vb.completeVulnerability();  // Complete vulnerability building
+        metrics.findingHandedOver(fn.getUniqueId(), start, populated, metrics.now());
+    }
 
-                case TEXT_BASE64:
-                    fn.setTextBase64(new String(jsonParser.getBinaryValue(), StandardCharsets.US_ASCII));
+    /**
+     * Loads one finding directly to a vulnerability builder, no {@link Finding} is created.
+     * <BR>Vulnerability is started as soon as the uniqueId is read, values of fields preceding it are kept in the reusable
+     * {@link FindingRecord} of the context until then. Generator writes uniqueId first, so normally nothing is buffered.
+     * The rest of a finding not accepted by the duplicate filter is skipped.
+     *
+     * @return uniqueId of the loaded vulnerability
+     */
+    String loadVulnerability(final JsonParser jsonParser, final VulnerabilityHandler vh, final ParseContext ctx, final DuplicateFilter duplicates)
+            throws IOException, ScanParsingException {
+        final ParseMetrics metrics = ctx.getMetrics();
+        final long start = metrics.now();
+        final FindingRecord record = ctx.getFindingRecord();
+        record.reset();
+        StaticVulnerabilityBuilder vb = null;
+        String uniqueId = null;
+        // time spent in the handler and the builder, taken out of the load time and reported as populating the vulnerability
+        long populateNanos = 0;
+        try {
+            VulnAttribute expected = VulnAttribute.firstFindingField();
+            while (true) {
+                final VulnAttribute vulnAttr = nextFindingField(jsonParser, expected);
+                if (jsonParser.currentToken() != JsonToken.FIELD_NAME) {
                     break;
-
-                // Skip unneeded fields:
-                default:
+                }
+                jsonParser.nextToken();
+                if (vulnAttr == null) {
                     skipChildren(jsonParser);
-                    break;
+                    continue;
+                }
+                expected = vulnAttr.nextFindingField();
+
+                if (vulnAttr == VulnAttribute.UNIQUE_ID) {
+                    uniqueId = AttributeReaders.uniqueId(jsonParser, ctx);
+                    if (vb == null) {
+                        if (!duplicates.accept(uniqueId)) {
+                            while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+                                jsonParser.nextToken();
+                                skipChildren(jsonParser);
+                            }
+                            metrics.findingLoaded(start, metrics.now());
+                            return uniqueId;
+                        }
+                        final long started = metrics.now();
+                        vb = vh.startStaticVulnerability(uniqueId);  // Start new vulnerability building
+                        record.applyTo(vb);
+                        populateNanos += metrics.now() - started;
+                    }
+                    final long set = metrics.now();
+                    vb.setStringCustomAttributeValue(UNIQUE_ID, uniqueId);
+                    populateNanos += metrics.now() - set;
+                } else if (vb != null) {
+                    final long set = metrics.now();
+                    FindingCodec.read(vulnAttr, jsonParser, vb, ctx);
+                    populateNanos += metrics.now() - set;
+                } else {
+                    FindingCodec.read(vulnAttr, jsonParser, record, ctx);
+                }
+            }
+            if (vb == null) {
+                throw new ScanParsingException(String.format("Missing %s of finding ending at %s", VulnAttribute.UNIQUE_ID.attrName(), jsonParser.getTokenLocation()));
+            }
+        } catch (IOException | ScanParsingException | RuntimeException e) {
+            if (vb != null) {
+                completeFailed(vb, e);
             }
+            throw e;
         }
+        final long loaded = metrics.now();
+        metrics.findingLoaded(start, loaded - populateNanos);
+        vb.completeVulnerability();  // Complete vulnerability building
+        metrics.findingHandedOver(uniqueId, loaded - populateNanos, loaded, metrics.now());
+        return uniqueId;
     }
 
-    private void populateVulnerability(final StaticVulnerabilityBuilder vb, final Finding fn) {
-
-        // Set builtin attributes
-        vb.setCategory(fn.getCategory());                             // REST -> issueName
-        vb.setFileName(fn.getFileName());                             // REST -> fullFileName or shortFileName
-        vb.setVulnerabilityAbstract(fn.getVulnerabilityAbstract());   // REST -> brief
-        vb.setLineNumber(fn.getLineNumber());                         // REST -> N/A, UI issue table -> part of Primary Location
-        vb.setConfidence(fn.getConfidence());                         // REST -> confidence
-        vb.setImpact(fn.getImpact());                                 // REST -> impact
+    /**
+     * Completes a vulnerability whose finding failed to load, plugin API can't abandon a started vulnerability and the handler
+     * must not be left with one, the scan fails with the exception of the finding anyway
+     */
+    private static void completeFailed(final StaticVulnerabilityBuilder vb, final Exception failure) {
         try {
-            vb.setPriority(BasicVulnerabilityBuilder.Priority.valueOf(fn.getPriority().name()));  // REST -> friority, UI issue table -> Criticality
-        } catch (IllegalArgumentException e) {
-            // Leave priority unset if the value from scan is unknown
+            vb.completeVulnerability();
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
         }
+    }
 
-        // Set string custom attributes
-        if (fn.getUniqueId() != null) {
-            vb.setStringCustomAttributeValue(UNIQUE_ID, fn.getUniqueId());
-        }
-        if (fn.getCategoryId() != null) {
-            vb.setStringCustomAttributeValue(CATEGORY_ID, fn.getCategoryId());
-        }
-        if (fn.getArtifact() != null) {
-            vb.setStringCustomAttributeValue(ARTIFACT, fn.getArtifact());
-        }
-        if (fn.getBuildNumber() != null) {
-            vb.setStringCustomAttributeValue(BUILD_NUMBER, fn.getBuildNumber());
-        }
-        if (fn.getCustomStatus() != null) {
-            vb.setStringCustomAttributeValue(CUSTOM_STATUS, fn.getCustomStatus().name());
+    void loadFinding(final JsonParser jsonParser, Finding fn, final ParseContext ctx) throws IOException {
+        VulnAttribute expected = VulnAttribute.firstFindingField();
+        while (true) {
+            final VulnAttribute vulnAttr = nextFindingField(jsonParser, expected);
+            if (jsonParser.currentToken() != JsonToken.FIELD_NAME) {
+                break;
+            }
+            jsonParser.nextToken();
+            if (vulnAttr == null) {
+                skipChildren(jsonParser);
+                continue;
+            }
+            expected = vulnAttr.nextFindingField();
+            FindingCodec.read(vulnAttr, jsonParser, fn, ctx);
         }
+    }
 
-        // set long string custom attributes
-        if (fn.getDescription() != null) {
-            vb.setStringCustomAttributeValue(DESCRIPTION, fn.getDescription());
-        }
-        if (fn.getComment() != null) {
-            vb.setStringCustomAttributeValue(COMMENT, fn.getComment());
+    /**
+     * Advances to the next field of a finding object, the parser is left at a token other than a field name at the object end.
+     * <BR>Expected field name is compared with the input without creating a string,
+     * the attribute is looked up by name only when fields don't come in the order the generator writes them.
+     *
+     * @return attribute of the field or {@code null} for unknown fields
+     */
+    private static VulnAttribute nextFindingField(final JsonParser jsonParser, final VulnAttribute expected) throws IOException {
+        if (expected != null && jsonParser.nextFieldName(expected.serializedName())) {
+            return expected;
         }
-        if (fn.getTextBase64() != null) {
-            vb.setStringCustomAttributeValue(TEXT_BASE64, fn.getTextBase64());
+        if (expected == null) {
+            jsonParser.nextToken();
         }
+        return jsonParser.currentToken() == JsonToken.FIELD_NAME ? VulnAttribute.get(jsonParser.getCurrentName()) : null;
+    }
 
-        // set date custom attributes
-        if (fn.getLastChangeDate() != null) {
-            vb.setDateCustomAttributeValue(LAST_CHANGE_DATE, fn.getLastChangeDate());
-        }
-        if (fn.getArtifactBuildDate() != null) {
-            vb.setDateCustomAttributeValue(ARTIFACT_BUILD_DATE, fn.getArtifactBuildDate());
-        }
+    void populateVulnerability(final StaticVulnerabilityBuilder vb, final Finding fn) {
+        FindingCodec.populate(vb, fn);
     }
 
 
-    private static <T> void parseJson(final ScanData scanData, final T object, final Callback<T> fn) throws ScanParsingException, IOException {
+    private static <T> void parseJson(final ScanData scanData, final InputStream jsonEntry, final T object, final Callback<T> fn) throws ScanParsingException, IOException {
         try (
-                final InputStream content = scanData.getInputStream(x -> x.endsWith(".json"));
-                final JsonParser jsonParser = JSON_FACTORY.createParser(content)
+                final PushbackInputStream content = new PushbackInputStream(jsonEntry, ScanFormat.SIGNATURE_LENGTH);
+                final JsonParser jsonParser = FindingEntryReader.createParser(content)
         ) {
             jsonParser.nextToken();
             assertStartObject(jsonParser);
@@ -314,13 +930,8 @@ public class SampleParserPlugin implements ParserPlugin<CustomVulnAttribute> {
         }
     }
 
-    private void skipChildren(final JsonParser jsonParser) throws IOException {
-        switch (jsonParser.getCurrentToken()) {
-            case START_ARRAY:
-            case START_OBJECT:
-                jsonParser.skipChildren();
-                break;
-        }
+    private static void skipChildren(final JsonParser jsonParser) throws IOException {
+        AttributeReaders.skipChildren(jsonParser);
     }
 
     private interface Callback<T> {
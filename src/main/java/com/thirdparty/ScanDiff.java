@@ -0,0 +1,401 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.thirdparty.FindingDigestSorter.Digest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * <P>Compares the findings of two scan zips by uniqueId: findings added to the new scan, removed from it and modified, with the attributes which changed.
+ * <BR>Scans are read as a stream, each finding is reduced to a {@link Digest} of its uniqueId and hashes of its values, so an unchanged
+ * finding is told apart by comparing one number, whatever its size. Digests of each scan are sorted by {@link FindingDigestSorter}
+ * within the memory limit, spilling sorted runs to temporary files, and the two sorted sequences are merged in one pass.
+ * The summary is printed to the standard output, the optional delta file lists each change as one JSON line, ordered by uniqueId.
+ */
+public class ScanDiff {
+
+    private static final String OPTION_DELTA = "--delta";
+    private static final String OPTION_MEMORY = "--memory";
+    private static final String OPTION_TMP = "--tmp";
+    private static final List<String> OPTIONS = Arrays.asList(OPTION_DELTA, OPTION_MEMORY, OPTION_TMP);
+
+    private static final long MB = 1024 * 1024;
+
+    // hashes of finding attributes other than uniqueId, fields the parser doesn't know share the last hash
+    private static final List<VulnAttribute> ATTRIBUTES = new ArrayList<>(VulnAttribute.findingFields());
+    private static final int OTHER_FIELDS;
+    private static final int ATTRIBUTE_COUNT;
+    private static final int[] ATTRIBUTE_INDEX = new int[VulnAttribute.values().length];
+
+    static {
+        ATTRIBUTES.remove(VulnAttribute.UNIQUE_ID);
+        OTHER_FIELDS = ATTRIBUTES.size();
+        ATTRIBUTE_COUNT = OTHER_FIELDS + 1;
+        Arrays.fill(ATTRIBUTE_INDEX, -1);
+        for (int i = 0; i < ATTRIBUTES.size(); i++) {
+            ATTRIBUTE_INDEX[ATTRIBUTES.get(i).ordinal()] = i;
+        }
+    }
+
+    private final File oldScan;
+    private final File newScan;
+    private final File deltaFile;
+    private final long maxMemory;
+    private final File tmpDir;
+
+    private ScanDiff(final File oldScan, final File newScan, final File deltaFile, final long maxMemory, final File tmpDir) {
+        this.oldScan = oldScan;
+        this.newScan = newScan;
+        this.deltaFile = deltaFile;
+        this.maxMemory = maxMemory;
+        this.tmpDir = tmpDir;
+    }
+
+    public static void main(String[] args) throws IOException {
+        final Map<String, String> options = args.length >= 2 ? ToolOptions.parse(args, 2, OPTIONS::contains) : null;
+        if (options == null) {
+            System.err.println(String.format("Usage:\n" +
+                    "\tjava -cp <class_path> %s <OLD_SCAN_ZIP_NAME> <NEW_SCAN_ZIP_NAME> [" + OPTION_DELTA + " <DELTA_FILE>] [" + OPTION_MEMORY + " <MB>] [" + OPTION_TMP + " <DIRECTORY>]\n" +
+                    "\t<DELTA_FILE> file of added, removed and modified findings, one JSON object per line\n" +
+                    "\t<MB> memory for sorting the findings of each scan, a quarter of the maximal heap size by default, larger scans are sorted in temporary files\n" +
+                    "\t<DIRECTORY> directory of the temporary files, the default temporary directory by default\n"
+                    , ScanDiff.class.getName()));
+            System.exit(1);
+        }
+        final File deltaFile = options.containsKey(OPTION_DELTA) ? new File(options.get(OPTION_DELTA)) : null;
+        if (deltaFile != null && !deltaFile.createNewFile()) {
+            System.err.println(String.format("File %s already exists!", deltaFile.getPath()));
+            System.exit(2);
+        }
+        final long maxMemory = options.containsKey(OPTION_MEMORY) ? Long.parseLong(options.get(OPTION_MEMORY)) * MB : Runtime.getRuntime().maxMemory() / 4;
+        final File tmpDir = options.containsKey(OPTION_TMP) ? new File(options.get(OPTION_TMP)) : null;
+        new ScanDiff(new File(args[0]), new File(args[1]), deltaFile, maxMemory, tmpDir).run();
+    }
+
+    private void run() throws IOException {
+        final long startTime = System.nanoTime();
+        // each scan gets half of the memory, the sorted digests of both are held at the same time
+        try (final FindingDigestSorter oldSorter = new FindingDigestSorter(maxMemory / 2, tmpDir, ATTRIBUTE_COUNT);
+             final FindingDigestSorter newSorter = new FindingDigestSorter(maxMemory / 2, tmpDir, ATTRIBUTE_COUNT)) {
+            final long oldFindings = digest(oldScan, oldSorter);
+            final long newFindings = digest(newScan, newSorter);
+            System.out.println(String.format("Old scan %s: %d findings", oldScan.getPath(), oldFindings));
+            System.out.println(String.format("New scan %s: %d findings", newScan.getPath(), newFindings));
+
+            final Diff diff = new Diff();
+            if (deltaFile != null) {
+                try (final OutputStream out = new FileOutputStream(deltaFile);
+                     final JsonGenerator delta = new JsonFactory().createGenerator(out)) {
+                    delta.setRootValueSeparator(new SerializedString("\n"));
+                    diff.merge(new DistinctSource(oldSorter.sorted()), new DistinctSource(newSorter.sorted()), delta);
+                    if (diff.hasChanges()) {
+                        delta.writeRaw('\n');
+                    }
+                }
+            } else {
+                diff.merge(new DistinctSource(oldSorter.sorted()), new DistinctSource(newSorter.sorted()), null);
+            }
+            diff.print(oldSorter.getRunCount() + newSorter.getRunCount(), (System.nanoTime() - startTime) / 1e9);
+        }
+        if (deltaFile != null) {
+            System.out.println(String.format("Delta file %s successfully created.", deltaFile.getPath()));
+        }
+    }
+
+    /**
+     * Adds digests of all findings of the scan entry and the shards to the sorter
+     *
+     * @return number of findings
+     */
+    private static long digest(final File scanZip, final FindingDigestSorter sorter) throws IOException {
+        try (final ZipFile zipFile = new ZipFile(scanZip)) {
+            long findings = 0;
+            boolean scanEntry = false;
+            for (final Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements(); ) {
+                final ZipEntry entry = entries.nextElement();
+                if (ScanFormat.isScanEntry(entry.getName()) || ScanFormat.isShardEntry(entry.getName())) {
+                    scanEntry |= ScanFormat.isScanEntry(entry.getName());
+                    findings += digestEntry(zipFile, entry, sorter);
+                }
+            }
+            if (!scanEntry) {
+                throw new IOException(String.format("No findings entry in %s", scanZip.getPath()));
+            }
+            return findings;
+        }
+    }
+
+    private static long digestEntry(final ZipFile zipFile, final ZipEntry entry, final FindingDigestSorter sorter) throws IOException {
+        long findings = 0;
+        try (final PushbackInputStream in = new PushbackInputStream(zipFile.getInputStream(entry), ScanFormat.SIGNATURE_LENGTH);
+             final JsonParser jsonParser = ScanFormat.detect(in).createFactory().createParser(in)) {
+            if (jsonParser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException(String.format("Expected object start at %s", jsonParser.getTokenLocation()));
+            }
+            final FindingEntryReader reader = new FindingEntryReader(jsonParser);
+            while (reader.nextObject()) {
+                sorter.add(digestFinding(jsonParser));
+                findings++;
+            }
+        }
+        return findings;
+    }
+
+    /**
+     * Reads the finding at the parser to its digest, values are hashed as they are read, none of them is kept
+     */
+    private static Digest digestFinding(final JsonParser jsonParser) throws IOException {
+        String uniqueId = null;
+        final long[] hashes = new long[ATTRIBUTE_COUNT];
+        while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = jsonParser.getCurrentName();
+            final VulnAttribute vulnAttr = VulnAttribute.get(fieldName);
+            jsonParser.nextToken();
+            if (vulnAttr == VulnAttribute.UNIQUE_ID) {
+                uniqueId = jsonParser.getText();
+                continue;
+            }
+            final int index = vulnAttr == null ? -1 : ATTRIBUTE_INDEX[vulnAttr.ordinal()];
+            if (index >= 0) {
+                hashes[index] = hashValue(jsonParser, vulnAttr);
+            } else {
+                // unknown fields in any order
+                final Hasher hasher = new Hasher();
+                hasher.update(fieldName);
+                hashes[OTHER_FIELDS] += Hasher.mix(hasher.finish() ^ hashValue(jsonParser, null));
+            }
+        }
+        if (uniqueId == null) {
+            throw new IOException(String.format("Missing %s of finding ending at %s", VulnAttribute.UNIQUE_ID.attrName(), jsonParser.getTokenLocation()));
+        }
+        long hash = 0;
+        final int[] attributeHashes = new int[ATTRIBUTE_COUNT];
+        for (int i = 0; i < ATTRIBUTE_COUNT; i++) {
+            if (hashes[i] != 0) {
+                hash += Hasher.mix(hashes[i] + i);
+                // an attribute hash is 0 only if the attribute is absent
+                attributeHashes[i] = (int) (hashes[i] ^ hashes[i] >>> 32) | 1;
+            }
+        }
+        return new Digest(uniqueId, hash, attributeHashes);
+    }
+
+    /**
+     * Hash of the value at the parser, which is left at its last token. Values hash the same in all scan formats: binary values
+     * and base64 text hash to their bytes, floating point numbers of attributes and numbers stored as {@code float} to their {@code float} text.
+     *
+     * @param vulnAttr attribute of the value, {@code null} for unknown fields
+     */
+    private static long hashValue(final JsonParser jsonParser, final VulnAttribute vulnAttr) throws IOException {
+        final Hasher hasher = new Hasher();
+        final JsonToken token = jsonParser.currentToken();
+        if (token == JsonToken.VALUE_EMBEDDED_OBJECT || vulnAttr == VulnAttribute.TEXT_BASE64 && token == JsonToken.VALUE_STRING) {
+            jsonParser.readBinaryValue(hasher);
+            return hasher.finish();
+        }
+        int depth = 0;
+        do {
+            final JsonToken current = jsonParser.currentToken();
+            hasher.write(current.ordinal());
+            if (current.isStructStart()) {
+                depth++;
+            } else if (current.isStructEnd()) {
+                depth--;
+            } else if (current == JsonToken.VALUE_EMBEDDED_OBJECT) {
+                jsonParser.readBinaryValue(hasher);
+            } else if (current == JsonToken.VALUE_NUMBER_FLOAT && (vulnAttr != null || jsonParser.getNumberType() == JsonParser.NumberType.FLOAT)) {
+                // the parser reads floating point attributes as float, Smile and CBOR may store them so
+                hasher.update(Float.toString(jsonParser.getFloatValue()));
+            } else if (current != JsonToken.VALUE_NULL) {
+                hasher.update(jsonParser.getTextCharacters(), jsonParser.getTextOffset(), jsonParser.getTextLength());
+            }
+        } while (depth > 0 && jsonParser.nextToken() != null);
+        return hasher.finish();
+    }
+
+    /**
+     * Sorted digests with one digest per uniqueId, later digests of a duplicate uniqueId are counted and skipped
+     */
+    private static final class DistinctSource {
+        private final FindingDigestSorter.Source source;
+        private Digest next;
+        private long duplicates;
+
+        DistinctSource(final FindingDigestSorter.Source source) throws IOException {
+            this.source = source;
+            this.next = source.next();
+        }
+
+        Digest next() throws IOException {
+            final Digest digest = next;
+            next = source.next();
+            while (digest != null && next != null && next.uniqueId.equals(digest.uniqueId)) {
+                duplicates++;
+                next = source.next();
+            }
+            return digest;
+        }
+    }
+
+    /**
+     * Counts of the merged scans
+     */
+    private static final class Diff {
+        private long added;
+        private long removed;
+        private long modified;
+        private long unchanged;
+        private long oldDuplicates;
+        private long newDuplicates;
+        private final long[] changedAttributes = new long[ATTRIBUTE_COUNT];
+
+        void merge(final DistinctSource oldSource, final DistinctSource newSource, final JsonGenerator delta) throws IOException {
+            Digest oldDigest = oldSource.next();
+            Digest newDigest = newSource.next();
+            while (oldDigest != null || newDigest != null) {
+                final int order = oldDigest == null ? 1 : newDigest == null ? -1 : Digest.BY_UNIQUE_ID.compare(oldDigest, newDigest);
+                if (order < 0) {
+                    removed++;
+                    writeChange(delta, "removed", oldDigest, null);
+                    oldDigest = oldSource.next();
+                } else if (order > 0) {
+                    added++;
+                    writeChange(delta, "added", newDigest, null);
+                    newDigest = newSource.next();
+                } else {
+                    if (oldDigest.hash == newDigest.hash) {
+                        unchanged++;
+                    } else {
+                        modified++;
+                        final List<String> attributes = new ArrayList<>();
+                        for (int i = 0; i < ATTRIBUTE_COUNT; i++) {
+                            if (oldDigest.attributeHashes[i] != newDigest.attributeHashes[i]) {
+                                changedAttributes[i]++;
+                                attributes.add(attributeName(i));
+                            }
+                        }
+                        writeChange(delta, "modified", newDigest, attributes);
+                    }
+                    oldDigest = oldSource.next();
+                    newDigest = newSource.next();
+                }
+            }
+            oldDuplicates = oldSource.duplicates;
+            newDuplicates = newSource.duplicates;
+        }
+
+        boolean hasChanges() {
+            return added + removed + modified > 0;
+        }
+
+        private static void writeChange(final JsonGenerator delta, final String change, final Digest digest, final List<String> attributes) throws IOException {
+            if (delta == null) {
+                return;
+            }
+            delta.writeStartObject();
+            delta.writeStringField("change", change);
+            delta.writeStringField(VulnAttribute.UNIQUE_ID.attrName(), digest.uniqueId);
+            if (attributes != null) {
+                delta.writeArrayFieldStart("attributes");
+                for (final String attribute : attributes) {
+                    delta.writeString(attribute);
+                }
+                delta.writeEndArray();
+            }
+            delta.writeEndObject();
+        }
+
+        void print(final int runs, final double seconds) {
+            System.out.println(String.format("Added %d, removed %d, modified %d, unchanged %d findings", added, removed, modified, unchanged));
+            if (modified > 0) {
+                final StringBuilder attributes = new StringBuilder();
+                for (int i = 0; i < ATTRIBUTE_COUNT; i++) {
+                    if (changedAttributes[i] > 0) {
+                        attributes.append(attributes.length() == 0 ? "" : ", ").append(attributeName(i)).append(' ').append(changedAttributes[i]);
+                    }
+                }
+                System.out.println(String.format("Modified attributes: %s", attributes));
+            }
+            if (oldDuplicates > 0 || newDuplicates > 0) {
+                System.out.println(String.format("Skipped %d old and %d new findings with a uniqueId occurring before in their scan, the first occurrence is compared",
+                        oldDuplicates, newDuplicates));
+            }
+            System.out.println(String.format("Compared in %.3f s, %d sorted runs written to disk", seconds, runs));
+        }
+
+        private static String attributeName(final int index) {
+            return index == OTHER_FIELDS ? "other fields" : ATTRIBUTES.get(index).attrName();
+        }
+    }
+
+    /**
+     * 64-bit hash of characters and bytes fed to it, an {@link OutputStream} so that binary values can be read into it as a stream
+     */
+    private static final class Hasher extends OutputStream {
+        private long hash = 0x9E3779B97F4A7C15L;
+        private long length;
+
+        @Override
+        public void write(final int b) {
+            hash = Long.rotateLeft(hash ^ (b & 0xFF) * 0xC4CEB9FE1A85EC53L, 31) * 0x9E3779B97F4A7C15L;
+            length++;
+        }
+
+        void update(final char[] chars, final int offset, final int count) {
+            for (int i = offset; i < offset + count; i++) {
+                hash = Long.rotateLeft(hash ^ chars[i] * 0xC4CEB9FE1A85EC53L, 31) * 0x9E3779B97F4A7C15L;
+            }
+            length += count;
+        }
+
+        void update(final String text) {
+            update(text.toCharArray(), 0, text.length());
+        }
+
+        /**
+         * @return hash of the input, never 0
+         */
+        long finish() {
+            final long h = mix(hash ^ length);
+            return h == 0 ? 1 : h;
+        }
+
+        /** Finalizer of MurmurHash3 */
+        static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+
+/**
+ * <P>Formats of the scan findings entry.
+ * <BR>{@link #JSON} is a single object with the header fields and the {@code findings} array, {@link #NDJSON} (JSON Lines)
+ * is a header object on the first line followed by one finding object per line, so the entry can be split at new lines
+ * without tokenizing it. {@link #SMILE} and {@link #CBOR} are binary encodings of the {@link #JSON} structure, numbers are
+ * stored in binary and textBase64 values as raw bytes, so reading them takes neither number parsing nor base64 decoding.
+ * <BR>The parser tells the formats apart by the content, the entry name suffix is informative.
+ * <BR>Findings of a scan can be sharded to entries {@code findings-0001.*}, {@code findings-0002.*}, ... besides the scan entry,
+ * each shard has the structure of a scan entry without the header fields.
+ */
+enum ScanFormat {
+    JSON(".json"),
+    NDJSON(".ndjson"),
+    SMILE(".smile") {
+        @Override
+        JsonFactory createFactory() {
+            final SmileFactory factory = new SmileFactory();
+            // raw binary instead of 7-bit encoded textBase64 values, repeated short strings (categories, priorities, ...) are back-referenced
+            factory.disable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT);
+            factory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+            return factory;
+        }
+    },
+    CBOR(".cbor") {
+        @Override
+        JsonFactory createFactory() {
+            final CBORFactory factory = new CBORFactory();
+            // self-describe tag makes the content recognizable
+            factory.enable(CBORGenerator.Feature.WRITE_TYPE_HEADER);
+            return factory;
+        }
+    };
+
+    private static final String SHARD_ENTRY_PREFIX = "findings-";
+
+    /** Number of bytes at the start of the content {@link #detect(PushbackInputStream)} looks at */
+    static final int SIGNATURE_LENGTH = 3;
+
+    private final String entrySuffix;
+
+    ScanFormat(final String entrySuffix) {
+        this.entrySuffix = entrySuffix;
+    }
+
+    String getEntrySuffix() {
+        return entrySuffix;
+    }
+
+    /** Whether the format is text, which can be split into findings without tokenizing it */
+    boolean isText() {
+        return this == JSON || this == NDJSON;
+    }
+
+    /** Factory of parsers and generators of the format */
+    JsonFactory createFactory() {
+        return new JsonFactory();
+    }
+
+    /**
+     * Encoding of the content by its first bytes, which are pushed back to the stream.
+     *
+     * @param in stream with a push back buffer of at least {@link #SIGNATURE_LENGTH} bytes
+     * @return {@link #SMILE}, {@link #CBOR} or {@link #JSON} for JSON text, whether structured as JSON or NDJSON
+     */
+    static ScanFormat detect(final PushbackInputStream in) throws IOException {
+        final byte[] head = new byte[SIGNATURE_LENGTH];
+        int length = 0;
+        int read;
+        while (length < head.length && (read = in.read(head, length, head.length - length)) > 0) {
+            length += read;
+        }
+        in.unread(head, 0, length);
+        if (length == SIGNATURE_LENGTH && head[0] == ':' && head[1] == ')' && head[2] == '\n') {
+            return SMILE;
+        }
+        // self-describe tag or a map, neither can start JSON text
+        if (length == SIGNATURE_LENGTH && (head[0] & 0xFF) == 0xD9 && (head[1] & 0xFF) == 0xD9 && (head[2] & 0xFF) == 0xF7
+                || length > 0 && (head[0] & 0xE0) == 0xA0) {
+            return CBOR;
+        }
+        return JSON;
+    }
+
+    /** Name of the shard entry of the given number, counted from 1 */
+    String getShardEntryName(final int shard) {
+        return String.format("%s%04d%s", SHARD_ENTRY_PREFIX, shard, entrySuffix);
+    }
+
+    /** Whether the zip entry of the given name contains the scan header and findings in any of the formats */
+    static boolean isScanEntry(final String entryName) {
+        return hasSuffix(entryName) && !isShardEntry(entryName);
+    }
+
+    /** Whether the zip entry of the given name is a findings shard in any of the formats */
+    static boolean isShardEntry(final String entryName) {
+        return hasSuffix(entryName) && fileName(entryName).startsWith(SHARD_ENTRY_PREFIX);
+    }
+
+    /** Whether the zip entry of the given name is the findings shard of the given number in any of the formats */
+    static boolean isShardEntry(final String entryName, final int shard) {
+        return hasSuffix(entryName) && fileName(entryName).startsWith(String.format("%s%04d.", SHARD_ENTRY_PREFIX, shard));
+    }
+
+    private static boolean hasSuffix(final String entryName) {
+        for (final ScanFormat format : values()) {
+            if (entryName.endsWith(format.entrySuffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String fileName(final String entryName) {
+        return entryName.substring(entryName.lastIndexOf('/') + 1);
+    }
+
+    static ScanFormat parse(final String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Unknown scan format %s", name), e);
+        }
+    }
+}
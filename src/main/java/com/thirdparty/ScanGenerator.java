@@ -15,6 +15,7 @@ package com.thirdparty;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.thirdparty.scan.DateDeserializer;
 import com.thirdparty.scan.DateSerializer;
@@ -22,35 +23,44 @@ import com.thirdparty.scan.Finding;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.io.PrintStream;
 import java.net.Inet4Address;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import static com.thirdparty.VulnAttribute.*;
 
 public class ScanGenerator {
 
     private static final DateSerializer DATE_SERIALIZER = new DateSerializer();
+    // fields of each finding in the order the parser expects them
+    private static final VulnAttribute[] FINDING_FIELDS = VulnAttribute.findingFields().toArray(new VulnAttribute[0]);
     static final DateDeserializer DATE_DESERIALIZER = new DateDeserializer();
     private static final Charset charset = StandardCharsets.US_ASCII;
 
@@ -66,79 +76,307 @@ public class ScanGenerator {
         final static int LENGTH = values().length;
     };
 
+    // scan.info entry and the keys the generator writes into it besides the engineType.
+    // Header fields are stored under their VulnAttribute names so the parser can read them without touching the JSON entry.
+    static final String SCAN_INFO_ENTRY = "scan.info";
+    static final String SCAN_INFO_FINDING_COUNT = "findingCount";
+    static final String SCAN_INFO_JSON_ENTRY = "jsonEntry";
+    static final String SCAN_INFO_JSON_ENTRY_SIZE = "jsonEntrySize";
+    static final String SCAN_INFO_JSON_ENTRY_COMPRESSED_SIZE = "jsonEntryCompressedSize";
+    static final String SCAN_INFO_SHARD_COUNT = "shardCount";
+    // sizes of each shard entry, under the key followed by the shard number, e.g. shardEntrySize.1
+    static final String SCAN_INFO_SHARD_ENTRY_SIZE = "shardEntrySize.";
+    static final String SCAN_INFO_SHARD_ENTRY_COMPRESSED_SIZE = "shardEntryCompressedSize.";
+
     private static final String SCAN_TYPE_FIXED = "fixed";
     private static final String SCAN_TYPE_RANDOM = "random";
-
-    private static String scanType;
-
-    private final Random random;
+    private static final String COMMAND_FIT = "fit";
+    private static final String COMMAND_SPLIT = "split";
+    private static final String COMMAND_MERGE = "merge";
+
+    private static final String OPTION_THREADS = "--threads";
+    private static final String OPTION_SEED = "--seed";
+    private static final String OPTION_COMPRESSION = "--compression";
+    private static final String OPTION_PROFILE = "--profile";
+    private static final String OPTION_FORMAT = "--format";
+    private static final String OPTION_SHARDS = "--shards";
+    private static final String OPTION_FINDINGS = "--findings";
+    private static final String OPTION_SIZE = "--size";
+    private static final List<String> OPTIONS = Arrays.asList(OPTION_THREADS, OPTION_SEED, OPTION_COMPRESSION, OPTION_PROFILE, OPTION_FORMAT, OPTION_SHARDS,
+            OPTION_FINDINGS, OPTION_SIZE);
+
+    // output file name of the standard output
+    private static final String STANDARD_OUTPUT = "-";
+
+    private static final long MB = 1024 * 1024;
+
+    // time of a scan generated with a given seed, so that the seed reproduces the scan byte for byte
+    private static final Instant SEEDED_NOW = Instant.parse(FixedSampleScan.SCAN_DATE);
+
+    // findings serialized by a worker thread at once, sized so that a chunk stays within a few megabytes
+    private static final int MAX_CHUNK_FINDINGS = 1024;
+    private static final int MAX_CHUNK_BYTES = 4 * 1024 * 1024;
+
+    private final String scanType;
+    private final long seed;
     private final File outputFile;
     private int issueCount;
     private final int categoryCount;
     private final int longTextSize;
+    private final boolean seeded;
     private final Instant now;
-
-    private ScanGenerator(final Random random, final File outputFile, final int issueCount, final int categoryCount, final int longTextSize, final Instant now) {
-        this.random = random;
+    private int threads = 1;
+    private ZipStreamWriter.Compression compression = ZipStreamWriter.Compression.DEFAULT;
+    private ScanFormat format = ScanFormat.JSON;
+    private int shards;
+    private WorkloadProfile profile = WorkloadProfile.uniform();
+    // cumulative distributions of the profile, null when values are uniformly distributed
+    private double[] categoryDistribution;
+    private double[] priorityDistribution;
+    private double[] statusDistribution;
+
+    /**
+     * @param seeded whether the seed was given, the scan date, host name and dates of findings are then fixed as well
+     */
+    private ScanGenerator(final String scanType, final long seed, final boolean seeded, final File outputFile, final int issueCount, final int categoryCount,
+                          final int longTextSize) {
+        this.scanType = scanType;
+        // findings draw from their own generators derived from this seed and their index, so they can be created in any order
+        this.seed = seed;
+        this.seeded = seeded;
         this.outputFile = outputFile;
         this.issueCount = issueCount;
         this.categoryCount = categoryCount;
         this.longTextSize = longTextSize;
-        this.now = now;
+        this.now = seeded ? SEEDED_NOW : Instant.now();
+    }
+
+    private ScanGenerator(final File outputFile) {
+        this(SCAN_TYPE_FIXED, 0, false, outputFile, 0, 0, 0);
+    }
+
+    /**
+     * Generator of a random scan which is not written to a file but to a stream passed to {@link #write(OutputStream)}
+     */
+    static ScanGenerator randomScanGenerator(final long seed, final int issueCount, final int categoryCount, final int longTextSize) {
+        return new ScanGenerator(SCAN_TYPE_RANDOM, seed, true, null, issueCount, categoryCount, longTextSize);
+    }
+
+    /**
+     * Number of threads generating and serializing findings of a random scan, the scan content doesn't depend on it
+     */
+    void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Compression of the scan zip entries, with more than one thread deflated entries are compressed in parallel blocks
+     */
+    void setCompression(final ZipStreamWriter.Compression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Format of the findings entry
+     */
+    void setFormat(final ScanFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Number of findings shard entries, 0 keeps all findings in the scan entry
+     */
+    void setShards(final int shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Distributions of values of random findings, the uniform profile keeps the output of a seed unchanged
+     */
+    void setProfile(final WorkloadProfile profile) {
+        this.profile = profile;
+        this.categoryDistribution = profile.categoryDistribution(categoryCount);
+        this.priorityDistribution = profile.priorityDistribution();
+        this.statusDistribution = profile.statusDistribution();
     }
 
-    private ScanGenerator(final Random random, final File outputFile) {
-        this(random, outputFile, 0, 0, 0, null);
+    private int getTextSizeMedian() {
+        return profile.textSizeMedian(longTextSize);
     }
 
-    private static boolean isScanRandom() {
+    private boolean isScanRandom() {
         return SCAN_TYPE_RANDOM.equals(scanType);
     }
 
-    private static boolean isScanFixed() {
+    private boolean isScanFixed() {
         return SCAN_TYPE_FIXED.equals(scanType);
     }
 
-    public static void main(String[] args) throws NoSuchAlgorithmException, IOException, InterruptedException {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // positional arguments are followed by options
+        final int positional = ToolOptions.countPositional(args);
+        final Map<String, String> options = ToolOptions.parse(args, positional,
+                option -> OPTIONS.contains(option) || WorkloadProfile.KEYS.contains(option.substring(2)));
+
+        if (options != null && positional == 3 && COMMAND_FIT.equalsIgnoreCase(args[0]) && options.isEmpty()) {
+            fit(new File(args[1]), new File(args[2]));
+            return;
+        }
+        if (options != null && positional == 3 && COMMAND_SPLIT.equalsIgnoreCase(args[0])
+                && (options.containsKey(OPTION_FINDINGS) || options.containsKey(OPTION_SIZE))) {
+            split(new File(args[1]), args[2], options);
+            return;
+        }
+        if (options != null && positional >= 3 && COMMAND_MERGE.equalsIgnoreCase(args[0])) {
+            final List<File> scanZips = new ArrayList<>();
+            for (int i = 2; i < positional; i++) {
+                scanZips.add(new File(args[i]));
+            }
+            merge(scanZips, new File(args[1]), options);
+            return;
+        }
+
         boolean argsOk = false;
-        if ((args.length == 5) || (args.length == 2)) {
+        String scanType = null;
+        if (options != null && ((positional == 5) || (positional == 2))) {
             scanType = args[0].toLowerCase();
-            if (isScanRandom() || isScanFixed()) {
+            if (SCAN_TYPE_RANDOM.equals(scanType) || SCAN_TYPE_FIXED.equals(scanType)) {
                 argsOk = true;
             }
         }
         if (!argsOk) {
             System.err.println(String.format("Usage:\n" +
-                    "\tjava -cp <class_path> %s " + SCAN_TYPE_FIXED + " <OUTPUT_SCAN_ZIP_NAME>\n" +
-                    "\tjava -cp <class_path> %s " + SCAN_TYPE_RANDOM + " <OUTPUT_SCAN_ZIP_NAME> <ISSUE_COUNT> <CATEGORY_COUNT> <LONG_TEXT_SIZE>\n"
-                    , ScanGenerator.class.getName(), ScanGenerator.class.getName()));
+                    "\tjava -cp <class_path> %s " + SCAN_TYPE_FIXED + " <OUTPUT_SCAN_ZIP_NAME> [" + OPTION_COMPRESSION + " <COMPRESSION>] [" + OPTION_FORMAT + " <FORMAT>] [" + OPTION_SHARDS + " <SHARDS>]\n" +
+                    "\tjava -cp <class_path> %s " + SCAN_TYPE_RANDOM + " <OUTPUT_SCAN_ZIP_NAME> <ISSUE_COUNT> <CATEGORY_COUNT> <LONG_TEXT_SIZE> [" + OPTION_THREADS + " <THREADS>] [" + OPTION_SEED + " <SEED>] [" + OPTION_COMPRESSION + " <COMPRESSION>] [" + OPTION_FORMAT + " <FORMAT>] [" + OPTION_SHARDS + " <SHARDS>] [" + OPTION_PROFILE + " <PROFILE>] [--<PROFILE_KEY> <VALUE>]...\n" +
+                    "\tjava -cp <class_path> %s " + COMMAND_FIT + " <SCAN_ZIP_NAME> <OUTPUT_PROFILE_FILE>\n" +
+                    "\tjava -cp <class_path> %s " + COMMAND_SPLIT + " <SCAN_ZIP_NAME> <OUTPUT_PART_PREFIX> [" + OPTION_FINDINGS + " <FINDINGS>] [" + OPTION_SIZE + " <MB>] [" + OPTION_THREADS + " <THREADS>] [" + OPTION_COMPRESSION + " <COMPRESSION>] [" + OPTION_FORMAT + " <FORMAT>]\n" +
+                    "\tjava -cp <class_path> %s " + COMMAND_MERGE + " <OUTPUT_SCAN_ZIP_NAME> <SCAN_ZIP_NAME>... [" + OPTION_THREADS + " <THREADS>] [" + OPTION_COMPRESSION + " <COMPRESSION>] [" + OPTION_FORMAT + " <FORMAT>]\n" +
+                    "\t<OUTPUT_SCAN_ZIP_NAME> " + STANDARD_OUTPUT + " writes the scan to the standard output, an existing named pipe is written to as well\n" +
+                    "\t<COMPRESSION> stored or deflate[:<LEVEL>], default deflate\n" +
+                    "\t<FORMAT> json (default), ndjson, smile or cbor\n" +
+                    "\t<PROFILE> " + WorkloadProfile.UNIFORM + " (default), " + WorkloadProfile.REALISTIC + " or a properties file, <PROFILE_KEY> one of " + WorkloadProfile.KEYS + "\n" +
+                    "\t<OUTPUT_PART_PREFIX> parts are written to <OUTPUT_PART_PREFIX>-0001.zip, <OUTPUT_PART_PREFIX>-0002.zip, ..., each with at most <FINDINGS> findings and at most <MB> megabytes, at least one of the limits must be given\n"
+                    , ScanGenerator.class.getName(), ScanGenerator.class.getName(), ScanGenerator.class.getName(), ScanGenerator.class.getName(), ScanGenerator.class.getName()));
             System.exit(1);
         }
 
         ScanGenerator scanGenerator;
-        if (isScanFixed()) {
-            scanGenerator = new ScanGenerator(SecureRandom.getInstanceStrong(), new File(args[1]));
+        if (SCAN_TYPE_FIXED.equals(scanType)) {
+            scanGenerator = new ScanGenerator(new File(args[1]));
         } else {
-            scanGenerator = new ScanGenerator(SecureRandom.getInstanceStrong(), new File(args[1]), Integer.valueOf(args[2]), Integer.valueOf(args[3]), Integer.valueOf(args[4]), Instant.now());
+            // the same seed reproduces the same findings, a seed which is not given is printed so that the scan can be generated again
+            final boolean seedGiven = options.containsKey(OPTION_SEED);
+            final long seed = seedGiven ? Long.parseLong(options.get(OPTION_SEED)) : new SecureRandom().nextLong();
+            scanGenerator = new ScanGenerator(scanType, seed, seedGiven, new File(args[1]), Integer.valueOf(args[2]), Integer.valueOf(args[3]), Integer.valueOf(args[4]));
+            if (!seedGiven) {
+                scanGenerator.console().println(String.format("Using seed %d", seed));
+            }
+            final Properties profileOverrides = new Properties();
+            for (final String key : WorkloadProfile.KEYS) {
+                if (options.containsKey("--" + key)) {
+                    profileOverrides.setProperty(key, options.get("--" + key));
+                }
+            }
+            scanGenerator.setProfile(WorkloadProfile.load(options.get(OPTION_PROFILE), profileOverrides));
+        }
+        if (options.containsKey(OPTION_THREADS)) {
+            scanGenerator.setThreads(Integer.valueOf(options.get(OPTION_THREADS)));
+        }
+        if (options.containsKey(OPTION_COMPRESSION)) {
+            scanGenerator.setCompression(ZipStreamWriter.Compression.parse(options.get(OPTION_COMPRESSION)));
+        }
+        if (options.containsKey(OPTION_FORMAT)) {
+            scanGenerator.setFormat(ScanFormat.parse(options.get(OPTION_FORMAT)));
+        }
+        if (options.containsKey(OPTION_SHARDS)) {
+            scanGenerator.setShards(Integer.valueOf(options.get(OPTION_SHARDS)));
         }
         scanGenerator.write();
     }
 
+    /**
+     * Writes the profile of the scan findings and prints a command generating a larger scan of the same shape
+     */
+    private static void fit(final File scanZip, final File profileFile) throws IOException {
+        final WorkloadProfile.Fit fit = WorkloadProfile.fit(scanZip);
+        if (!profileFile.createNewFile()) {
+            System.err.println(String.format("File %s already exists!", profileFile.getPath()));
+            System.exit(2);
+        }
+        final Properties profileProps = fit.toProperties();
+        try (final OutputStream out = new FileOutputStream(profileFile)) {
+            profileProps.store(out, String.format("Workload profile fitted to %d findings of %s", fit.getFindingCount(), scanZip.getPath()));
+        }
+        System.out.println(String.format("Profile file %s successfully created.", profileFile.getPath()));
+        System.out.println(String.format("Scan 10 times larger: java -cp <class_path> %s %s <OUTPUT_SCAN_ZIP_NAME> %d %d %s %s %s",
+                ScanGenerator.class.getName(), SCAN_TYPE_RANDOM, fit.getFindingCount() * 10L, Math.max(1, fit.getCategoryCount()),
+                profileProps.getProperty(WorkloadProfile.TEXT_SIZE_MEDIAN, "0"), OPTION_PROFILE, profileFile.getPath()));
+    }
+
+    /**
+     * Writes the findings of the scan to parts of limited finding count and size, in the format of the scan unless the options say otherwise
+     */
+    private static void split(final File scanZip, final String partPrefix, final Map<String, String> options) throws IOException {
+        final long maxFindings = options.containsKey(OPTION_FINDINGS) ? Long.parseLong(options.get(OPTION_FINDINGS)) : Long.MAX_VALUE;
+        final long maxSize = options.containsKey(OPTION_SIZE) ? (long) (Double.parseDouble(options.get(OPTION_SIZE)) * MB) : Long.MAX_VALUE;
+        if (maxFindings < 1 || maxSize < 1) {
+            throw new IllegalArgumentException(String.format("Part limits must be positive: %s %s", OPTION_FINDINGS, OPTION_SIZE));
+        }
+        for (final ScanRepacker.Written part : repacker(options).split(scanZip, partPrefix, maxFindings, maxSize)) {
+            System.out.println(String.format("Scan file %s with %d findings successfully created.", part.getFile().getPath(), part.getFindingCount()));
+        }
+    }
+
+    /**
+     * Writes the findings of the scans to one scan with the header of the first one
+     */
+    private static void merge(final List<File> scanZips, final File outputFile, final Map<String, String> options) throws IOException {
+        if (outputFile.exists()) {
+            System.err.println(String.format("File %s already exists!", outputFile.getPath()));
+            System.exit(2);
+        }
+        final ScanRepacker.Written merged = repacker(options).merge(scanZips, outputFile);
+        System.out.println(String.format("Scan file %s with %d findings successfully created.", merged.getFile().getPath(), merged.getFindingCount()));
+    }
+
+    private static ScanRepacker repacker(final Map<String, String> options) {
+        return new ScanRepacker(
+                options.containsKey(OPTION_COMPRESSION) ? ZipStreamWriter.Compression.parse(options.get(OPTION_COMPRESSION)) : ZipStreamWriter.Compression.DEFAULT,
+                options.containsKey(OPTION_THREADS) ? Integer.valueOf(options.get(OPTION_THREADS)) : 1,
+                options.containsKey(OPTION_FORMAT) ? ScanFormat.parse(options.get(OPTION_FORMAT)) : null);
+    }
+
+    private boolean isStandardOutput() {
+        return STANDARD_OUTPUT.equals(outputFile.getPath());
+    }
+
+    /**
+     * Stream for messages, it must not be mixed with the scan written to the standard output
+     */
+    private PrintStream console() {
+        return isStandardOutput() ? System.err : System.out;
+    }
+
     private void write() throws IOException, InterruptedException {
+        if (isStandardOutput()) {
+            write(new FileOutputStream(FileDescriptor.out));
+            console().println("Scan successfully written to the standard output.");
+            return;
+        }
+        if (outputFile.exists() && !outputFile.isFile()) {
+            // named pipe or a device, e.g. the input of an upload tool, is neither created nor deleted
+            try (final OutputStream out = new FileOutputStream(outputFile)) {
+                write(out);
+            }
+            console().println(String.format("Scan successfully written to %s.", outputFile.getPath()));
+            return;
+        }
         if (!outputFile.createNewFile()) {
             System.err.println(String.format("File %s already exists!", outputFile.getPath()));
             System.exit(2);
         }
-        try (
-            final OutputStream out = new FileOutputStream(outputFile);
-            final ZipOutputStream zipOut = new ZipOutputStream(out)
-        ) {
-            writeScanInfo("SAMPLE", zipOut);
-            if (isScanFixed()) {
-                writeScan(zipOut, FixedSampleScan.FIXED_FINDINGS::get, FixedSampleScan.FIXED_FINDINGS.size());
-            } else {
-                writeScan(zipOut, this::generateFinding, issueCount);
-            }
+        try (final OutputStream out = new FileOutputStream(outputFile)) {
+            write(out);
         } catch (final Exception e) {
             try {
                 Files.delete(outputFile.toPath());
@@ -150,160 +388,406 @@ public class ScanGenerator {
         System.out.println(String.format("Scan file %s successfully created.", outputFile.getPath()));
     }
 
-    private static void writeScanInfo(final String engineType, final ZipOutputStream zipOut) throws IOException {
-        final Properties scanInfoProps = new Properties();
+    void write(final OutputStream out) throws IOException, InterruptedException {
+        // entry times of a seeded scan don't depend on the time zone either
+        final LocalDateTime entryTime = seeded ? LocalDateTime.ofInstant(now, ZoneOffset.UTC) : LocalDateTime.now();
+        try (final ZipStreamWriter zipOut = new ZipStreamWriter(out, compression, threads, entryTime)) {
+            final Properties scanInfoProps = new Properties();
+            if (isScanFixed()) {
+                writeScan(zipOut, FixedSampleScan.FIXED_FINDINGS::get, FixedSampleScan.FIXED_FINDINGS.size(), scanInfoProps);
+            } else {
+                writeScan(zipOut, this::generateFinding, issueCount, scanInfoProps);
+            }
+            // scan.info goes last, when the header fields and entry sizes are known
+            writeScanInfo("SAMPLE", scanInfoProps, zipOut);
+        }
+    }
+
+    static void writeScanInfo(final String engineType, final Properties scanInfoProps, final ZipStreamWriter zipOut) throws IOException {
         scanInfoProps.put("engineType", engineType);
         try (final ByteArrayOutputStream byteOut = new ByteArrayOutputStream()) {
-            scanInfoProps.store(byteOut, "scan.info");
-            zipOut.putNextEntry(new ZipEntry("scan.info"));
-            zipOut.write(byteOut.toByteArray());
+            scanInfoProps.store(byteOut, SCAN_INFO_ENTRY);
+            // the second comment line is the time of storing, it is left out so that the same scan gives the same bytes
+            final String text = new String(byteOut.toByteArray(), StandardCharsets.ISO_8859_1);
+            final int dateStart = text.indexOf('\n') + 1;
+            final int dateEnd = text.indexOf('\n', dateStart) + 1;
+            zipOut.putNextEntry(SCAN_INFO_ENTRY).write((text.substring(0, dateStart) + text.substring(dateEnd)).getBytes(StandardCharsets.ISO_8859_1));
         }
     }
 
-    private void writeScan(final ZipOutputStream zipOut, Function<Integer, Finding> getFinding, Integer findingCount
-            ) throws IOException, InterruptedException {
+    private void writeScan(final ZipStreamWriter zipOut, Function<Integer, Finding> getFinding, Integer findingCount,
+                           final Properties scanInfoProps) throws IOException, InterruptedException {
 
         final long startTime = System.currentTimeMillis();
-        final String jsonFileName = isScanFixed() ?   "fixed-sample-scan.json" : "random-sample-scan.json";
-        zipOut.putNextEntry(new ZipEntry(jsonFileName));
-        try (final JsonGenerator jsonGenerator = new JsonFactory().createGenerator(zipOut)) {
-            if (isScanFixed()) {
+        final String jsonFileName = (isScanFixed() ?   "fixed-sample-scan" : "random-sample-scan") + format.getEntrySuffix();
+        final OutputStream jsonEntry = zipOut.putNextEntry(jsonFileName);
+        try (final JsonGenerator jsonGenerator = format.createFactory().createGenerator(jsonEntry)) {
+            if (isScanFixed() && format == ScanFormat.JSON) {
                 jsonGenerator.setPrettyPrinter(new DefaultPrettyPrinter());
             }
             jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
             jsonGenerator.writeStartObject();
             if (isScanFixed()) {
-                jsonGenerator.writeStringField(ENGINE_VERSION.attrName(), FixedSampleScan.ENGINE_VERSION);
-                jsonGenerator.writeStringField(SCAN_DATE.attrName(), FixedSampleScan.SCAN_DATE);
-                jsonGenerator.writeStringField(BUILD_SERVER.attrName(), FixedSampleScan.BUILD_SERVER);
+                scanInfoProps.put(ENGINE_VERSION.attrName(), FixedSampleScan.ENGINE_VERSION);
+                scanInfoProps.put(SCAN_DATE.attrName(), FixedSampleScan.SCAN_DATE);
+                scanInfoProps.put(BUILD_SERVER.attrName(), FixedSampleScan.BUILD_SERVER);
             } else {
-                jsonGenerator.writeStringField(ENGINE_VERSION.attrName(), "1.0-SNAPSHOT");
-                jsonGenerator.writeStringField(SCAN_DATE.attrName(), DATE_SERIALIZER.convert(new Date()));
-                jsonGenerator.writeStringField(BUILD_SERVER.attrName(), Inet4Address.getLocalHost().getHostName());
+                scanInfoProps.put(ENGINE_VERSION.attrName(), "1.0-SNAPSHOT");
+                scanInfoProps.put(SCAN_DATE.attrName(), DATE_SERIALIZER.convert(Date.from(now)));
+                scanInfoProps.put(BUILD_SERVER.attrName(), seeded ? FixedSampleScan.BUILD_SERVER : Inet4Address.getLocalHost().getHostName());
+            }
+            jsonGenerator.writeStringField(ENGINE_VERSION.attrName(), scanInfoProps.getProperty(ENGINE_VERSION.attrName()));
+            jsonGenerator.writeStringField(SCAN_DATE.attrName(), scanInfoProps.getProperty(SCAN_DATE.attrName()));
+            jsonGenerator.writeStringField(BUILD_SERVER.attrName(), scanInfoProps.getProperty(BUILD_SERVER.attrName()));
+            // findings of a sharded scan are all in the shard entries
+            writeFindingsAndEnd(jsonGenerator, jsonEntry, getFinding, shards > 0 ? 0 : findingCount,
+                    () -> writeElapsed(jsonGenerator, startTime, scanInfoProps));
+        }
+        zipOut.closeEntry();
+        scanInfoProps.put(SCAN_INFO_FINDING_COUNT, String.valueOf(findingCount));
+        scanInfoProps.put(SCAN_INFO_JSON_ENTRY, jsonFileName);
+        scanInfoProps.put(SCAN_INFO_JSON_ENTRY_SIZE, String.valueOf(zipOut.getEntrySize()));
+        scanInfoProps.put(SCAN_INFO_JSON_ENTRY_COMPRESSED_SIZE, String.valueOf(zipOut.getEntryCompressedSize()));
+
+        for (int shard = 1; shard <= shards; shard++) {
+            // contiguous ranges of findings of (nearly) equal size
+            final int from = (int) ((long) findingCount * (shard - 1) / shards);
+            final int to = (int) ((long) findingCount * shard / shards);
+            final OutputStream shardEntry = zipOut.putNextEntry(format.getShardEntryName(shard));
+            try (final JsonGenerator jsonGenerator = format.createFactory().createGenerator(shardEntry)) {
+                jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                jsonGenerator.writeStartObject();
+                writeFindingsAndEnd(jsonGenerator, shardEntry, i -> getFinding.apply(from + i), to - from, () -> { });
             }
+            zipOut.closeEntry();
+            scanInfoProps.put(SCAN_INFO_SHARD_ENTRY_SIZE + shard, String.valueOf(zipOut.getEntrySize()));
+            scanInfoProps.put(SCAN_INFO_SHARD_ENTRY_COMPRESSED_SIZE + shard, String.valueOf(zipOut.getEntryCompressedSize()));
+        }
+        if (shards > 0) {
+            scanInfoProps.put(SCAN_INFO_SHARD_COUNT, String.valueOf(shards));
+        }
+    }
+
+    /**
+     * Writes the findings into the started object and ends the content. Trailer fields follow the findings array of JSON content,
+     * NDJSON header line ends with them instead as the findings follow it.
+     */
+    private void writeFindingsAndEnd(final JsonGenerator jsonGenerator, final OutputStream entry, final Function<Integer, Finding> getFinding,
+                                     final int findingCount, final FieldWriter trailer) throws IOException, InterruptedException {
+        if (format == ScanFormat.NDJSON) {
+            trailer.write();
+            jsonGenerator.writeEndObject();
+            jsonGenerator.setRootValueSeparator(new SerializedString("\n"));
+            writeFindings(jsonGenerator, entry, getFinding, findingCount);
+            jsonGenerator.writeRaw('\n');
+        } else {
             jsonGenerator.writeArrayFieldStart("findings");
+            writeFindings(jsonGenerator, entry, getFinding, findingCount);
+            jsonGenerator.writeEndArray();
+            trailer.write();
+            jsonGenerator.writeEndObject();
+        }
+    }
+
+    private interface FieldWriter {
+        void write() throws IOException;
+    }
+
+    private void writeFindings(final JsonGenerator jsonGenerator, final OutputStream jsonEntry, final Function<Integer, Finding> getFinding,
+                               final int findingCount) throws IOException, InterruptedException {
+        // binary content refers to the strings written before, so it can't be serialized in independent chunks
+        if (isScanRandom() && threads > 1 && format.isText()) {
+            if (format == ScanFormat.NDJSON) {
+                // chunks are written past the generator, which would otherwise separate the first finding from the header line
+                jsonGenerator.writeRaw('\n');
+            }
+            jsonGenerator.flush();
+            writeFindingsParallel(jsonEntry, getFinding, findingCount);
+        } else {
             int i;
             for (i = 0; i < findingCount; i++) {
                 writeFinding(jsonGenerator, getFinding.apply(i));
             }
-            jsonGenerator.writeEndArray();
-            // NB: this value should be in seconds, but we always want some non-zero value, so we use millis
-            if (isScanFixed()) {
-                jsonGenerator.writeNumberField(ELAPSED.attrName(), (System.currentTimeMillis() - startTime));
-            } else {
-                jsonGenerator.writeNumberField(ELAPSED.attrName(), FixedSampleScan.ELAPSED);
+        }
+    }
+
+    private void writeElapsed(final JsonGenerator jsonGenerator, final long startTime, final Properties scanInfoProps) throws IOException {
+        // NB: this value should be in seconds, but we always want some non-zero value, so we use millis
+        final long elapsed;
+        if (isScanFixed()) {
+            elapsed = System.currentTimeMillis() - startTime;
+        } else {
+            elapsed = FixedSampleScan.ELAPSED;
+        }
+        jsonGenerator.writeNumberField(ELAPSED.attrName(), elapsed);
+        scanInfoProps.put(ELAPSED.attrName(), String.valueOf(elapsed));
+    }
+
+    /**
+     * Generates and serializes chunks of findings on worker threads, the chunks are written to the output in the order of findings.
+     * Chunk content is exactly what a single generator writes into the findings array, so the output doesn't depend on the number of threads.
+     */
+    private void writeFindingsParallel(final OutputStream out, final Function<Integer, Finding> getFinding, final int findingCount) throws IOException, InterruptedException {
+        final int chunkFindings = Math.max(1, Math.min(MAX_CHUNK_FINDINGS, MAX_CHUNK_BYTES / (getTextSizeMedian() * 4 / 3 + 1024)));
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            final Thread t = new Thread(r, "scan-generator");
+            t.setDaemon(true);
+            return t;
+        });
+        // bounded number of chunks waiting to be written, so memory doesn't depend on the finding count
+        final Deque<Future<byte[]>> window = new ArrayDeque<>();
+        final int maxWindow = threads * 4;
+        try {
+            boolean first = true;
+            for (int start = 0; start < findingCount; start += chunkFindings) {
+                final int from = start;
+                final int to = Math.min(findingCount, start + chunkFindings);
+                window.addLast(executor.submit(() -> writeFindingChunk(getFinding, from, to)));
+                if (window.size() >= maxWindow) {
+                    writeChunk(out, window.removeFirst(), first ? -1 : findingSeparator());
+                    first = false;
+                }
             }
-            jsonGenerator.writeEndObject();
+            while (!window.isEmpty()) {
+                writeChunk(out, window.removeFirst(), first ? -1 : findingSeparator());
+                first = false;
+            }
+        } finally {
+            executor.shutdownNow();
         }
     }
 
+    private byte[] writeFindingChunk(final Function<Integer, Finding> getFinding, final int from, final int to) throws IOException {
+        final ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        try (final JsonGenerator jsonGenerator = new JsonFactory().createGenerator(chunk)) {
+            // findings are root values here, separated the same way as array elements or lines
+            jsonGenerator.setRootValueSeparator(new SerializedString(String.valueOf((char) findingSeparator())));
+            for (int i = from; i < to; i++) {
+                writeFinding(jsonGenerator, getFinding.apply(i));
+            }
+        }
+        return chunk.toByteArray();
+    }
+
+    private int findingSeparator() {
+        return format == ScanFormat.NDJSON ? '\n' : ',';
+    }
+
+    /**
+     * Writes the chunk preceded by the separator, if it is not negative
+     */
+    private static void writeChunk(final OutputStream out, final Future<byte[]> chunk, final int separator) throws IOException, InterruptedException {
+        final byte[] content;
+        try {
+            content = chunk.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        if (separator >= 0) {
+            out.write(separator);
+        }
+        out.write(content);
+    }
+
+    /**
+     * Random generator of the finding with the given index, seeded by a mix of the scan seed and the index,
+     * so that the generators of neighbouring findings don't produce overlapping sequences
+     */
+    private SplittableRandom findingRandom(final int i) {
+        long z = seed + (i + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new SplittableRandom(z ^ (z >>> 31));
+    }
+
+    private static UUID randomUUID(final SplittableRandom random) {
+        // version 4 (random) UUID of the given generator
+        final long msb = (random.nextLong() & ~0xF000L) | 0x4000L;
+        final long lsb = (random.nextLong() & ~(0xC000000000000000L)) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    private static float nextFloat(final SplittableRandom random) {
+        // uniform in [0, 1) like Random.nextFloat()
+        return (random.nextInt() >>> 8) * 0x1.0p-24f;
+    }
 
     private Finding generateFinding(final int i) {
-        final String uniqueId = UUID.randomUUID().toString();
+        final SplittableRandom random = findingRandom(i);
+        final String uniqueId = randomUUID(random).toString();
         final String id = String.format("%s/%08d", uniqueId, i + 1);
-        final int randCat = random.nextInt(categoryCount);
+        final int randCat = WorkloadProfile.draw(random, categoryDistribution, categoryCount);
 
-        Finding fn = new Finding();
+        GeneratedFinding fn = new GeneratedFinding();
 
         // mandatory custom attributes
-        fn.setUniqueId(UUID.randomUUID().toString());
+        fn.setUniqueId(uniqueId);
 
         // builtin attributes
         fn.setCategory(String.format("[generated] Random category %d", randCat));
         fn.setFileName(String.format("file-%s.bin", id));
         fn.setVulnerabilityAbstract("Abstract for vulnerability " + id);
         fn.setLineNumber(random.nextInt(Integer.MAX_VALUE));
-        fn.setConfidence(random.nextFloat() * 9 + 1); // 1..10
-        fn.setImpact(random.nextFloat() + 200f);
-        fn.setPriority(GenPriority.values()[random.nextInt(GenPriority.LENGTH)]);
+        fn.setConfidence(nextFloat(random) * 9 + 1); // 1..10
+        fn.setImpact(nextFloat(random) + 200f);
+        fn.setPriority(GenPriority.values()[WorkloadProfile.draw(random, priorityDistribution, GenPriority.LENGTH)]);
 
         // custom attributes
         fn.setCategoryId(String.format("c%d", randCat));
         fn.setArtifact(String.format("artifact-%s.jar", id));
         fn.setDescription("Description for vulnerability " + id + "\nSecurity problem in code...");
         fn.setComment("Comment for vulnerability " + id + "\nMight be a false positive...");
-        fn.setBuildNumber(String.valueOf(random.nextFloat() + 300f));
-        fn.setCustomStatus(CustomStatus.values()[random.nextInt(CustomStatus.LENGTH)]);
+        fn.setBuildNumber(String.valueOf(nextFloat(random) + 300f));
+        fn.setCustomStatus(CustomStatus.values()[WorkloadProfile.draw(random, statusDistribution, CustomStatus.LENGTH)]);
         fn.setLastChangeDate(Date.from(now.minus(2, ChronoUnit.DAYS).minus(2, ChronoUnit.HOURS)));
         fn.setArtifactBuildDate(Date.from(now.minus(1, ChronoUnit.DAYS).minus(1, ChronoUnit.HOURS)));
         fn.setTextBase64("Very long text for " + id + ": \n");
 
+        // values of non-uniform profiles are drawn after all of the above, so that the uniform profile generates the same findings
+        fn.textSize = getTextSizeMedian();
+        if (profile.hasTextSizeSpread()) {
+            fn.textSize = profile.drawTextSize(random, fn.textSize);
+        }
+        if (profile.getDuplicateDescriptionRatio() > 0 && random.nextDouble() < profile.getDuplicateDescriptionRatio()) {
+            fn.setDescription("Description for vulnerabilities of category " + randCat + "\nSecurity problem in code...");
+            fn.setComment("Comment for vulnerabilities of category " + randCat + "\nMight be a false positive...");
+        }
+        if (profile.getDateSpread() > 0) {
+            final long dateOffset = (long) (random.nextDouble() * profile.getDateSpread());
+            fn.setLastChangeDate(new Date(fn.getLastChangeDate().getTime() - dateOffset));
+            fn.setArtifactBuildDate(new Date(fn.getArtifactBuildDate().getTime() - dateOffset));
+        }
+
         return fn;
     }
 
-    private void writeFinding(final JsonGenerator jsonGenerator, final Finding fn) throws IOException, InterruptedException {
-        jsonGenerator.writeStartObject();
-
-        // Mandatory custom attributes
-        jsonGenerator.writeStringField(UNIQUE_ID.attrName(), fn.getUniqueId());
-
-        // Builtin attributes
-        jsonGenerator.writeStringField(CATEGORY.attrName(), fn.getCategory());
-        jsonGenerator.writeStringField(FILE_NAME.attrName(), fn.getFileName());
-        jsonGenerator.writeStringField(VULNERABILITY_ABSTRACT.attrName(), fn.getVulnerabilityAbstract());
-        jsonGenerator.writeNumberField(LINE_NUMBER.attrName(), fn.getLineNumber());
-        jsonGenerator.writeNumberField(CONFIDENCE.attrName(), fn.getConfidence());
-        jsonGenerator.writeNumberField(IMPACT.attrName(), fn.getImpact());
-        jsonGenerator.writeStringField(PRIORITY.attrName(), fn.getPriority().name());
-
-        // Custom attributes
-        jsonGenerator.writeStringField(CATEGORY_ID.attrName(), fn.getCategoryId());
-        jsonGenerator.writeStringField(CUSTOM_STATUS.attrName(), fn.getCustomStatus().name());
-        jsonGenerator.writeStringField(ARTIFACT.attrName(), fn.getArtifact());
-        jsonGenerator.writeStringField(DESCRIPTION.attrName(), fn.getDescription());
-        jsonGenerator.writeStringField(COMMENT.attrName(), fn.getComment());
-        jsonGenerator.writeStringField(BUILD_NUMBER.attrName(), fn.getBuildNumber());
-        jsonGenerator.writeStringField(LAST_CHANGE_DATE.attrName(), DATE_SERIALIZER.convert(fn.getLastChangeDate()));
-        jsonGenerator.writeStringField(ARTIFACT_BUILD_DATE.attrName(), DATE_SERIALIZER.convert(fn.getArtifactBuildDate()));
-        jsonGenerator.writeFieldName(TEXT_BASE64.attrName());
-            writeLoremIpsum(fn.getTextBase64(), jsonGenerator);
+    /**
+     * Random finding with the size of its long text
+     */
+    private static final class GeneratedFinding extends Finding {
+        private int textSize;
+    }
 
+    /**
+     * Writes the fields of a finding in the order of {@link VulnAttribute#findingFields()}, which the parser expects
+     */
+    private void writeFinding(final JsonGenerator jsonGenerator, final Finding fn) throws IOException {
+        jsonGenerator.writeStartObject();
+        for (final VulnAttribute field : FINDING_FIELDS) {
+            jsonGenerator.writeFieldName(field.serializedName());
+            switch (field) {
+                case UNIQUE_ID:
+                    jsonGenerator.writeString(fn.getUniqueId());
+                    break;
+                case CATEGORY:
+                    jsonGenerator.writeString(fn.getCategory());
+                    break;
+                case FILE_NAME:
+                    jsonGenerator.writeString(fn.getFileName());
+                    break;
+                case VULNERABILITY_ABSTRACT:
+                    jsonGenerator.writeString(fn.getVulnerabilityAbstract());
+                    break;
+                case LINE_NUMBER:
+                    jsonGenerator.writeNumber(fn.getLineNumber());
+                    break;
+                case CONFIDENCE:
+                    jsonGenerator.writeNumber(fn.getConfidence());
+                    break;
+                case IMPACT:
+                    jsonGenerator.writeNumber(fn.getImpact());
+                    break;
+                case PRIORITY:
+                    jsonGenerator.writeString(fn.getPriority().name());
+                    break;
+                case CATEGORY_ID:
+                    jsonGenerator.writeString(fn.getCategoryId());
+                    break;
+                case CUSTOM_STATUS:
+                    jsonGenerator.writeString(fn.getCustomStatus().name());
+                    break;
+                case ARTIFACT:
+                    jsonGenerator.writeString(fn.getArtifact());
+                    break;
+                case DESCRIPTION:
+                    jsonGenerator.writeString(fn.getDescription());
+                    break;
+                case COMMENT:
+                    jsonGenerator.writeString(fn.getComment());
+                    break;
+                case BUILD_NUMBER:
+                    jsonGenerator.writeString(fn.getBuildNumber());
+                    break;
+                case LAST_CHANGE_DATE:
+                    jsonGenerator.writeString(DATE_SERIALIZER.convert(fn.getLastChangeDate()));
+                    break;
+                case ARTIFACT_BUILD_DATE:
+                    jsonGenerator.writeString(DATE_SERIALIZER.convert(fn.getArtifactBuildDate()));
+                    break;
+                case TEXT_BASE64:
+                    writeLoremIpsum(fn.getTextBase64(), fn instanceof GeneratedFinding ? ((GeneratedFinding) fn).textSize : longTextSize, jsonGenerator);
+                    break;
+                default:
+                    throw new IllegalStateException(String.format("Generator has no value of finding field %s", field.attrName()));
+            }
+        }
         jsonGenerator.writeEndObject();
     }
 
-    private void writeLoremIpsum(final String name, final JsonGenerator jsonGenerator) throws InterruptedException, IOException {
-        final int size = longTextSize + name.length();
-        try (final InputStream in = getLoremIpsum(name, size)) {
-            jsonGenerator.writeBinary(in, size);
-        }
+    private static void writeLoremIpsum(final String name, final int textSize, final JsonGenerator jsonGenerator) throws IOException {
+        final int size = textSize + name.length();
+        // generator base64-encodes the stream while copying it to the output
+        jsonGenerator.writeBinary(new LoremIpsumInputStream(name, size), size);
     }
 
-    private static InputStream getLoremIpsum(final String name, final int size) throws InterruptedException {
-        final CountDownLatch latch = new CountDownLatch(1);
-        final PipedInputStream in = new PipedInputStream();
-        try {
-            final Thread t = new Thread(() -> pipedStreamProducer(name, in, latch, size));
-            t.setDaemon(true);
-            t.start();
-            if (latch.await(10, TimeUnit.SECONDS)) {
-                return in;
-            } else {
-                t.interrupt();
-                throw new RuntimeException("Timeout while waiting for latch for " + name);
-            }
-        } catch (final Exception e) {
-            try {
-                in.close();
-            } catch (final Exception suppressed) {
-                e.addSuppressed(suppressed);
+    /**
+     * Name followed by lorem ipsum repeated up to the given size, produced on demand without buffering the whole text
+     */
+    private static final class LoremIpsumInputStream extends InputStream {
+        private final byte[] name;
+        private final int size;
+        private int position;
+
+        LoremIpsumInputStream(final String name, final int size) {
+            this.name = name.getBytes(charset);
+            this.size = size;
+        }
+
+        @Override
+        public int read() {
+            if (position >= size) {
+                return -1;
             }
-            throw e;
+            final int i = position++;
+            return i < name.length ? name[i] : LOREM_IPSUM[(i - name.length) % LOREM_IPSUM.length];
         }
-    }
 
-    private static void pipedStreamProducer(final String name, final PipedInputStream in, final CountDownLatch latch, final int size) {
-        try (final PipedOutputStream out = new PipedOutputStream(in)) {
-            latch.countDown();
-            int written = min(name.length(), size);
-            out.write(name.getBytes(charset), 0, written);
-            final int loremIpsumLen = LOREM_IPSUM.length;
-            while (written < size) {
-                final int len = min(loremIpsumLen, size - written);
-                out.write(LOREM_IPSUM, 0, len);
-                written += len;
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (position >= size) {
+                return -1;
+            }
+            int read = 0;
+            while (read < len && position < size) {
+                final int count;
+                if (position < name.length) {
+                    count = min(min(len - read, size - position), name.length - position);
+                    System.arraycopy(name, position, b, off + read, count);
+                } else {
+                    final int loremPosition = (position - name.length) % LOREM_IPSUM.length;
+                    count = min(min(len - read, size - position), LOREM_IPSUM.length - loremPosition);
+                    System.arraycopy(LOREM_IPSUM, loremPosition, b, off + read, count);
+                }
+                position += count;
+                read += count;
             }
-        } catch (final IOException e) {
-            e.printStackTrace();
+            return read;
         }
     }
 
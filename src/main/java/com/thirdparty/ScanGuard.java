@@ -0,0 +1,165 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <P>Enforces the scan-wide resource limits while a scan is streamed: inflated bytes, inflate ratio, number of findings and wall time.
+ * <BR>Bytes are checked by the streams of the scan entries on whichever thread reads them, the wall time is checked there
+ * and before each finding is handed over to SSC, together with the interruption of the calling thread; the limits are only
+ * checked cooperatively, no thread is stopped. Limits of attribute values are checked by {@link AttributeReaders}.
+ * <BR>The inflate ratio can only be checked for entries of a known compressed size. Other entries are limited by {@code maxBytes}
+ * instead, without it they fail the scan as soon as they are read, so that setting the ratio never lets an entry inflate without a limit.
+ * The compressed size is stated by {@code scan.info} of the scan, which can be forged along with the entry, so without {@code maxBytes}
+ * an entry checked by the ratio is also limited to {@link #MAX_RATIO_ONLY_ENTRY_BYTES}.
+ */
+final class ScanGuard {
+    private static final Logger LOG = LoggerFactory.getLogger(ScanGuard.class);
+
+    /** Most bytes an entry checked only by the inflate ratio, without {@code maxBytes}, inflates to */
+    static final long MAX_RATIO_ONLY_ENTRY_BYTES = 4L * 1024 * 1024 * 1024;
+
+    private final ParserSettings.Limit maxBytes;
+    private final ParserSettings.Limit maxInflateRatio;
+    private final ParserSettings.Limit maxFindings;
+    private final ParserSettings.Limit maxSeconds;
+    private final long deadline;
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicBoolean ratioUncheckedLogged = new AtomicBoolean();
+    private long findings;
+
+    ScanGuard(final ParserSettings settings) {
+        this.maxBytes = settings.getMaxBytes();
+        this.maxInflateRatio = settings.getMaxInflateRatio();
+        this.maxFindings = settings.getMaxFindings();
+        this.maxSeconds = settings.getMaxSeconds();
+        this.deadline = maxSeconds.isSet() ? System.nanoTime() + TimeUnit.SECONDS.toNanos(maxSeconds.getMax()) : 0;
+    }
+
+    /**
+     * Whether a limit can stop parsing in the middle of a finding without failing, findings then have to be loaded
+     * completely before their vulnerabilities are started, so the finding cut off is never handed over
+     */
+    boolean isTruncatingMidFinding() {
+        return (maxBytes.isSet() && maxBytes.isTruncate()) || (maxInflateRatio.isSet() && maxInflateRatio.isTruncate())
+                || (maxSeconds.isSet() && maxSeconds.isTruncate());
+    }
+
+    /**
+     * Stream of a scan entry checked against the limits
+     *
+     * @param compressedSize compressed size of the entry or a negative number if it is not known
+     */
+    InputStream guard(final InputStream in, final long compressedSize) {
+        if (in == null || !(maxBytes.isSet() || maxSeconds.isSet() || maxInflateRatio.isSet())) {
+            return in;
+        }
+        final boolean ratioChecked = maxInflateRatio.isSet() && compressedSize > 0 && compressedSize <= Long.MAX_VALUE / maxInflateRatio.getMax();
+        final long ratioBytes = ratioChecked ? maxInflateRatio.getMax() * compressedSize : Long.MAX_VALUE;
+        final long maxEntryBytes;
+        if (ratioChecked) {
+            // the stated compressed size is not to be trusted without maxBytes
+            maxEntryBytes = maxBytes.isSet() ? ratioBytes : Math.min(ratioBytes, MAX_RATIO_ONLY_ENTRY_BYTES);
+        } else if (maxInflateRatio.isSet()) {
+            if (ratioUncheckedLogged.compareAndSet(false, true)) {
+                LOG.warn("Inflate ratio is not checked for scan entries without a plausible compressed size, {}", maxBytes.isSet()
+                        ? String.format("they are limited by %s only", maxBytes) : String.format("they fail the scan as %s is not set", maxBytes));
+            }
+            maxEntryBytes = maxBytes.isSet() ? Long.MAX_VALUE : 0;
+        } else {
+            maxEntryBytes = Long.MAX_VALUE;
+        }
+        return new FilterInputStream(in) {
+            private long entryBytes;
+
+            @Override
+            public int read() throws IOException {
+                final int b = super.read();
+                if (b >= 0) {
+                    bytesRead(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                final int n = super.read(b, off, len);
+                if (n > 0) {
+                    bytesRead(n);
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(final long n) throws IOException {
+                final long skipped = super.skip(n);
+                bytesRead(skipped);
+                return skipped;
+            }
+
+            private void bytesRead(final long n) throws IOException {
+                entryBytes += n;
+                if (entryBytes > maxEntryBytes) {
+                    final String message;
+                    if (!ratioChecked) {
+                        message = String.format("Scan entry of unknown compressed size can't be checked against the inflate ratio without %s", maxBytes);
+                    } else if (entryBytes > ratioBytes) {
+                        message = String.format("Scan entry inflates to more than %d times its compressed size of %d bytes", maxInflateRatio.getMax(), compressedSize);
+                    } else {
+                        message = String.format("Scan entry inflates to more than %d bytes, the most an entry checked only by the inflate ratio can without %s",
+                                MAX_RATIO_ONLY_ENTRY_BYTES, maxBytes);
+                    }
+                    throw exceeded(maxInflateRatio, message);
+                }
+                if (maxBytes.isSet() && maxBytes.isExceeded(bytes.addAndGet(n))) {
+                    throw exceeded(maxBytes, String.format("Scan entries inflate to more than %d bytes", maxBytes.getMax()));
+                }
+                checkDeadline();
+            }
+        };
+    }
+
+    /**
+     * Called on the calling thread before a finding is handed over to SSC
+     */
+    void beforeFinding() throws IOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Interrupted while parsing findings");
+        }
+        if (maxFindings.isExceeded(++findings)) {
+            throw exceeded(maxFindings, String.format("Scan has more than %d findings", maxFindings.getMax()));
+        }
+        checkDeadline();
+    }
+
+    private void checkDeadline() throws ScanLimitException {
+        if (deadline != 0 && System.nanoTime() - deadline > 0) {
+            throw exceeded(maxSeconds, String.format("Parsing the scan takes longer than %d s", maxSeconds.getMax()));
+        }
+    }
+
+    private static ScanLimitException exceeded(final ParserSettings.Limit limit, final String message) {
+        return new ScanLimitException(String.format("%s (%s)", message, limit), limit.isTruncate());
+    }
+}
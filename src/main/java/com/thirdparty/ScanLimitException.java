@@ -0,0 +1,38 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * <P>Scan exceeds one of the {@code sample.parser.limits.*} resource limits.
+ * <BR>It is an {@link IOException}, so it can be thrown from the streams and value readers the parser reads the scan with and
+ * passes through the parser unchanged. It is turned to a {@link com.fortify.plugin.api.ScanParsingException} at the end,
+ * or with the truncate policy of the limit, parsing stops and the findings handed over before are imported.
+ */
+final class ScanLimitException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean truncate;
+
+    ScanLimitException(final String message, final boolean truncate) {
+        super(message);
+        this.truncate = truncate;
+    }
+
+    /** Whether parsing is to stop without failing */
+    boolean isTruncate() {
+        return truncate;
+    }
+}
@@ -0,0 +1,97 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <P>Metrics of parsing vulnerabilities of one scan.
+ * <BR>Parse contexts of all threads parsing the scan are created here, including the context of the calling thread, which reads
+ * the scan entry and hands vulnerabilities over to SSC. Their metrics are merged once the scan is parsed.
+ * The scan is also reported by a {@link ParserEvents.ScanParseEvent}.
+ */
+final class ScanMetrics {
+
+    private final String sessionId;
+    private final ParserSettings settings;
+    private final long startNanos = System.nanoTime();
+    private final List<ParseContext> contexts = new CopyOnWriteArrayList<>();
+    private final ParseContext callerContext;
+    private final ParserEvents.ScanParseEvent event;
+    private long elapsedNanos;
+
+    ScanMetrics(final String sessionId, final ParserSettings settings) {
+        this.sessionId = sessionId;
+        this.settings = settings;
+        this.callerContext = newContext();
+        this.event = ParserEvents.beginScan(sessionId);
+    }
+
+    /**
+     * New context of a thread parsing findings of the scan
+     */
+    ParseContext newContext() {
+        final ParseContext ctx = new ParseContext(settings);
+        contexts.add(ctx);
+        return ctx;
+    }
+
+    /** Context of the thread calling parseVulnerabilities */
+    ParseContext getCallerContext() {
+        return callerContext;
+    }
+
+    /** Metrics of the thread calling parseVulnerabilities */
+    ParseMetrics getCallerMetrics() {
+        return callerContext.getMetrics();
+    }
+
+    String getSessionId() {
+        return sessionId;
+    }
+
+    List<ParseContext> getContexts() {
+        return contexts;
+    }
+
+    /**
+     * Stops the scan clock and commits the events of the scan, to be called when parsing ends either way
+     */
+    void end(final boolean succeeded) {
+        elapsedNanos = System.nanoTime() - startNanos;
+        if (succeeded) {
+            // threads of a failed scan may still be parsing, their trailing batches are left out
+            for (final ParseContext ctx : contexts) {
+                ctx.getMetrics().flushBatch();
+            }
+        }
+        ParserEvents.commitScan(event, getTotals(), succeeded);
+    }
+
+    long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Metrics of all threads of the scan merged together
+     */
+    ParseMetrics getTotals() {
+        final ParseMetrics totals = new ParseMetrics();
+        for (final ParseContext ctx : contexts) {
+            totals.merge(ctx.getMetrics());
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,533 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static com.thirdparty.ScanGenerator.SCAN_INFO_ENTRY;
+import static com.thirdparty.ScanGenerator.SCAN_INFO_FINDING_COUNT;
+import static com.thirdparty.ScanGenerator.SCAN_INFO_JSON_ENTRY;
+import static com.thirdparty.ScanGenerator.SCAN_INFO_JSON_ENTRY_COMPRESSED_SIZE;
+import static com.thirdparty.ScanGenerator.SCAN_INFO_JSON_ENTRY_SIZE;
+import static com.thirdparty.ScanGenerator.SCAN_INFO_SHARD_COUNT;
+import static com.thirdparty.ScanGenerator.SCAN_INFO_SHARD_ENTRY_COMPRESSED_SIZE;
+import static com.thirdparty.ScanGenerator.SCAN_INFO_SHARD_ENTRY_SIZE;
+
+/**
+ * <P>Splits a scan zip into parts of limited finding count or size and merges scan zips into one, streaming the findings.
+ * <BR>Findings are read from the scan entry and the shards in the order the parser reads them and copied token by token
+ * to the scan entry of the output, written by {@link ZipStreamWriter} like a generated scan, so memory doesn't depend on the scan size.
+ * Each output gets the header fields of the (first) input and its {@code scan.info} with the finding count and entry sizes of the output.
+ * <BR>Header fields can follow the findings array, so unless the scan entry is NDJSON its top level is read once beforehand,
+ * skipping the findings.
+ */
+final class ScanRepacker {
+
+    private static final String DEFAULT_ENGINE_TYPE = "SAMPLE";
+    // top level fields also stored in scan.info, see ScanGenerator
+    private static final Set<VulnAttribute> HEADER_FIELDS = EnumSet.of(
+            VulnAttribute.ENGINE_VERSION, VulnAttribute.SCAN_DATE, VulnAttribute.BUILD_SERVER, VulnAttribute.ELAPSED);
+    // room left in a part for the generator buffer, the end of the scan entry, scan.info and the central directory
+    private static final long PART_RESERVE = 32 * 1024;
+
+    private final ZipStreamWriter.Compression compression;
+    private final int threads;
+    private final ScanFormat format;
+
+    /**
+     * @param threads number of threads deflating the output entries
+     * @param format format of the output scan entries, {@code null} keeps the format of the (first) input
+     */
+    ScanRepacker(final ZipStreamWriter.Compression compression, final int threads, final ScanFormat format) {
+        this.compression = compression;
+        this.threads = threads;
+        this.format = format;
+    }
+
+    /**
+     * Writes the findings of the scan to parts {@code <partPrefix>-0001.zip}, {@code <partPrefix>-0002.zip}, ... in their order.
+     * A part is ended before it would exceed either limit, but it holds at least one finding. Parts written before a failure are deleted.
+     *
+     * @param maxFindings maximal number of findings of a part
+     * @param maxSize maximal size of a part file in bytes
+     * @return written parts
+     */
+    List<Written> split(final File scanZip, final String partPrefix, final long maxFindings, final long maxSize) throws IOException {
+        final List<Written> parts = new ArrayList<>();
+        ScanOutput part = null;
+        try (final ScanInput input = new ScanInput(scanZip)) {
+            final Header header = input.readHeader();
+            final ScanFormat outputFormat = format != null ? format : input.getFormat();
+            // with a size limit each finding is encoded beforehand, so that a part is ended before the finding would overflow it
+            final FindingBuffer buffer = maxSize == Long.MAX_VALUE ? null : new FindingBuffer(outputFormat);
+            while (input.nextFinding()) {
+                final long findingSize = buffer == null ? 0 : buffer.read(input.getParser());
+                if (part != null && (part.getFindingCount() >= maxFindings || !part.fits(findingSize, maxSize))) {
+                    parts.add(part.finish());
+                    part = null;
+                }
+                if (part == null) {
+                    part = new ScanOutput(new File(String.format("%s-%04d.zip", partPrefix, parts.size() + 1)), outputFormat, input.getScanEntryName(), header);
+                }
+                if (buffer == null) {
+                    part.copyFinding(input.getParser());
+                } else {
+                    try (final JsonParser finding = buffer.parse()) {
+                        part.copyFinding(finding);
+                    }
+                }
+            }
+            if (part == null) {
+                // scan without findings
+                part = new ScanOutput(new File(String.format("%s-%04d.zip", partPrefix, 1)), outputFormat, input.getScanEntryName(), header);
+            }
+            parts.add(part.finish());
+            part = null;
+            return parts;
+        } catch (final IOException | RuntimeException e) {
+            if (part != null) {
+                part.discard(e);
+            }
+            for (final Written written : parts) {
+                delete(written.getFile(), e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the findings of the scans in their order to one scan with the header fields of the first one. The output is deleted on failure.
+     */
+    Written merge(final List<File> scanZips, final File outputFile) throws IOException {
+        ScanOutput output = null;
+        try {
+            for (final File scanZip : scanZips) {
+                try (final ScanInput input = new ScanInput(scanZip)) {
+                    if (output == null) {
+                        output = new ScanOutput(outputFile, format != null ? format : input.getFormat(), input.getScanEntryName(), input.readHeader());
+                    }
+                    while (input.nextFinding()) {
+                        output.copyFinding(input.getParser());
+                    }
+                }
+            }
+            if (output == null) {
+                throw new IllegalArgumentException("No scan to merge");
+            }
+            return output.finish();
+        } catch (final IOException | RuntimeException e) {
+            if (output != null) {
+                output.discard(e);
+            }
+            throw e;
+        }
+    }
+
+    private static void delete(final File file, final Exception e) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (final IOException suppressed) {
+            e.addSuppressed(suppressed);
+        }
+    }
+
+    /**
+     * Scan file written by the repacker
+     */
+    static final class Written {
+        private final File file;
+        private final long findingCount;
+
+        Written(final File file, final long findingCount) {
+            this.file = file;
+            this.findingCount = findingCount;
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        long getFindingCount() {
+            return findingCount;
+        }
+    }
+
+    /**
+     * Top level fields of a scan entry other than the findings, encoded as one object in the format of the entry,
+     * with the text of the header fields and {@code scan.info} of the scan
+     */
+    private static final class Header {
+        private final ScanFormat encoding;
+        private final byte[] fields;
+        private final Properties scanInfo;
+        private final String engineType;
+
+        Header(final ScanFormat encoding, final byte[] fields, final Properties scanInfo, final String engineType) {
+            this.encoding = encoding;
+            this.fields = fields;
+            this.scanInfo = scanInfo;
+            this.engineType = engineType;
+        }
+    }
+
+    /**
+     * Findings of the scan entry and the shards of a scan zip, read as a stream
+     */
+    private static final class ScanInput implements Closeable {
+        private final File scanZip;
+        private final ZipFile zipFile;
+        private final ZipEntry scanEntry;
+        private final List<ZipEntry> entries = new ArrayList<>();
+        private int nextEntry;
+        private JsonParser jsonParser;
+        private FindingEntryReader reader;
+
+        ScanInput(final File scanZip) throws IOException {
+            this.scanZip = scanZip;
+            this.zipFile = new ZipFile(scanZip);
+            try {
+                final List<ZipEntry> shards = new ArrayList<>();
+                ZipEntry scanEntry = null;
+                for (final ZipEntry entry : Collections.list(zipFile.entries())) {
+                    if (ScanFormat.isShardEntry(entry.getName())) {
+                        shards.add(entry);
+                    } else if (scanEntry == null && ScanFormat.isScanEntry(entry.getName())) {
+                        scanEntry = entry;
+                    }
+                }
+                if (scanEntry == null) {
+                    throw new IOException(String.format("No findings entry in %s", scanZip.getPath()));
+                }
+                this.scanEntry = scanEntry;
+                entries.add(scanEntry);
+                // shards are read until the next number is missing, like the parser does
+                for (int shard = 1; ; shard++) {
+                    final ZipEntry entry = findShard(shards, shard);
+                    if (entry == null) {
+                        break;
+                    }
+                    entries.add(entry);
+                }
+            } catch (final IOException | RuntimeException e) {
+                zipFile.close();
+                throw e;
+            }
+        }
+
+        private static ZipEntry findShard(final List<ZipEntry> shards, final int shard) {
+            for (final ZipEntry entry : shards) {
+                if (ScanFormat.isShardEntry(entry.getName(), shard)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        String getScanEntryName() {
+            return scanEntry.getName();
+        }
+
+        /**
+         * Format of the scan entry, the encoding tells binary formats apart, the name tells NDJSON from JSON
+         */
+        ScanFormat getFormat() throws IOException {
+            final ScanFormat encoding;
+            try (final PushbackInputStream in = open(scanEntry)) {
+                encoding = ScanFormat.detect(in);
+            }
+            if (encoding == ScanFormat.JSON && scanEntry.getName().endsWith(ScanFormat.NDJSON.getEntrySuffix())) {
+                return ScanFormat.NDJSON;
+            }
+            return encoding;
+        }
+
+        /**
+         * Reads the top level fields of the scan entry other than the findings and {@code scan.info}
+         */
+        Header readHeader() throws IOException {
+            final Properties scanInfo = new Properties();
+            final ZipEntry scanInfoEntry = zipFile.getEntry(SCAN_INFO_ENTRY);
+            if (scanInfoEntry != null) {
+                try (final InputStream in = zipFile.getInputStream(scanInfoEntry)) {
+                    scanInfo.load(in);
+                }
+            }
+            final String engineType = scanInfo.getProperty("engineType", DEFAULT_ENGINE_TYPE);
+            scanInfo.remove("engineType");
+
+            final ByteArrayOutputStream fields = new ByteArrayOutputStream();
+            final ScanFormat encoding;
+            try (final PushbackInputStream in = open(scanEntry)) {
+                encoding = ScanFormat.detect(in);
+                try (final JsonParser jsonParser = encoding.createFactory().createParser(in);
+                     final JsonGenerator jsonGenerator = encoding.createFactory().createGenerator(fields)) {
+                    expectObjectStart(jsonParser);
+                    jsonGenerator.writeStartObject();
+                    while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+                        final String fieldName = jsonParser.getCurrentName();
+                        final JsonToken value = jsonParser.nextToken();
+                        if ("findings".equals(fieldName)) {
+                            jsonParser.skipChildren();
+                            continue;
+                        }
+                        final VulnAttribute vulnAttr = VulnAttribute.get(fieldName);
+                        if (vulnAttr != null && HEADER_FIELDS.contains(vulnAttr) && value.isScalarValue() && value != JsonToken.VALUE_NULL
+                                && !scanInfo.containsKey(fieldName)) {
+                            // header of a scan without scan.info, the parser reads it from scan.info of the output
+                            scanInfo.setProperty(fieldName, jsonParser.getText());
+                        }
+                        jsonGenerator.writeFieldName(fieldName);
+                        jsonGenerator.copyCurrentStructure(jsonParser);
+                    }
+                    jsonGenerator.writeEndObject();
+                }
+            }
+            return new Header(encoding, fields.toByteArray(), scanInfo, engineType);
+        }
+
+        /**
+         * Moves to the next finding, whose start the parser is then at
+         *
+         * @return {@code false} after the last finding
+         */
+        boolean nextFinding() throws IOException {
+            while (true) {
+                if (jsonParser == null) {
+                    if (nextEntry == entries.size()) {
+                        return false;
+                    }
+                    final PushbackInputStream in = open(entries.get(nextEntry++));
+                    jsonParser = ScanFormat.detect(in).createFactory().createParser(in);
+                    expectObjectStart(jsonParser);
+                    reader = new FindingEntryReader(jsonParser);
+                }
+                if (reader.nextObject()) {
+                    return true;
+                }
+                jsonParser.close();
+                jsonParser = null;
+            }
+        }
+
+        JsonParser getParser() {
+            return jsonParser;
+        }
+
+        private PushbackInputStream open(final ZipEntry entry) throws IOException {
+            return new PushbackInputStream(zipFile.getInputStream(entry), ScanFormat.SIGNATURE_LENGTH);
+        }
+
+        private static void expectObjectStart(final JsonParser jsonParser) throws IOException {
+            if (jsonParser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException(String.format("Expected object start at %s", jsonParser.getTokenLocation()));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (jsonParser != null) {
+                    jsonParser.close();
+                }
+            } finally {
+                zipFile.close();
+            }
+        }
+    }
+
+    /**
+     * One finding encoded in the output format, to know its size before it is written
+     */
+    private static final class FindingBuffer {
+        private final ScanFormat format;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        FindingBuffer(final ScanFormat format) {
+            this.format = format;
+        }
+
+        /**
+         * Copies the finding at the parser
+         *
+         * @return encoded size of the finding
+         */
+        long read(final JsonParser jsonParser) throws IOException {
+            bytes.reset();
+            try (final JsonGenerator jsonGenerator = format.createFactory().createGenerator(bytes)) {
+                jsonGenerator.copyCurrentStructure(jsonParser);
+            }
+            return bytes.size();
+        }
+
+        /**
+         * Parser at the start of the copied finding
+         */
+        JsonParser parse() throws IOException {
+            final JsonParser jsonParser = format.createFactory().createParser(bytes.toByteArray());
+            jsonParser.nextToken();
+            return jsonParser;
+        }
+    }
+
+    /**
+     * Scan zip written with the header of the input and the copied findings
+     */
+    private final class ScanOutput {
+        private final File file;
+        private final ScanFormat outputFormat;
+        private final String entryName;
+        private final Header header;
+        private final ZipStreamWriter zipOut;
+        private JsonGenerator jsonGenerator;
+        private long findingCount;
+
+        ScanOutput(final File file, final ScanFormat outputFormat, final String inputEntryName, final Header header) throws IOException {
+            if (!file.createNewFile()) {
+                throw new FileAlreadyExistsException(file.getPath());
+            }
+            this.file = file;
+            this.outputFormat = outputFormat;
+            this.entryName = inputEntryName.substring(0, inputEntryName.lastIndexOf('.')) + outputFormat.getEntrySuffix();
+            this.header = header;
+            try {
+                this.zipOut = new ZipStreamWriter(new FileOutputStream(file), compression, threads);
+            } catch (final IOException | RuntimeException e) {
+                delete(file, e);
+                throw e;
+            }
+            try {
+                jsonGenerator = outputFormat.createFactory().createGenerator(zipOut.putNextEntry(entryName));
+                jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                writeHeader();
+            } catch (final IOException | RuntimeException e) {
+                discard(e);
+                throw e;
+            }
+        }
+
+        private void writeHeader() throws IOException {
+            jsonGenerator.writeStartObject();
+            try (final JsonParser fields = header.encoding.createFactory().createParser(header.fields)) {
+                fields.nextToken();
+                while (fields.nextToken() == JsonToken.FIELD_NAME) {
+                    jsonGenerator.copyCurrentStructure(fields);
+                }
+            }
+            if (outputFormat == ScanFormat.NDJSON) {
+                jsonGenerator.writeEndObject();
+                jsonGenerator.setRootValueSeparator(new SerializedString("\n"));
+            } else {
+                jsonGenerator.writeArrayFieldStart("findings");
+            }
+        }
+
+        /**
+         * Copies the finding at the parser, textBase64 values of binary formats are raw bytes like ScanGenerator writes them
+         */
+        void copyFinding(final JsonParser jsonParser) throws IOException {
+            if (outputFormat.isText()) {
+                jsonGenerator.copyCurrentStructure(jsonParser);
+            } else {
+                jsonGenerator.writeStartObject();
+                while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String fieldName = jsonParser.getCurrentName();
+                    jsonGenerator.writeFieldName(fieldName);
+                    if (jsonParser.nextToken() == JsonToken.VALUE_STRING && VulnAttribute.get(fieldName) == VulnAttribute.TEXT_BASE64) {
+                        jsonGenerator.writeBinary(Base64Variants.getDefaultVariant().decode(jsonParser.getText()));
+                    } else {
+                        jsonGenerator.copyCurrentStructure(jsonParser);
+                    }
+                }
+                jsonGenerator.writeEndObject();
+            }
+            findingCount++;
+        }
+
+        long getFindingCount() {
+            return findingCount;
+        }
+
+        /**
+         * Whether a finding of the given encoded size surely keeps the part within the size. Near the limit the content deflated
+         * so far is flushed, so that only the content written afterwards has to be estimated.
+         */
+        boolean fits(final long findingSize, final long maxSize) throws IOException {
+            if (zipOut.getSize() + zipOut.getPendingLimit() + findingSize + PART_RESERVE <= maxSize) {
+                return true;
+            }
+            jsonGenerator.flush();
+            zipOut.flushEntry();
+            return zipOut.getSize() + zipOut.getPendingLimit() + findingSize + PART_RESERVE <= maxSize;
+        }
+
+        /**
+         * Ends the scan entry and writes {@code scan.info}
+         */
+        Written finish() throws IOException {
+            if (outputFormat != ScanFormat.NDJSON) {
+                jsonGenerator.writeEndArray();
+                jsonGenerator.writeEndObject();
+            }
+            jsonGenerator.close();
+            zipOut.closeEntry();
+            final Properties scanInfoProps = new Properties();
+            scanInfoProps.putAll(header.scanInfo);
+            // the output has no shards
+            scanInfoProps.remove(SCAN_INFO_SHARD_COUNT);
+            scanInfoProps.keySet().removeIf(key -> key.toString().startsWith(SCAN_INFO_SHARD_ENTRY_SIZE)
+                    || key.toString().startsWith(SCAN_INFO_SHARD_ENTRY_COMPRESSED_SIZE));
+            scanInfoProps.put(SCAN_INFO_FINDING_COUNT, String.valueOf(findingCount));
+            scanInfoProps.put(SCAN_INFO_JSON_ENTRY, entryName);
+            scanInfoProps.put(SCAN_INFO_JSON_ENTRY_SIZE, String.valueOf(zipOut.getEntrySize()));
+            scanInfoProps.put(SCAN_INFO_JSON_ENTRY_COMPRESSED_SIZE, String.valueOf(zipOut.getEntryCompressedSize()));
+            ScanGenerator.writeScanInfo(header.engineType, scanInfoProps, zipOut);
+            zipOut.close();
+            return new Written(file, findingCount);
+        }
+
+        /**
+         * Closes and deletes the unfinished output
+         */
+        void discard(final Exception e) {
+            try {
+                zipOut.close();
+            } catch (final IOException | RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            delete(file, e);
+        }
+    }
+}
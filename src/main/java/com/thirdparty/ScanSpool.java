@@ -0,0 +1,248 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fortify.plugin.api.ScanData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * <P>Inflated JSON entries of scans being parsed, kept from {@code parseScan} to {@code parseVulnerabilities} of a session.
+ * <BR>Entry is inflated once, content smaller than the heap threshold is kept in a byte array, larger content is written
+ * to a temporary file which is memory-mapped, so both passes read it without inflating the zip entry again.
+ * Spooled content is released when the session's vulnerabilities are parsed or the plugin stops.
+ */
+final class ScanSpool {
+    private static final Logger LOG = LoggerFactory.getLogger(ScanSpool.class);
+
+    // size of a single mapping, a file larger than that is mapped in more segments
+    private static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+    private final int heapThreshold;
+    private final Path directory;
+    private final Map<String, Content> sessions = new ConcurrentHashMap<>();
+
+    ScanSpool(final ParserSettings settings) {
+        this.heapThreshold = settings.getSpoolHeapThreshold();
+        this.directory = settings.getSpoolDirectory() == null ? null : Paths.get(settings.getSpoolDirectory());
+    }
+
+    /**
+     * Stream of the matching entry of the scan, inflated and spooled on the first call for the session.
+     * <BR>Inflating is checked against the scan limits of the guard, content exceeding them is not spooled.
+     *
+     * @return stream of the spooled content or {@code null} if the scan has no matching entry
+     */
+    InputStream open(final ScanData scanData, final Predicate<String> entryMatcher, final ScanGuard guard, final long compressedSize) throws IOException {
+        Content content = sessions.get(scanData.getSessionId());
+        if (content == null) {
+            content = spool(scanData, entryMatcher, guard, compressedSize);
+            if (content == null) {
+                return null;
+            }
+            sessions.put(scanData.getSessionId(), content);
+        }
+        return content.newInputStream();
+    }
+
+    /**
+     * Stream of the spooled content of the session or {@code null} if nothing has been spooled for it
+     */
+    InputStream openSpooled(final ScanData scanData) {
+        final Content content = sessions.get(scanData.getSessionId());
+        return content == null ? null : content.newInputStream();
+    }
+
+    void release(final ScanData scanData) {
+        final Content content = sessions.remove(scanData.getSessionId());
+        if (content != null) {
+            content.delete();
+        }
+    }
+
+    /**
+     * Releases content of all sessions, e.g. of sessions whose vulnerabilities were never parsed
+     */
+    void releaseAll() {
+        for (final String sessionId : sessions.keySet()) {
+            final Content content = sessions.remove(sessionId);
+            if (content != null) {
+                content.delete();
+            }
+        }
+    }
+
+    private Content spool(final ScanData scanData, final Predicate<String> entryMatcher, final ScanGuard guard, final long compressedSize) throws IOException {
+        try (final InputStream in = guard.guard(scanData.getInputStream(entryMatcher), compressedSize)) {
+            if (in == null) {
+                return null;
+            }
+            final long startTime = System.currentTimeMillis();
+            final byte[] buffer = new byte[64 * 1024];
+            final ByteArrayOutputStream heap = new ByteArrayOutputStream();
+            Path file = null;
+            OutputStream out = heap;
+            try {
+                long size = 0;
+                int count;
+                while ((count = in.read(buffer)) > 0) {
+                    if (file == null && size + count > heapThreshold) {
+                        file = directory == null ? Files.createTempFile("sample-parser-", ".json") : Files.createTempFile(directory, "sample-parser-", ".json");
+                        out = Files.newOutputStream(file);
+                        heap.writeTo(out);
+                        heap.reset();
+                    }
+                    out.write(buffer, 0, count);
+                    size += count;
+                }
+                if (file == null) {
+                    LOG.debug("JSON entry of session {} spooled to heap ({} bytes) in {} ms", scanData.getSessionId(), size, System.currentTimeMillis() - startTime);
+                    return new Content(heap.toByteArray(), null, null);
+                }
+                out.close();
+                LOG.debug("JSON entry of session {} spooled to {} ({} bytes) in {} ms", scanData.getSessionId(), file, size, System.currentTimeMillis() - startTime);
+                return new Content(null, map(file, size), file);
+            } catch (IOException | RuntimeException e) {
+                if (file != null) {
+                    try {
+                        out.close();
+                        Files.deleteIfExists(file);
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static MappedByteBuffer[] map(final Path file, final long size) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + MAX_SEGMENT_SIZE - 1) / MAX_SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                final long position = (long) i * MAX_SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_SEGMENT_SIZE, size - position));
+            }
+            return segments;
+        }
+    }
+
+    /**
+     * Spooled content, either a byte array or mapped segments of a file
+     */
+    private static final class Content {
+        private final byte[] bytes;
+        private final MappedByteBuffer[] segments;
+        private final Path file;
+
+        Content(final byte[] bytes, final MappedByteBuffer[] segments, final Path file) {
+            this.bytes = bytes;
+            this.segments = segments;
+            this.file = file;
+        }
+
+        InputStream newInputStream() {
+            return bytes != null ? new ByteArrayInputStream(bytes) : new SegmentsInputStream(segments);
+        }
+
+        void delete() {
+            if (file == null) {
+                return;
+            }
+            try {
+                // mapping stays valid until the buffers are collected, files can't be deleted before that on some platforms
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOG.warn("Can't delete spool file {}, deleting it on exit", file, e);
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Stream reading mapped segments one after another, each stream has its own positions, so the segments can be read by more streams
+     */
+    private static final class SegmentsInputStream extends InputStream {
+        private final ByteBuffer[] segments;
+        private int current;
+
+        SegmentsInputStream(final MappedByteBuffer[] segments) {
+            this.segments = new ByteBuffer[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                this.segments[i] = segments[i].duplicate();
+            }
+        }
+
+        private ByteBuffer segment() {
+            while (current < segments.length && !segments[current].hasRemaining()) {
+                current++;
+            }
+            return current < segments.length ? segments[current] : null;
+        }
+
+        @Override
+        public int read() {
+            final ByteBuffer segment = segment();
+            return segment == null ? -1 : segment.get() & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            final ByteBuffer segment = segment();
+            if (segment == null) {
+                return -1;
+            }
+            final int count = Math.min(len, segment.remaining());
+            segment.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(final long n) {
+            long skipped = 0;
+            ByteBuffer segment;
+            while (skipped < n && (segment = segment()) != null) {
+                final int count = (int) Math.min(n - skipped, segment.remaining());
+                segment.position(segment.position() + count);
+                skipped += count;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            final ByteBuffer segment = segment();
+            return segment == null ? 0 : segment.remaining();
+        }
+    }
+}
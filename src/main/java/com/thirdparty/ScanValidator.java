@@ -0,0 +1,662 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fortify.plugin.api.ScanParsingException;
+import com.fortify.plugin.api.ScanData;
+import com.fortify.plugin.api.StaticVulnerabilityBuilder;
+import com.fortify.plugin.api.VulnerabilityHandler;
+import com.thirdparty.scan.Finding;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static com.thirdparty.ScanGenerator.SCAN_INFO_JSON_ENTRY_COMPRESSED_SIZE;
+import static com.thirdparty.ScanGenerator.SCAN_INFO_JSON_ENTRY_SIZE;
+
+/**
+ * <P>Pre-flight check of a scan zip before it is uploaded to SSC, findings are loaded by the same {@link SampleParserPlugin#loadVulnerability}
+ * or {@link SampleParserPlugin#loadFinding} the import uses with the same options, and handed over to a no-op vulnerability builder,
+ * so every value goes through the conversions of the import.
+ * <BR>Unlike the import, a problem doesn't stop the check: it is reported with its entry, finding number and byte offset and the
+ * rest of the finding is skipped. Values the import changes without failing, priorities and statuses replaced with defaults and
+ * values truncated to their limits, are summarized at the end. Parser options are read from {@code sample.parser.*} system properties
+ * like in SSC, so the limits checked are the ones configured for the import: entries are read through a {@link ScanGuard} checking
+ * their inflated size and inflate ratio, the number of findings and their uniqueIds are checked by the guard and a {@link DuplicateFilter}
+ * in the order the plugin hands the findings over. Only the wall time limit is not checked, the check doesn't take the time of the import.
+ * <BR>Entries are read by {@link FindingEntryReader} like the plugin reads them. Findings of a JSON or NDJSON entry are split by
+ * {@link FindingSplitter} and checked by a fork-join pool, shards are checked one per thread. Problems are reported in the order of the findings
+ * either way, those of the number of findings and of duplicate uniqueIds follow the other problems of their entry.
+ */
+public class ScanValidator {
+
+    private static final String OPTION_THREADS = "--threads";
+    private static final String OPTION_MAX_PROBLEMS = "--max-problems";
+    private static final List<String> OPTIONS = Arrays.asList(OPTION_THREADS, OPTION_MAX_PROBLEMS);
+
+    private static final int DEFAULT_MAX_PROBLEMS = 100;
+    // distinct replaced values listed for each attribute and replacement
+    private static final int MAX_EXAMPLES = 5;
+    private static final double MB = 1024 * 1024;
+
+    private final File scanFile;
+    private final int threads;
+    private final int maxProblems;
+    private final ParserSettings settings = ParserSettings.fromSystemProperties();
+    private final SampleParserPlugin plugin = new SampleParserPlugin(settings);
+    private final ScanGuard guard = new ScanGuard(withoutMaxSeconds(settings));
+    private final DuplicateFilter duplicates = newDuplicateFilter(settings);
+    // findings are loaded directly to the builder when the import loads them so
+    private final boolean directMode = settings.isDirectMode() && !new ScanGuard(settings).isTruncatingMidFinding()
+            && settings.getDuplicatePolicy() != ParserSettings.DuplicatePolicy.LAST;
+    private final ThreadLocal<FindingChecker> checkers = ThreadLocal.withInitial(FindingChecker::new);
+    // a scan-wide limit stopped handing the findings over
+    private boolean handOverStopped;
+
+    private ScanValidator(final File scanFile, final int threads, final int maxProblems) {
+        this.scanFile = scanFile;
+        this.threads = threads;
+        this.maxProblems = maxProblems;
+    }
+
+    /**
+     * Settings of the guard, the wall time of the check is not the one of the import
+     */
+    private static ParserSettings withoutMaxSeconds(final ParserSettings settings) {
+        if (!settings.getMaxSeconds().isSet()) {
+            return settings;
+        }
+        final Properties props = new Properties();
+        props.putAll(System.getProperties());
+        props.remove(ParserSettings.PREFIX + "limits.maxSeconds");
+        return new ParserSettings(props);
+    }
+
+    /**
+     * Filter of the uniqueIds in the order the plugin hands the findings over, {@code null} if duplicates are not checked.
+     * <BR>With {@link ParserSettings.DuplicatePolicy#LAST} the import finds the same duplicates as with
+     * {@link ParserSettings.DuplicatePolicy#FIRST}, only the occurrence kept differs, so they are counted like that.
+     */
+    private static DuplicateFilter newDuplicateFilter(final ParserSettings settings) {
+        switch (settings.getDuplicatePolicy()) {
+            case OFF:
+                return null;
+            case LAST:
+                return new DuplicateFilter(ParserSettings.DuplicatePolicy.FIRST, settings.getDuplicatesMaxIds(), new ParseMetrics());
+            default:
+                return new DuplicateFilter(settings.getDuplicatePolicy(), settings.getDuplicatesMaxIds(), new ParseMetrics());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = args.length >= 1 ? ToolOptions.parse(args, 1, OPTIONS::contains) : null;
+        if (options == null) {
+            System.err.println(String.format("Usage:\n" +
+                    "\tjava -cp <class_path> %s <SCAN_ZIP_NAME> [" + OPTION_THREADS + " <THREADS>] [" + OPTION_MAX_PROBLEMS + " <COUNT>]\n" +
+                    "\t<THREADS> number of threads checking findings, the number of processors by default\n" +
+                    "\t<COUNT> number of problems listed, %d by default, all problems are counted\n" +
+                    "\tExits with status 3 if the scan has problems\n"
+                    , ScanValidator.class.getName(), DEFAULT_MAX_PROBLEMS));
+            System.exit(1);
+        }
+        final int threads = options.containsKey(OPTION_THREADS) ? Integer.parseInt(options.get(OPTION_THREADS)) : Runtime.getRuntime().availableProcessors();
+        final int maxProblems = options.containsKey(OPTION_MAX_PROBLEMS) ? Integer.parseInt(options.get(OPTION_MAX_PROBLEMS)) : DEFAULT_MAX_PROBLEMS;
+        if (!new ScanValidator(new File(args[0]), threads, maxProblems).run()) {
+            System.exit(3);
+        }
+    }
+
+    /**
+     * @return whether the scan has no problems
+     */
+    private boolean run() throws Exception {
+        final long startTime = System.nanoTime();
+        final Report report = new Report(maxProblems);
+        long size = 0;
+        try (final ZipFile zipFile = new ZipFile(scanFile)) {
+            final List<ZipEntry> entries = findingEntries(zipFile);
+            if (entries.isEmpty()) {
+                report.problem(String.format("No findings entry in %s", scanFile.getPath()));
+            } else {
+                final ScanData scanData = PluginApiStubs.scanData(UUID.randomUUID().toString(), zipFile);
+                validateHeader(scanData, report);
+                // sizes of the entries are only needed to check their inflate ratio
+                final Properties scanInfo = settings.getMaxInflateRatio().isSet() ? SampleParserPlugin.readScanInfo(scanData) : null;
+                for (final ZipEntry entry : entries) {
+                    size += entry.getSize();
+                }
+                final ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+                try {
+                    if (pool != null && entries.size() > 1) {
+                        // shards are checked one per thread, reports are collected in the order of the entries
+                        final List<ForkJoinTask<Report>> tasks = new ArrayList<>();
+                        for (int shard = 0; shard < entries.size(); shard++) {
+                            final ZipEntry entry = entries.get(shard);
+                            final long compressedSize = getCompressedSize(scanInfo, shard);
+                            tasks.add(pool.submit(() -> validateEntry(zipFile, entry, compressedSize, null)));
+                        }
+                        for (int shard = 0; shard < entries.size(); shard++) {
+                            addEntry(report, entries.get(shard).getName(), tasks.get(shard).join());
+                        }
+                    } else {
+                        for (int shard = 0; shard < entries.size(); shard++) {
+                            final ZipEntry entry = entries.get(shard);
+                            addEntry(report, entry.getName(), validateEntry(zipFile, entry, getCompressedSize(scanInfo, shard), pool));
+                        }
+                    }
+                    noteDuplicates(report);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                } finally {
+                    if (pool != null) {
+                        pool.shutdownNow();
+                    }
+                }
+            }
+        } finally {
+            plugin.stop();
+        }
+        final double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.println(String.format("Scan %s: %d findings checked in %.3f s, %.1f MB/s uncompressed", scanFile.getPath(), report.findings,
+                seconds, size / MB / seconds));
+        report.print();
+        return report.problemCount == 0;
+    }
+
+    /**
+     * Scan entry followed by the shard entries {@code findings-0001.*}, {@code findings-0002.*}, ... until a shard is missing, like the plugin reads them
+     */
+    private static List<ZipEntry> findingEntries(final ZipFile zipFile) {
+        final List<ZipEntry> found = new ArrayList<>();
+        final ZipEntry scanEntry = findEntry(zipFile, 0);
+        if (scanEntry == null) {
+            return found;
+        }
+        found.add(scanEntry);
+        for (int shard = 1; ; shard++) {
+            final ZipEntry entry = findEntry(zipFile, shard);
+            if (entry == null) {
+                return found;
+            }
+            found.add(entry);
+        }
+    }
+
+    /**
+     * @param shard shard number or 0 for the scan entry
+     */
+    private static ZipEntry findEntry(final ZipFile zipFile, final int shard) {
+        for (final Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements(); ) {
+            final ZipEntry entry = entries.nextElement();
+            if (shard == 0 ? ScanFormat.isScanEntry(entry.getName()) : ScanFormat.isShardEntry(entry.getName(), shard)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compressed size of the entry stated by {@code scan.info} like the plugin takes it, -1 if it is not known
+     *
+     * @param shard shard number or 0 for the scan entry
+     */
+    private static long getCompressedSize(final Properties scanInfo, final int shard) {
+        return shard == 0 ? SampleParserPlugin.getCompressedSize(scanInfo, SCAN_INFO_JSON_ENTRY_COMPRESSED_SIZE, SCAN_INFO_JSON_ENTRY_SIZE)
+                : SampleParserPlugin.getShardCompressedSize(scanInfo, shard);
+    }
+
+    /**
+     * Reads the scan header by {@link SampleParserPlugin#parseScan} like SSC does
+     */
+    private void validateHeader(final ScanData scanData, final Report report) {
+        final Map<String, Object> header = new LinkedHashMap<>();
+        try {
+            plugin.parseScan(scanData, PluginApiStubs.scanBuilder(header));
+            System.out.println("Scan header: " + header);
+        } catch (ScanParsingException | IOException | RuntimeException e) {
+            report.problem(String.format("Scan header: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * Checks the findings of the entry against the scan-wide limits and the duplicates in the order the plugin hands them over,
+     * then adds its report
+     */
+    private void addEntry(final Report report, final String entryName, final Report entryReport) throws IOException {
+        if (handOverStopped && entryReport.importEnd != null) {
+            // entries read after the import stopped don't stop it once more
+            entryReport.notes.remove(entryReport.importEnd);
+        }
+        for (int i = 0; i < entryReport.findings && !handOverStopped; i++) {
+            final String uniqueId = duplicates == null ? null : entryReport.uniqueIds.get(i);
+            try {
+                guard.beforeFinding();
+                if (uniqueId != null) {
+                    duplicates.accept(uniqueId);
+                }
+            } catch (ScanLimitException e) {
+                handOverStopped = true;
+                final String where = String.format("%s, finding %d", entryName, i + 1);
+                if (e.isTruncate()) {
+                    entryReport.end(String.format("%s: %s", where, e.getMessage()));
+                } else {
+                    entryReport.problem(String.format("%s: %s, the findings after it are not checked against the scan-wide limits", where, e.getMessage()));
+                }
+            } catch (ScanParsingException e) {
+                // the import fails on the first duplicate, all of them are listed unless there are too many ids to check them
+                entryReport.problem(String.format("%s, finding %d (%s): %s", entryName, i + 1, uniqueId, e.getMessage()));
+                handOverStopped = e.getCause() instanceof IllegalStateException;
+            }
+        }
+        // the import doesn't read findings after a truncating limit
+        handOverStopped |= entryReport.importEnd != null;
+        entryReport.uniqueIds.clear();
+        report.add(entryReport);
+    }
+
+    /**
+     * Notes the duplicates the import skips or imports without failing
+     */
+    private void noteDuplicates(final Report report) {
+        if (duplicates == null || settings.getDuplicatePolicy() == ParserSettings.DuplicatePolicy.FAIL) {
+            return;
+        }
+        if (duplicates.getDuplicates() > 0) {
+            report.notes.add(String.format("%d findings with a uniqueId occurring before are %s (%sduplicates=%s), e.g. %s", duplicates.getDuplicates(),
+                    settings.getDuplicatePolicy() == ParserSettings.DuplicatePolicy.LOG ? "imported" : "not imported", ParserSettings.PREFIX,
+                    settings.getDuplicatePolicy(), duplicates.getExamples()));
+        }
+        if (duplicates.isIdsExhausted()) {
+            report.notes.add(String.format("Duplicates are checked among the first %d distinct uniqueIds only (%sduplicates.maxIds)",
+                    duplicates.getMaxIds(), ParserSettings.PREFIX));
+        }
+    }
+
+    /**
+     * @param compressedSize compressed size of the entry or a negative number if it is not known
+     */
+    private Report validateEntry(final ZipFile zipFile, final ZipEntry entry, final long compressedSize, final ForkJoinPool pool) {
+        final Report report = new Report(maxProblems);
+        final String entryName = entry.getName();
+        try (final PushbackInputStream in = new PushbackInputStream(guard.guard(zipFile.getInputStream(entry), compressedSize), ScanFormat.SIGNATURE_LENGTH);
+             final JsonParser jsonParser = FindingEntryReader.createParser(in)) {
+            if (jsonParser.nextToken() != JsonToken.START_OBJECT) {
+                report.stop(String.format("%s at byte offset %d: Expected object start", entryName, byteOffset(jsonParser.getTokenLocation())));
+                return report;
+            }
+            final FindingEntryReader reader = new FindingEntryReader(jsonParser);
+            final FindingSplitter splitter = pool != null && reader.moveToFindings() ? reader.splitFindings(settings.getParallelBatchSize(), false) : null;
+            if (splitter != null) {
+                // the splitter reads the rest of the input, other top-level fields are not needed for vulnerabilities
+                validateFindingsParallel(splitter, entryName, pool, report);
+            } else {
+                validateFindings(jsonParser, reader, entryName, report);
+            }
+        } catch (JsonProcessingException e) {
+            report.stop(String.format("%s at byte offset %d: %s", entryName, byteOffset(e.getLocation()), e.getOriginalMessage()));
+        } catch (ScanLimitException e) {
+            limitReached(report, entryName, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return report;
+    }
+
+    /**
+     * Records a limit of the guard reached while reading an entry, the import stops there or fails
+     */
+    private static void limitReached(final Report report, final String entryName, final ScanLimitException e) {
+        if (e.isTruncate()) {
+            report.end(String.format("%s: %s", entryName, e.getMessage()));
+        } else {
+            report.stop(String.format("%s: %s", entryName, e.getMessage()));
+        }
+    }
+
+    private void validateFindings(final JsonParser jsonParser, final FindingEntryReader reader, final String entryName, final Report report)
+            throws IOException {
+        final FindingChecker checker = checkers.get();
+        long index = 0;
+        while (!report.stopped && reader.nextFinding()) {
+            checker.check(jsonParser, entryName, ++index, 0, report);
+        }
+    }
+
+    /**
+     * Splits the rest of the findings array or lines into batches checked by the pool, reports of the batches are added in their order
+     * through a bounded window like {@link SampleParserPlugin} hands over parsed findings
+     */
+    private void validateFindingsParallel(final FindingSplitter splitter, final String entryName, final ForkJoinPool pool, final Report report)
+            throws IOException {
+        final Deque<ForkJoinTask<Report>> window = new ArrayDeque<>();
+        final int maxWindow = pool.getParallelism() * 4;
+        long index = 0;
+        Exception splitFailure = null;
+        try {
+            FindingSplitter.Batch batch;
+            while (!report.stopped && (batch = splitter.next()) != null) {
+                final FindingSplitter.Batch task = batch;
+                final long firstIndex = index + 1;
+                index += batch.findingCount;
+                window.addLast(pool.submit(() -> validateBatch(task, entryName, firstIndex)));
+                if (window.size() >= maxWindow) {
+                    report.add(window.removeFirst().join());
+                }
+            }
+        } catch (ScanParsingException | ScanLimitException e) {
+            // batches split before hold complete findings, they are reported first
+            splitFailure = e;
+        }
+        while (!report.stopped && !window.isEmpty()) {
+            report.add(window.removeFirst().join());
+        }
+        if (splitFailure instanceof ScanLimitException && !report.stopped) {
+            limitReached(report, entryName, (ScanLimitException) splitFailure);
+        } else if (splitFailure != null && !report.stopped) {
+            report.stop(String.format("%s: %s", entryName, splitFailure.getMessage()));
+        }
+    }
+
+    private Report validateBatch(final FindingSplitter.Batch batch, final String entryName, final long firstIndex) {
+        final Report report = new Report(maxProblems);
+        final FindingChecker checker = checkers.get();
+        long offsetDelta = batch.offsets[0];
+        try (final JsonParser jsonParser = FindingEntryReader.createParser(batch)) {
+            for (int i = 0; i < batch.findingCount && !report.stopped; i++) {
+                jsonParser.nextToken();
+                offsetDelta = batch.offsets[i] - jsonParser.getTokenLocation().getByteOffset();
+                checker.check(jsonParser, entryName, firstIndex + i, offsetDelta, report);
+            }
+        } catch (JsonProcessingException e) {
+            report.stop(String.format("%s at byte offset %d: %s", entryName, byteOffset(e.getLocation()) + offsetDelta, e.getOriginalMessage()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return report;
+    }
+
+    private static long byteOffset(final JsonLocation location) {
+        return location == null ? -1 : location.getByteOffset();
+    }
+
+    /**
+     * <P>Loads findings like the plugin does and records their problems and the values the import changes.
+     * <BR>Each thread checking findings uses its own checker, it keeps the parse context across findings like a parser thread of the plugin.
+     * In direct mode the checker is the handler of the vulnerabilities, it tells the uniqueId of the finding loaded.
+     */
+    private final class FindingChecker implements ParseContext.ValueObserver, VulnerabilityHandler {
+        private final ParseContext ctx = new ParseContext(settings);
+        private final StaticVulnerabilityBuilder vb = PluginApiStubs.noOpStaticVulnerabilityBuilder();
+        // duplicates are checked in the order of the findings when the reports are added up
+        private final DuplicateFilter handOverAll = new DuplicateFilter(ParserSettings.DuplicatePolicy.OFF, 1, ctx.getMetrics());
+        private Report report;
+        private String startedId;
+
+        FindingChecker() {
+            ctx.setValueObserver(this);
+        }
+
+        /**
+         * Checks the finding at the parser, the parser is left at the end of the finding unless the report is stopped
+         *
+         * @param index number of the finding in the entry, starting at 1
+         * @param offsetDelta difference of the byte offset of the finding in the entry and in the parsed input
+         */
+        void check(final JsonParser jsonParser, final String entryName, final long index, final long offsetDelta, final Report report) throws IOException {
+            this.report = report;
+            report.findings++;
+            String uniqueId = null;
+            try {
+                uniqueId = load(jsonParser, entryName, index, offsetDelta);
+            } finally {
+                if (duplicates != null) {
+                    report.uniqueIds.add(uniqueId);
+                }
+            }
+        }
+
+        /**
+         * @return uniqueId of the finding or {@code null} if it has a problem
+         */
+        private String load(final JsonParser jsonParser, final String entryName, final long index, final long offsetDelta) throws IOException {
+            final long start = jsonParser.getTokenLocation().getByteOffset() + offsetDelta;
+            if (jsonParser.currentToken() != JsonToken.START_OBJECT) {
+                report.problem(problem(entryName, index, null, start, String.format("Expected finding object, found %s", jsonParser.currentToken())));
+                jsonParser.skipChildren();
+                return null;
+            }
+            final JsonStreamContext outer = jsonParser.getParsingContext().getParent();
+            final Finding fn = directMode ? null : new Finding();
+            startedId = null;
+            try {
+                if (directMode) {
+                    plugin.loadVulnerability(jsonParser, this, ctx, handOverAll);
+                } else {
+                    plugin.loadFinding(jsonParser, fn, ctx);
+                }
+                if (jsonParser.getParsingContext() != outer) {
+                    // the plugin would take the rest of the finding for the next one
+                    final String message = String.format("Unexpected %s, value of a finding attribute is an object or array", jsonParser.currentToken());
+                    report.problem(problem(entryName, index, uniqueId(fn), jsonParser.getTokenLocation().getByteOffset() + offsetDelta, message));
+                    skipRest(jsonParser, outer);
+                    return null;
+                }
+            } catch (ScanParsingException e) {
+                // loading directly fails at the end of a finding without uniqueId, it is reported below like for a loaded finding
+            } catch (IllegalArgumentException | JsonProcessingException | ScanLimitException e) {
+                if (e instanceof ScanLimitException && ((ScanLimitException) e).isTruncate()) {
+                    // only limits of the guard truncate by failing, the import stops there
+                    throw (ScanLimitException) e;
+                }
+                final String fieldName = jsonParser.getCurrentName();
+                final String detail;
+                if (e instanceof JsonProcessingException) {
+                    detail = ((JsonProcessingException) e).getOriginalMessage();
+                } else if (e instanceof ScanLimitException) {
+                    // the message tells the location in the parsed input, which is a batch of findings when they are checked in parallel
+                    detail = e.getMessage().replace(" at " + jsonParser.getTokenLocation(), "");
+                } else {
+                    detail = e.getMessage();
+                }
+                final String message = problem(entryName, index, uniqueId(fn), jsonParser.getTokenLocation().getByteOffset() + offsetDelta,
+                        fieldName == null ? detail : String.format("%s: %s", fieldName, detail));
+                try {
+                    skipRest(jsonParser, outer);
+                    report.problem(message);
+                } catch (IOException skipFailure) {
+                    // the input itself is broken, the findings after it can't be told apart
+                    report.stop(message);
+                }
+                return null;
+            }
+            final String uniqueId = uniqueId(fn);
+            if (uniqueId == null) {
+                report.problem(problem(entryName, index, null, start, String.format("Missing %s", VulnAttribute.UNIQUE_ID.attrName())));
+                return null;
+            }
+            if (!directMode) {
+                plugin.populateVulnerability(vb, fn);
+                vb.completeVulnerability();
+            }
+            return uniqueId;
+        }
+
+        /**
+         * uniqueId of the finding being checked, known in direct mode once its vulnerability is started
+         */
+        private String uniqueId(final Finding fn) {
+            return directMode ? startedId : fn.getUniqueId();
+        }
+
+        @Override
+        public StaticVulnerabilityBuilder startStaticVulnerability(final String uniqueId) {
+            startedId = uniqueId;
+            return vb;
+        }
+
+        private void skipRest(final JsonParser jsonParser, final JsonStreamContext outer) throws IOException {
+            while (jsonParser.getParsingContext() != outer) {
+                if (jsonParser.nextToken() == null) {
+                    throw new EOFException("Unexpected end of input in a finding");
+                }
+            }
+        }
+
+        private String problem(final String entryName, final long index, final String uniqueId, final long offset, final String message) {
+            return String.format("%s, finding %d%s at byte offset %d: %s", entryName, index,
+                    uniqueId == null ? "" : String.format(" (%s)", uniqueId), offset, message);
+        }
+
+        @Override
+        public void valueTruncated(final JsonParser jsonParser) throws IOException {
+            report.truncated.merge(jsonParser.getCurrentName(), 1L, Long::sum);
+        }
+
+        @Override
+        public void valueCoerced(final JsonParser jsonParser, final String value, final Enum<?> replacement) throws IOException {
+            report.coerced.computeIfAbsent(String.format("%s values replaced with %s", jsonParser.getCurrentName(), replacement), k -> new Coerced()).add(value);
+        }
+    }
+
+    /**
+     * Problems and changed values of an entry or a batch of findings, reports are added up in the order of the findings
+     */
+    private static final class Report {
+        private final int maxProblems;
+        private final List<String> problems = new ArrayList<>();
+        private final Map<String, Long> truncated = new TreeMap<>();
+        private final Map<String, Coerced> coerced = new TreeMap<>();
+        private final List<String> notes = new ArrayList<>();
+        // uniqueIds of the findings in their order, null for findings with a problem, while they are to be checked for duplicates
+        private final List<String> uniqueIds = new ArrayList<>();
+        private String importEnd;
+        private long findings;
+        private long problemCount;
+        private boolean stopped;
+
+        Report(final int maxProblems) {
+            this.maxProblems = maxProblems;
+        }
+
+        void problem(final String message) {
+            problemCount++;
+            if (problems.size() < maxProblems) {
+                problems.add(message);
+            }
+        }
+
+        /**
+         * Records a problem the rest of the entry can't be checked after
+         */
+        void stop(final String message) {
+            problem(message + ", the rest of the entry is not checked");
+            stopped = true;
+        }
+
+        /**
+         * Records the point a truncating limit stops the import at, the rest of the entry is not checked
+         */
+        void end(final String message) {
+            importEnd = message + ", the findings from there on are not imported";
+            notes.add(importEnd);
+            stopped = true;
+        }
+
+        void add(final Report other) {
+            findings += other.findings;
+            problemCount += other.problemCount;
+            for (final String problem : other.problems) {
+                if (problems.size() >= maxProblems) {
+                    break;
+                }
+                problems.add(problem);
+            }
+            other.truncated.forEach((fieldName, count) -> truncated.merge(fieldName, count, Long::sum));
+            other.coerced.forEach((key, values) -> coerced.computeIfAbsent(key, k -> new Coerced()).addAll(values));
+            notes.addAll(other.notes);
+            uniqueIds.addAll(other.uniqueIds);
+            if (importEnd == null) {
+                importEnd = other.importEnd;
+            }
+            stopped |= other.stopped;
+        }
+
+        void print() {
+            if (problemCount == 0) {
+                System.out.println("No problems found.");
+            } else {
+                System.out.println(String.format("%d problems:", problemCount));
+                problems.forEach(problem -> System.out.println("\t" + problem));
+                if (problemCount > problems.size()) {
+                    System.out.println(String.format("\t... %d more problems", problemCount - problems.size()));
+                }
+            }
+            if (!truncated.isEmpty() || !coerced.isEmpty() || !notes.isEmpty()) {
+                System.out.println("Values imported other than they are in the scan:");
+                notes.forEach(note -> System.out.println("\t" + note));
+                truncated.forEach((fieldName, count) -> System.out.println(String.format("\t%d %s values truncated to their length limit", count, fieldName)));
+                coerced.forEach((key, values) -> System.out.println(String.format("\t%d %s, e.g. %s", values.count, key, values.examples.entrySet().stream()
+                        .map(example -> String.format("'%s' (%d)", example.getKey(), example.getValue())).collect(Collectors.joining(", ")))));
+            }
+        }
+    }
+
+    /**
+     * Count of values replaced with the same default and the first few distinct values with their counts
+     */
+    private static final class Coerced {
+        private final Map<String, Long> examples = new LinkedHashMap<>();
+        private long count;
+
+        void add(final String value) {
+            count++;
+            addExample(value, 1);
+        }
+
+        void addAll(final Coerced other) {
+            count += other.count;
+            other.examples.forEach(this::addExample);
+        }
+
+        private void addExample(final String value, final long n) {
+            if (examples.size() < MAX_EXAMPLES || examples.containsKey(value)) {
+                examples.merge(value, n, Long::sum);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * <P>Bounded dictionary of string values repeating across findings of a scan.
+ * <BR>Values are looked up by content straight from the parser text buffer, so a repeated value is neither copied to a new string
+ * nor handed over to SSC as another instance. Once the dictionary reaches its entry limit, new values are no longer added
+ * and are returned as fresh strings. It is not thread safe, each {@link ParseContext} has its own.
+ */
+final class StringDictionary {
+
+    private final int maxEntries;
+    private final int maxValueLength;
+    private final String[] values;
+    private final int[] hashes;
+    private final int mask;
+
+    private int size;
+    private long hits;
+    private long hitChars;
+    private long misses;
+
+    /**
+     * @param maxEntries maximal number of distinct values kept, 0 disables the dictionary
+     * @param maxValueLength values longer than this are never looked up
+     */
+    StringDictionary(final int maxEntries, final int maxValueLength) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.maxValueLength = maxValueLength;
+        // at most half full, so that probe sequences stay short
+        final int capacity = this.maxEntries == 0 ? 1 : Integer.highestOneBit(Math.max(1, this.maxEntries - 1)) << 2;
+        this.values = new String[capacity];
+        this.hashes = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Returns the dictionary instance of the text, the text is copied only if it is not in the dictionary yet
+     */
+    String get(final char[] buf, final int offset, final int length) {
+        if (maxEntries == 0 || length > maxValueLength) {
+            return new String(buf, offset, length);
+        }
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        int slot = hash & mask;
+        String value;
+        while ((value = values[slot]) != null) {
+            if (hashes[slot] == hash && contentEquals(value, buf, offset, length)) {
+                return hit(value);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return miss(slot, hash, new String(buf, offset, length));
+    }
+
+    private String hit(final String value) {
+        hits++;
+        hitChars += value.length();
+        return value;
+    }
+
+    private String miss(final int slot, final int hash, final String value) {
+        misses++;
+        if (size < maxEntries) {
+            values[slot] = value;
+            hashes[slot] = hash;
+            size++;
+        }
+        return value;
+    }
+
+    private static boolean contentEquals(final String value, final char[] buf, final int offset, final int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != buf[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Number of lookups which returned a value already in the dictionary */
+    long getHits() {
+        return hits;
+    }
+
+    /** Total length of the values returned from the dictionary, i.e. characters not copied to new strings */
+    long getHitChars() {
+        return hitChars;
+    }
+
+    /** Number of lookups of values not found in the dictionary */
+    long getMisses() {
+        return misses;
+    }
+
+    /** Number of distinct values kept */
+    int size() {
+        return size;
+    }
+}
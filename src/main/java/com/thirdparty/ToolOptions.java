@@ -0,0 +1,58 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * <P>Command line of the scan tools, positional arguments followed by {@code --name value} options.
+ */
+final class ToolOptions {
+
+    private static final String OPTION_PREFIX = "--";
+
+    private ToolOptions() {
+    }
+
+    /**
+     * @return count of the arguments before the first option
+     */
+    static int countPositional(final String[] args) {
+        int positional = 0;
+        while (positional < args.length && !args[positional].startsWith(OPTION_PREFIX)) {
+            positional++;
+        }
+        return positional;
+    }
+
+    /**
+     * Parses {@code --name value} pairs starting at the given index, unknown options are reported on the standard error.
+     *
+     * @param known tells the known option names, given with their {@code --} prefix
+     * @return options by name or {@code null} if an option is unknown or has no value
+     */
+    static Map<String, String> parse(final String[] args, final int start, final Predicate<String> known) {
+        final Map<String, String> options = new HashMap<>();
+        for (int i = start; i < args.length; i += 2) {
+            if (!args[i].startsWith(OPTION_PREFIX) || !known.test(args[i]) || i + 1 >= args.length) {
+                System.err.println(String.format("Unknown option or missing value: %s", args[i]));
+                return null;
+            }
+            options.put(args[i], args[i + 1]);
+        }
+        return options;
+    }
+}
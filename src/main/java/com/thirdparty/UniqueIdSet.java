@@ -0,0 +1,167 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * <P>Set of finding uniqueIds kept as pairs of {@code long}s in one open-addressed array, 16 bytes per slot and no object per id.
+ * <BR>Ids in the canonical lower case UUID form are stored as their 128 bits, so they are compared exactly; other ids are stored
+ * as a 128-bit hash of their characters, whose collision is astronomically unlikely but would be reported as a duplicate.
+ * The table is kept at most 3/4 full and doubles when it grows, the old and the new array are both live while the ids are moved:
+ * 10M ids take 256 MB, 384 MB while growing to it, 20M ids 512 MB and 768 MB. It refuses to grow past the maximal number of ids
+ * it is created with.
+ * It is not thread safe.
+ */
+final class UniqueIdSet {
+
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int MAX_SLOTS = 1 << 29;
+    private static final int UUID_LENGTH = 36;
+
+    private final int maxSize;
+    private long[] keys = new long[INITIAL_SLOTS * 2];
+    private int mask = INITIAL_SLOTS - 1;
+    private int size;
+    // (0, 0) marks empty slots, the nil UUID is kept aside
+    private boolean containsZero;
+
+    UniqueIdSet() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxSize maximal number of ids, adding another one fails with an {@link IllegalStateException}
+     */
+    UniqueIdSet(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return {@code true} if the id was not in the set yet
+     * @throws IllegalStateException if the id is not in the set and the set has its maximal number of ids
+     */
+    boolean add(final String uniqueId) {
+        if (isUuid(uniqueId)) {
+            return add(hex(uniqueId, 0, 8) << 32 | hex(uniqueId, 9, 13) << 16 | hex(uniqueId, 14, 18),
+                    hex(uniqueId, 19, 23) << 48 | hex(uniqueId, 24, 36));
+        }
+        return add(hash(uniqueId, 0x9E3779B97F4A7C15L), hash(uniqueId, 0xC2B2AE3D27D4EB4FL));
+    }
+
+    int size() {
+        return size;
+    }
+
+    private boolean add(final long hi, final long lo) {
+        if (hi == 0 && lo == 0) {
+            if (containsZero) {
+                return false;
+            }
+            checkSize();
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int slot = slot(hi, lo, mask);
+        while (keys[slot * 2] != 0 || keys[slot * 2 + 1] != 0) {
+            if (keys[slot * 2] == hi && keys[slot * 2 + 1] == lo) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        checkSize();
+        keys[slot * 2] = hi;
+        keys[slot * 2 + 1] = lo;
+        if (++size > (mask + 1) / 4 * 3) {
+            grow();
+        }
+        return true;
+    }
+
+    private void checkSize() {
+        if (size >= maxSize) {
+            throw new IllegalStateException(String.format("More than %d unique ids", maxSize));
+        }
+    }
+
+    private void grow() {
+        final int slots = (mask + 1) * 2;
+        if (slots > MAX_SLOTS) {
+            throw new IllegalStateException(String.format("More than %d unique ids", size - 1));
+        }
+        final long[] old = keys;
+        keys = new long[slots * 2];
+        mask = slots - 1;
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != 0 || old[i + 1] != 0) {
+                int slot = slot(old[i], old[i + 1], mask);
+                while (keys[slot * 2] != 0 || keys[slot * 2 + 1] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot * 2] = old[i];
+                keys[slot * 2 + 1] = old[i + 1];
+            }
+        }
+    }
+
+    private static int slot(final long hi, final long lo, final int mask) {
+        return (int) mix(hi ^ Long.rotateLeft(lo, 32)) & mask;
+    }
+
+    /**
+     * Whether the id is a UUID in the form of {@link java.util.UUID#toString()}; upper case ids are hashed, so they don't equal their lower case form
+     */
+    private static boolean isUuid(final String id) {
+        if (id.length() != UUID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            final char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hex(final String id, final int from, final int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            final char c = id.charAt(i);
+            value = value << 4 | (c <= '9' ? c - '0' : c - 'a' + 10);
+        }
+        return value;
+    }
+
+    private static long hash(final String id, final long seed) {
+        long h = seed ^ id.length();
+        for (int i = 0; i < id.length(); i++) {
+            h = Long.rotateLeft(h ^ id.charAt(i) * 0xC4CEB9FE1A85EC53L, 31) * 0x9E3779B97F4A7C15L;
+        }
+        return mix(h);
+    }
+
+    /** Finalizer of MurmurHash3, spreads every input bit over the whole result */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -14,8 +14,14 @@ package com.thirdparty;
  */
 
 
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -55,27 +61,64 @@ enum VulnAttribute {
     ;
 
     private final String attrName;
+    private final SerializedString serializedName;
     private static final Map<String, VulnAttribute> lookup =
             new HashMap<>();
 
+    // Order of finding fields, the only definition of it: ScanGenerator writes fields in this order and the parser expects it,
+    // looking field names up only when it doesn't match. Order of builder calls is a separate matter of finding-attributes.txt.
+    private static final VulnAttribute[] FINDING_FIELD_ORDER = {
+            UNIQUE_ID, CATEGORY, FILE_NAME, VULNERABILITY_ABSTRACT, LINE_NUMBER, CONFIDENCE, IMPACT, PRIORITY,
+            CATEGORY_ID, CUSTOM_STATUS, ARTIFACT, DESCRIPTION, COMMENT, BUILD_NUMBER, LAST_CHANGE_DATE, ARTIFACT_BUILD_DATE, TEXT_BASE64
+    };
+    private static final VulnAttribute[] nextFindingField = new VulnAttribute[values().length];
+
     static {
         for(VulnAttribute s : EnumSet.allOf(VulnAttribute.class))
             lookup.put(s.attrName(), s);
+        for (int i = 0; i < FINDING_FIELD_ORDER.length - 1; i++)
+            nextFindingField[FINDING_FIELD_ORDER[i].ordinal()] = FINDING_FIELD_ORDER[i + 1];
     }
 
     VulnAttribute(final String attrName) {
         this.attrName = attrName;
+        this.serializedName = new SerializedString(attrName);
     }
 
     public String attrName() {
         return attrName;
     }
 
+    /**
+     * Attribute name with cached encoded forms, it can be matched by parser directly against input bytes.
+     */
+    public SerializableString serializedName() {
+        return serializedName;
+    }
+
+    /**
+     * First field of a finding written by ScanGenerator
+     */
+    public static VulnAttribute firstFindingField() {
+        return FINDING_FIELD_ORDER[0];
+    }
+
+    /**
+     * Fields of a finding in the order ScanGenerator writes them
+     */
+    public static List<VulnAttribute> findingFields() {
+        return Collections.unmodifiableList(Arrays.asList(FINDING_FIELD_ORDER));
+    }
+
+    /**
+     * Field written by ScanGenerator after this one or {@code null} if this is the last field of a finding or not a finding field at all
+     */
+    public VulnAttribute nextFindingField() {
+        return nextFindingField[ordinal()];
+    }
+
     public static VulnAttribute get(String attrName) {
-        try {
-            return lookup.get(attrName);
-        } catch (Exception e) {
-            return null;
-        }
+        // field names from Jackson parser are interned, so the key comparison is mostly a reference check
+        return lookup.get(attrName);
     }
 }
\ No newline at end of file
@@ -0,0 +1,403 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static com.thirdparty.ScanGenerator.CustomStatus;
+import static com.thirdparty.ScanGenerator.DATE_DESERIALIZER;
+import static com.thirdparty.ScanGenerator.GenPriority;
+
+/**
+ * <P>Distributions of values of randomly generated findings.
+ * <BR>Profile is either named ({@value #UNIFORM}, {@value #REALISTIC}) or read from a properties file with the keys listed in {@link #KEYS},
+ * a file can also be fitted to an existing scan by {@link #fit(File)}. Keys missing in a file have the values of the uniform profile.
+ */
+final class WorkloadProfile {
+
+    /** Every category, priority and status equally likely, long texts of the same size and unique, fixed dates */
+    static final String UNIFORM = "uniform";
+    /** Skewed categories, priorities and statuses, heavy-tailed long text sizes, repeated descriptions and dates spread over a year */
+    static final String REALISTIC = "realistic";
+
+    /** Zipf exponent of the category distribution, 0 for uniform categories */
+    static final String CATEGORY_SKEW = "categorySkew";
+    /** Median of long text sizes in bytes, the LONG_TEXT_SIZE argument of the generator when not given */
+    static final String TEXT_SIZE_MEDIAN = "textSize.median";
+    /** Standard deviation of the logarithm of long text sizes (log-normal distribution), 0 for the same size of all texts */
+    static final String TEXT_SIZE_SIGMA = "textSize.sigma";
+    /** Maximal long text size in bytes */
+    static final String TEXT_SIZE_MAX = "textSize.max";
+    /** Ratio of findings sharing description and comment with other findings of their category */
+    static final String DUPLICATE_DESCRIPTION_RATIO = "duplicateDescriptionRatio";
+    /** Comma separated relative weights of Critical, High, Medium and Low priorities */
+    static final String PRIORITY_WEIGHTS = "priorityWeights";
+    /** Comma separated relative weights of NEW, OPEN and REMEDIATED statuses */
+    static final String STATUS_WEIGHTS = "statusWeights";
+    /** Number of days the change and build dates of findings are spread over */
+    static final String DATE_SPREAD_DAYS = "dateSpreadDays";
+
+    static final List<String> KEYS = Collections.unmodifiableList(Arrays.asList(CATEGORY_SKEW, TEXT_SIZE_MEDIAN, TEXT_SIZE_SIGMA, TEXT_SIZE_MAX,
+            DUPLICATE_DESCRIPTION_RATIO, PRIORITY_WEIGHTS, STATUS_WEIGHTS, DATE_SPREAD_DAYS));
+
+    private static final int DEFAULT_TEXT_SIZE_MAX = 16 * 1024 * 1024;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final double categorySkew;
+    private final int textSizeMedian;
+    private final double textSizeSigma;
+    private final int textSizeMax;
+    private final double duplicateDescriptionRatio;
+    private final double[] priorityWeights;
+    private final double[] statusWeights;
+    private final int dateSpreadDays;
+
+    private WorkloadProfile(final Properties props) {
+        this.categorySkew = Double.parseDouble(props.getProperty(CATEGORY_SKEW, "0"));
+        this.textSizeMedian = Integer.parseInt(props.getProperty(TEXT_SIZE_MEDIAN, "-1"));
+        this.textSizeSigma = Double.parseDouble(props.getProperty(TEXT_SIZE_SIGMA, "0"));
+        this.textSizeMax = Integer.parseInt(props.getProperty(TEXT_SIZE_MAX, String.valueOf(DEFAULT_TEXT_SIZE_MAX)));
+        this.duplicateDescriptionRatio = Double.parseDouble(props.getProperty(DUPLICATE_DESCRIPTION_RATIO, "0"));
+        this.priorityWeights = parseWeights(props, PRIORITY_WEIGHTS, GenPriority.LENGTH);
+        this.statusWeights = parseWeights(props, STATUS_WEIGHTS, CustomStatus.LENGTH);
+        this.dateSpreadDays = Integer.parseInt(props.getProperty(DATE_SPREAD_DAYS, "0"));
+    }
+
+    static WorkloadProfile uniform() {
+        return new WorkloadProfile(new Properties());
+    }
+
+    /**
+     * Loads a named profile or a profile file, values of the overrides take precedence
+     */
+    static WorkloadProfile load(final String nameOrFile, final Properties overrides) throws IOException {
+        final Properties props = new Properties();
+        if (REALISTIC.equals(nameOrFile)) {
+            props.setProperty(CATEGORY_SKEW, "1.1");
+            props.setProperty(TEXT_SIZE_SIGMA, "1.5");
+            props.setProperty(DUPLICATE_DESCRIPTION_RATIO, "0.6");
+            props.setProperty(PRIORITY_WEIGHTS, "1,4,10,5");
+            props.setProperty(STATUS_WEIGHTS, "6,3,1");
+            props.setProperty(DATE_SPREAD_DAYS, "365");
+        } else if (nameOrFile != null && !UNIFORM.equals(nameOrFile)) {
+            try (final InputStream in = new FileInputStream(nameOrFile)) {
+                props.load(in);
+            }
+        }
+        props.putAll(overrides);
+        try {
+            return new WorkloadProfile(props);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid workload profile %s: %s", nameOrFile, e.getMessage()), e);
+        }
+    }
+
+    private static double[] parseWeights(final Properties props, final String key, final int count) {
+        final double[] weights = new double[count];
+        final String value = props.getProperty(key);
+        if (value == null) {
+            Arrays.fill(weights, 1);
+            return weights;
+        }
+        final String[] parts = value.split(",");
+        if (parts.length != count) {
+            throw new IllegalArgumentException(String.format("%s must have %d weights: %s", key, count, value));
+        }
+        for (int i = 0; i < count; i++) {
+            weights[i] = Double.parseDouble(parts[i].trim());
+        }
+        return weights;
+    }
+
+    /**
+     * Cumulative distribution of categories, {@code null} for uniformly distributed categories
+     */
+    double[] categoryDistribution(final int categoryCount) {
+        if (categorySkew == 0) {
+            return null;
+        }
+        final double[] weights = new double[categoryCount];
+        for (int i = 0; i < categoryCount; i++) {
+            weights[i] = 1 / Math.pow(i + 1, categorySkew);
+        }
+        return cumulative(weights);
+    }
+
+    /** Cumulative distribution of priorities, {@code null} for uniformly distributed priorities */
+    double[] priorityDistribution() {
+        return cumulative(priorityWeights);
+    }
+
+    /** Cumulative distribution of statuses, {@code null} for uniformly distributed statuses */
+    double[] statusDistribution() {
+        return cumulative(statusWeights);
+    }
+
+    private static double[] cumulative(final double[] weights) {
+        boolean uniform = true;
+        double sum = 0;
+        for (final double weight : weights) {
+            uniform &= weight == weights[0];
+            sum += weight;
+        }
+        if (uniform) {
+            return null;
+        }
+        final double[] distribution = new double[weights.length];
+        double cumulative = 0;
+        for (int i = 0; i < weights.length; i++) {
+            cumulative += weights[i];
+            distribution[i] = cumulative / sum;
+        }
+        return distribution;
+    }
+
+    /**
+     * Index drawn from a cumulative distribution, or uniformly from {@code count} values if the distribution is {@code null}
+     */
+    static int draw(final SplittableRandom random, final double[] distribution, final int count) {
+        if (distribution == null) {
+            return random.nextInt(count);
+        }
+        final int i = Arrays.binarySearch(distribution, random.nextDouble());
+        return Math.min(i < 0 ? -i - 1 : i, count - 1);
+    }
+
+    /** Whether long text sizes vary, otherwise all texts have {@link #textSizeMedian(int)} bytes */
+    boolean hasTextSizeSpread() {
+        return textSizeSigma > 0;
+    }
+
+    int textSizeMedian(final int defaultSize) {
+        return textSizeMedian < 0 ? defaultSize : textSizeMedian;
+    }
+
+    /**
+     * Log-normally distributed long text size with the given median
+     */
+    int drawTextSize(final SplittableRandom random, final int median) {
+        // Box-Muller transformation of two uniform values to a standard normal one
+        final double gaussian = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+        return (int) Math.min(textSizeMax, Math.round(median * Math.exp(textSizeSigma * gaussian)));
+    }
+
+    double getDuplicateDescriptionRatio() {
+        return duplicateDescriptionRatio;
+    }
+
+    /** Date spread in milliseconds */
+    long getDateSpread() {
+        return dateSpreadDays * DAY_MILLIS;
+    }
+
+    /**
+     * Derives a profile from the findings of an existing scan, so that scaled copies of it can be generated.
+     * <BR>Long text sizes are taken from the length of the encoded textBase64 values.
+     */
+    static Fit fit(final File scanZip) throws IOException {
+        try (final ZipFile zipFile = new ZipFile(scanZip)) {
+            final Fit fit = new Fit();
+            boolean scanEntry = false;
+            // scan entry and the findings shards, if any
+            for (final Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements(); ) {
+                final ZipEntry entry = entries.nextElement();
+                if (ScanFormat.isScanEntry(entry.getName()) || ScanFormat.isShardEntry(entry.getName())) {
+                    scanEntry |= ScanFormat.isScanEntry(entry.getName());
+                    fitEntry(zipFile, entry, fit);
+                }
+            }
+            if (!scanEntry) {
+                throw new IOException(String.format("No findings entry in %s", scanZip.getPath()));
+            }
+            return fit;
+        }
+    }
+
+    private static void fitEntry(final ZipFile zipFile, final ZipEntry entry, final Fit fit) throws IOException {
+        try (final PushbackInputStream in = new PushbackInputStream(zipFile.getInputStream(entry), ScanFormat.SIGNATURE_LENGTH);
+             final JsonParser jsonParser = ScanFormat.detect(in).createFactory().createParser(in)) {
+            if (jsonParser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException(String.format("Expected object start at %s", jsonParser.getTokenLocation()));
+            }
+            final FindingEntryReader reader = new FindingEntryReader(jsonParser);
+            while (reader.nextObject()) {
+                fit.addFinding(jsonParser);
+            }
+        }
+    }
+
+    /**
+     * Statistics of scan findings a profile is fitted to
+     */
+    static final class Fit {
+        private final Map<String, Integer> categories = new HashMap<>();
+        // descriptions can be long and mostly distinct, only their 128-bit hashes are kept to count the distinct ones
+        private final UniqueIdSet descriptions = new UniqueIdSet();
+        private final long[] priorities = new long[GenPriority.LENGTH];
+        private final long[] statuses = new long[CustomStatus.LENGTH];
+        private int findingCount;
+        private int descriptionCount;
+        private int textCount;
+        private double textLogSum;
+        private double textLogSquareSum;
+        private long textMax;
+        private long minDate = Long.MAX_VALUE;
+        private long maxDate = Long.MIN_VALUE;
+
+        private void addFinding(final JsonParser jsonParser) throws IOException {
+            findingCount++;
+            while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+                final VulnAttribute vulnAttr = VulnAttribute.get(jsonParser.getCurrentName());
+                final JsonToken token = jsonParser.nextToken();
+                if (vulnAttr == VulnAttribute.TEXT_BASE64 && token == JsonToken.VALUE_EMBEDDED_OBJECT) {
+                    // raw bytes of a binary scan
+                    addTextSize(jsonParser.getBinaryValue().length);
+                    continue;
+                }
+                if (token != JsonToken.VALUE_STRING || vulnAttr == null) {
+                    jsonParser.skipChildren();
+                    continue;
+                }
+                switch (vulnAttr) {
+                    case CATEGORY:
+                        categories.merge(jsonParser.getText(), 1, Integer::sum);
+                        break;
+                    case DESCRIPTION:
+                        descriptionCount++;
+                        descriptions.add(jsonParser.getText());
+                        break;
+                    case PRIORITY:
+                        count(priorities, GenPriority.values(), jsonParser.getText());
+                        break;
+                    case CUSTOM_STATUS:
+                        count(statuses, CustomStatus.values(), jsonParser.getText());
+                        break;
+                    case LAST_CHANGE_DATE:
+                        try {
+                            final long date = DATE_DESERIALIZER.convert(jsonParser.getText()).getTime();
+                            minDate = Math.min(minDate, date);
+                            maxDate = Math.max(maxDate, date);
+                        } catch (IllegalArgumentException e) {
+                            // dates in unknown format don't count
+                        }
+                        break;
+                    case TEXT_BASE64:
+                        addTextSize(jsonParser.getTextLength() * 3L / 4);
+                        break;
+                }
+            }
+        }
+
+        private void addTextSize(final long length) {
+            final long size = Math.max(1, length);
+            textCount++;
+            textLogSum += Math.log(size);
+            textLogSquareSum += Math.log(size) * Math.log(size);
+            textMax = Math.max(textMax, size);
+        }
+
+        private static <E extends Enum<E>> void count(final long[] counts, final E[] values, final String name) {
+            for (final E value : values) {
+                if (value.name().equals(name)) {
+                    counts[value.ordinal()]++;
+                    return;
+                }
+            }
+        }
+
+        int getFindingCount() {
+            return findingCount;
+        }
+
+        int getCategoryCount() {
+            return categories.size();
+        }
+
+        /**
+         * Profile properties of the statistics
+         */
+        Properties toProperties() {
+            final Properties props = new Properties();
+            props.setProperty(CATEGORY_SKEW, format(zipfExponent()));
+            if (textCount > 0) {
+                final double mean = textLogSum / textCount;
+                final double variance = Math.max(0, textLogSquareSum / textCount - mean * mean);
+                props.setProperty(TEXT_SIZE_MEDIAN, String.valueOf(Math.round(Math.exp(mean))));
+                props.setProperty(TEXT_SIZE_SIGMA, format(Math.sqrt(variance)));
+                props.setProperty(TEXT_SIZE_MAX, String.valueOf(textMax));
+            }
+            if (descriptionCount > 0) {
+                props.setProperty(DUPLICATE_DESCRIPTION_RATIO, format(1 - (double) descriptions.size() / descriptionCount));
+            }
+            props.setProperty(PRIORITY_WEIGHTS, weights(priorities));
+            props.setProperty(STATUS_WEIGHTS, weights(statuses));
+            props.setProperty(DATE_SPREAD_DAYS, String.valueOf(maxDate < minDate ? 0 : (maxDate - minDate + DAY_MILLIS - 1) / DAY_MILLIS));
+            return props;
+        }
+
+        /**
+         * Slope of the least squares line of log frequency over log rank of categories
+         */
+        private double zipfExponent() {
+            final List<Integer> frequencies = new ArrayList<>(categories.values());
+            if (frequencies.size() < 2) {
+                return 0;
+            }
+            frequencies.sort(Collections.reverseOrder());
+            final int n = frequencies.size();
+            double sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+            for (int rank = 1; rank <= n; rank++) {
+                final double x = Math.log(rank);
+                final double y = Math.log(frequencies.get(rank - 1));
+                sumX += x;
+                sumY += y;
+                sumXX += x * x;
+                sumXY += x * y;
+            }
+            final double slope = (n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX);
+            return Math.max(0, -slope);
+        }
+
+        private static String weights(final long[] counts) {
+            final StringBuilder sb = new StringBuilder();
+            for (final long count : counts) {
+                sb.append(sb.length() == 0 ? "" : ",").append(count);
+            }
+            return sb.toString();
+        }
+
+        private static String format(final double value) {
+            return String.format(Locale.ROOT, "%.3f", value);
+        }
+    }
+}
@@ -0,0 +1,622 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * <P>Zip writer for outputs which can't be rewound, e.g. standard output or a named pipe.
+ * <BR>Entries are streamed with their CRC and sizes in data descriptors following the data, so unlike {@link java.util.zip.ZipOutputStream}
+ * it can write STORED entries of unknown size. Deflated entries can be compressed by several threads: the entry is cut into blocks which
+ * are deflated independently, each with the end of the previous block as the preset dictionary, and ended by a sync flush, so the blocks
+ * concatenate into a single deflate stream (the way pigz does it). Zip64 records are written when sizes or offsets need them.
+ * <BR>Note that {@link java.util.zip.ZipInputStream} can't read STORED entries followed by a data descriptor, readers using the central
+ * directory ({@link java.util.zip.ZipFile}, unzip) can.
+ */
+final class ZipStreamWriter implements Closeable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    // sizes and CRC follow the data, names are UTF-8
+    private static final int FLAGS = 0x0008 | 0x0800;
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    // symbols of a deflate block not emitted yet, at most 16K of at most 48 bits each with the default memory level, and the pending output
+    private static final int DEFLATER_PENDING_LIMIT = 16 * 1024 * 6 + 64 * 1024;
+
+    private final CountingOutputStream out;
+    private final Compression compression;
+    private final int threads;
+    private final int dosTime;
+    private final int dosDate;
+    private final List<Entry> entries = new ArrayList<>();
+    private ExecutorService executor;
+
+    private Entry entry;
+    private EntryOutputStream entryOut;
+
+    /**
+     * @param threads number of threads deflating entries, 1 deflates on the writing thread
+     */
+    ZipStreamWriter(final OutputStream out, final Compression compression, final int threads) {
+        this(out, compression, threads, LocalDateTime.now());
+    }
+
+    /**
+     * @param threads number of threads deflating entries, 1 deflates on the writing thread
+     * @param entryTime modification time of the entries
+     */
+    ZipStreamWriter(final OutputStream out, final Compression compression, final int threads, final LocalDateTime entryTime) {
+        this.out = new CountingOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        this.compression = compression;
+        this.threads = threads;
+        this.dosTime = (entryTime.getHour() << 11) | (entryTime.getMinute() << 5) | (entryTime.getSecond() >> 1);
+        this.dosDate = ((entryTime.getYear() - 1980) << 9) | (entryTime.getMonthValue() << 5) | entryTime.getDayOfMonth();
+    }
+
+    /**
+     * Starts a new entry, a previous entry is closed
+     *
+     * @return stream of the entry content, closing it closes the entry
+     */
+    OutputStream putNextEntry(final String name) throws IOException {
+        if (entry != null) {
+            closeEntry();
+        }
+        entry = new Entry(name, compression.isStored() ? METHOD_STORED : METHOD_DEFLATED, out.count);
+        writeInt(LOCAL_HEADER_SIGNATURE);
+        writeShort(VERSION);
+        writeShort(FLAGS);
+        writeShort(entry.method);
+        writeShort(dosTime);
+        writeShort(dosDate);
+        writeInt(0);    // CRC and sizes are in the data descriptor
+        writeInt(0);
+        writeInt(0);
+        writeShort(entry.name.length);
+        writeShort(0);
+        out.write(entry.name);
+        entry.dataOffset = out.count;
+
+        final OutputStream data;
+        if (compression.isStored()) {
+            data = new NonClosingOutputStream(out);
+        } else if (threads > 1) {
+            if (executor == null) {
+                executor = Executors.newFixedThreadPool(threads, r -> {
+                    final Thread t = new Thread(r, "zip-deflater");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            data = new ParallelDeflaterOutputStream(out, compression.level, executor, threads * 2);
+        } else {
+            data = new DeflaterOutputStream(out, compression.level);
+        }
+        entryOut = new EntryOutputStream(data);
+        return entryOut;
+    }
+
+    /**
+     * Finishes the current entry, its sizes are then available from {@link #getEntrySize()} and {@link #getEntryCompressedSize()}
+     */
+    void closeEntry() throws IOException {
+        if (entry == null) {
+            return;
+        }
+        entryOut.finish();
+        entry.crc = entryOut.crc.getValue();
+        entry.size = entryOut.size;
+        entry.compressedSize = out.count - entry.dataOffset;
+
+        writeInt(DATA_DESCRIPTOR_SIGNATURE);
+        writeInt((int) entry.crc);
+        if (entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC) {
+            writeLong(entry.compressedSize);
+            writeLong(entry.size);
+        } else {
+            writeInt((int) entry.compressedSize);
+            writeInt((int) entry.size);
+        }
+        entries.add(entry);
+        entry = null;
+        entryOut = null;
+    }
+
+    /** Uncompressed size of the last closed entry */
+    long getEntrySize() {
+        return entries.get(entries.size() - 1).size;
+    }
+
+    /** Compressed size of the last closed entry */
+    long getEntryCompressedSize() {
+        return entries.get(entries.size() - 1).compressedSize;
+    }
+
+    /** Number of bytes written to the output so far */
+    long getSize() {
+        return out.count;
+    }
+
+    /**
+     * Upper bound of the compressed size of the current entry content which was written to the entry but is not counted
+     * by {@link #getSize()} yet, as it is held by the deflater or by blocks being deflated
+     */
+    long getPendingLimit() {
+        if (entry == null || compression.isStored()) {
+            return 0;
+        }
+        // deflate never grows the content by more than a few bytes per block
+        final long unflushed = entryOut.size - entryOut.flushedSize;
+        final long limit = unflushed + unflushed / 16384 * 5 + 64;
+        if (threads > 1) {
+            // the block being filled and the blocks waiting to be written
+            return Math.min(limit, (threads * 2L + 1) * (BLOCK_SIZE + BLOCK_SIZE / 64));
+        }
+        return Math.min(limit, DEFLATER_PENDING_LIMIT);
+    }
+
+    /**
+     * Writes the content of the current entry deflated so far to the output, ending the deflate block with a sync flush,
+     * so that it is all counted by {@link #getSize()}. Each flush costs a few bytes and a new block header.
+     */
+    void flushEntry() throws IOException {
+        if (entry == null) {
+            return;
+        }
+        if (entryOut.data instanceof SyncFlushable) {
+            ((SyncFlushable) entryOut.data).syncFlush();
+        }
+        entryOut.flushedSize = entryOut.size;
+    }
+
+    /**
+     * Closes the current entry, writes the central directory and closes the output
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            closeEntry();
+            writeCentralDirectory();
+            out.close();
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        final long directoryOffset = out.count;
+        for (final Entry e : entries) {
+            final boolean zip64Size = e.size >= ZIP64_MAGIC;
+            final boolean zip64CompressedSize = e.compressedSize >= ZIP64_MAGIC;
+            final boolean zip64Offset = e.offset >= ZIP64_MAGIC;
+            final int zip64Length = (zip64Size ? 8 : 0) + (zip64CompressedSize ? 8 : 0) + (zip64Offset ? 8 : 0);
+            final int version = zip64Length > 0 ? VERSION_ZIP64 : VERSION;
+            writeInt(CENTRAL_HEADER_SIGNATURE);
+            writeShort(version);
+            writeShort(version);
+            writeShort(FLAGS);
+            writeShort(e.method);
+            writeShort(dosTime);
+            writeShort(dosDate);
+            writeInt((int) e.crc);
+            writeInt((int) Math.min(e.compressedSize, ZIP64_MAGIC));
+            writeInt((int) Math.min(e.size, ZIP64_MAGIC));
+            writeShort(e.name.length);
+            writeShort(zip64Length > 0 ? zip64Length + 4 : 0);
+            writeShort(0);  // comment
+            writeShort(0);  // disk number
+            writeShort(0);  // internal attributes
+            writeInt(0);    // external attributes
+            writeInt((int) Math.min(e.offset, ZIP64_MAGIC));
+            out.write(e.name);
+            if (zip64Length > 0) {
+                writeShort(0x0001);
+                writeShort(zip64Length);
+                if (zip64Size) {
+                    writeLong(e.size);
+                }
+                if (zip64CompressedSize) {
+                    writeLong(e.compressedSize);
+                }
+                if (zip64Offset) {
+                    writeLong(e.offset);
+                }
+            }
+        }
+        final long directorySize = out.count - directoryOffset;
+
+        if (entries.size() >= ZIP64_MAGIC_COUNT || directoryOffset >= ZIP64_MAGIC || directorySize >= ZIP64_MAGIC) {
+            final long zip64EndOffset = out.count;
+            writeInt(ZIP64_END_SIGNATURE);
+            writeLong(44);  // size of the rest of the record
+            writeShort(VERSION_ZIP64);
+            writeShort(VERSION_ZIP64);
+            writeInt(0);
+            writeInt(0);
+            writeLong(entries.size());
+            writeLong(entries.size());
+            writeLong(directorySize);
+            writeLong(directoryOffset);
+
+            writeInt(ZIP64_LOCATOR_SIGNATURE);
+            writeInt(0);
+            writeLong(zip64EndOffset);
+            writeInt(1);
+        }
+
+        writeInt(END_SIGNATURE);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+        writeShort(Math.min(entries.size(), ZIP64_MAGIC_COUNT));
+        writeInt((int) Math.min(directorySize, ZIP64_MAGIC));
+        writeInt((int) Math.min(directoryOffset, ZIP64_MAGIC));
+        writeShort(0);
+    }
+
+    private void writeShort(final int v) throws IOException {
+        out.write(v & 0xFF);
+        out.write((v >>> 8) & 0xFF);
+    }
+
+    private void writeInt(final int v) throws IOException {
+        writeShort(v);
+        writeShort(v >>> 16);
+    }
+
+    private void writeLong(final long v) throws IOException {
+        writeInt((int) v);
+        writeInt((int) (v >>> 32));
+    }
+
+    /**
+     * Compression of zip entries, {@code stored} or {@code deflate[:level]}
+     */
+    static final class Compression {
+        static final Compression DEFAULT = new Compression(false, Deflater.DEFAULT_COMPRESSION);
+
+        private final boolean stored;
+        private final int level;
+
+        private Compression(final boolean stored, final int level) {
+            this.stored = stored;
+            this.level = level;
+        }
+
+        static Compression parse(final String value) {
+            if ("stored".equals(value)) {
+                return new Compression(true, Deflater.NO_COMPRESSION);
+            }
+            if ("deflate".equals(value)) {
+                return DEFAULT;
+            }
+            if (value.startsWith("deflate:")) {
+                final int level = Integer.parseInt(value.substring("deflate:".length()));
+                if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+                    throw new IllegalArgumentException(String.format("Deflate level must be between %d and %d: %s", Deflater.NO_COMPRESSION, Deflater.BEST_COMPRESSION, value));
+                }
+                return new Compression(false, level);
+            }
+            throw new IllegalArgumentException(String.format("Unknown compression: %s", value));
+        }
+
+        boolean isStored() {
+            return stored;
+        }
+
+        @Override
+        public String toString() {
+            return stored ? "stored" : level == Deflater.DEFAULT_COMPRESSION ? "deflate" : "deflate:" + level;
+        }
+    }
+
+    private static final class Entry {
+        final byte[] name;
+        final int method;
+        final long offset;
+        long dataOffset;
+        long crc;
+        long size;
+        long compressedSize;
+
+        Entry(final String name, final int method, final long offset) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.method = method;
+            this.offset = offset;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Entry content, computes CRC and size of the uncompressed data
+     */
+    private final class EntryOutputStream extends OutputStream {
+        private final OutputStream data;
+        private final CRC32 crc = new CRC32();
+        private long size;
+        private long flushedSize;
+        private boolean finished;
+
+        EntryOutputStream(final OutputStream data) {
+            this.data = data;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            crc.update(b);
+            size++;
+            data.write(b);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            crc.update(b, off, len);
+            size += len;
+            data.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            data.flush();
+        }
+
+        void finish() throws IOException {
+            if (!finished) {
+                finished = true;
+                data.close();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (entryOut == this) {
+                closeEntry();
+            }
+        }
+    }
+
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Deflating stream which can write out all the content it was given without ending the deflate stream
+     */
+    private interface SyncFlushable {
+        void syncFlush() throws IOException;
+    }
+
+    /**
+     * Raw deflate stream finished on close, the underlying stream stays open
+     */
+    private static final class DeflaterOutputStream extends java.util.zip.DeflaterOutputStream implements SyncFlushable {
+        DeflaterOutputStream(final OutputStream out, final int level) {
+            super(new NonClosingOutputStream(out), new Deflater(level, true), BUFFER_SIZE);
+        }
+
+        @Override
+        public void syncFlush() throws IOException {
+            int count;
+            while ((count = def.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH)) > 0) {
+                out.write(buf, 0, count);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end();
+            }
+        }
+    }
+
+    /**
+     * Deflates blocks of the content on an executor, compressed blocks are written in order from the writing thread.
+     * The underlying stream stays open on close.
+     */
+    private static final class ParallelDeflaterOutputStream extends OutputStream implements SyncFlushable {
+        private final OutputStream out;
+        private final int level;
+        private final ExecutorService executor;
+        private final int maxPending;
+        private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        private byte[] block = new byte[BLOCK_SIZE];
+        private int blockLength;
+        private byte[] previousBlock;
+        private int previousBlockLength;
+        private boolean closed;
+
+        ParallelDeflaterOutputStream(final OutputStream out, final int level, final ExecutorService executor, final int maxPending) {
+            this.out = out;
+            this.level = level;
+            this.executor = executor;
+            this.maxPending = maxPending;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (blockLength == block.length) {
+                submitBlock(false);
+            }
+            block[blockLength++] = (byte) b;
+        }
+
+        @Override
+        public void write(final byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (blockLength == block.length) {
+                    submitBlock(false);
+                }
+                final int count = Math.min(len, block.length - blockLength);
+                System.arraycopy(b, off, block, blockLength, count);
+                blockLength += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            submitBlock(true);
+            while (!pending.isEmpty()) {
+                writeBlock(pending.removeFirst());
+            }
+            out.flush();
+        }
+
+        /**
+         * Deflates the block being filled, even if it is not full, and writes all blocks out
+         */
+        @Override
+        public void syncFlush() throws IOException {
+            if (blockLength > 0) {
+                submitBlock(false);
+            }
+            while (!pending.isEmpty()) {
+                writeBlock(pending.removeFirst());
+            }
+        }
+
+        private void submitBlock(final boolean last) throws IOException {
+            final byte[] data = block;
+            final int length = blockLength;
+            final byte[] dictionary = previousBlock;
+            final int dictionaryLength = previousBlockLength;
+            pending.addLast(executor.submit(() -> deflate(data, length, dictionary, dictionaryLength, last)));
+            // a block is the dictionary of the next one, so it can't be reused
+            previousBlock = data;
+            previousBlockLength = length;
+            block = new byte[BLOCK_SIZE];
+            blockLength = 0;
+            if (pending.size() >= maxPending) {
+                writeBlock(pending.removeFirst());
+            }
+        }
+
+        private byte[] deflate(final byte[] data, final int length, final byte[] dictionary, final int dictionaryLength, final boolean last) {
+            final Deflater deflater = new Deflater(level, true);
+            try {
+                if (dictionary != null && dictionaryLength > 0) {
+                    // the end of a block flushed before it was full is a shorter dictionary
+                    final int size = Math.min(dictionaryLength, DICTIONARY_SIZE);
+                    deflater.setDictionary(dictionary, dictionaryLength - size, size);
+                }
+                deflater.setInput(data, 0, length);
+                final ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+                final byte[] buf = new byte[BUFFER_SIZE];
+                if (last) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        compressed.write(buf, 0, deflater.deflate(buf));
+                    }
+                } else {
+                    // sync flush ends the block on a byte boundary without ending the deflate stream
+                    int count;
+                    do {
+                        count = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                        compressed.write(buf, 0, count);
+                    } while (count == buf.length);
+                }
+                return compressed.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        private void writeBlock(final Future<byte[]> block) throws IOException {
+            try {
+                out.write(block.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while deflating", e);
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+}
@@ -15,38 +15,29 @@ package com.thirdparty.scan;
 
 import com.fasterxml.jackson.databind.util.StdConverter;
 
-import java.time.DateTimeException;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
-import java.time.temporal.TemporalAccessor;
-import java.time.temporal.TemporalQueries;
 import java.util.Date;
 
 public class DateDeserializer extends StdConverter<String, Date> {
-    private static final DateTimeFormatter[] DATE_TIME_FORMATTERS = {DateTimeFormatter.ISO_DATE_TIME};
+    private final IsoDateTimeCodec codec = new IsoDateTimeCodec();
 
     @Override
     public Date convert(final String dateStr) {
-        for (final DateTimeFormatter formatter : DATE_TIME_FORMATTERS) {
-            final TemporalAccessor temporalAccessor;
-            try {
-                temporalAccessor = formatter.parse(dateStr);
-            } catch (final DateTimeException e) {
-                // try next parser
-                continue;
-            }
-            final Instant instant;
-            if (temporalAccessor.query(TemporalQueries.offset()) != null) {
-                instant = OffsetDateTime.from(temporalAccessor).toInstant();
-            } else {
-                instant = LocalDateTime.from(temporalAccessor).toInstant(ZoneOffset.UTC);
-            }
-            return Date.from(instant);
+        return toDate(codec.parse(dateStr), dateStr);
+    }
+
+    /**
+     * Converts date from a character buffer, e.g. the text buffer of a JSON parser, without creating a string for cached values
+     */
+    public Date convert(final char[] chars, final int offset, final int length) {
+        final long millis = codec.parse(chars, offset, length);
+        return toDate(millis, millis == IsoDateTimeCodec.INVALID ? new String(chars, offset, length) : null);
+    }
+
+    private static Date toDate(final long millis, final String dateStr) {
+        if (millis == IsoDateTimeCodec.INVALID) {
+            // no parser worked
+            throw new IllegalArgumentException("Unsupported date format: " + dateStr);
         }
-        // no parser worked
-        throw new IllegalArgumentException("Unsupported date format: " + dateStr);
+        return new Date(millis);
     }
 }
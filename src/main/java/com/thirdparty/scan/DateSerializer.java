@@ -15,13 +15,13 @@ package com.thirdparty.scan;
 
 import com.fasterxml.jackson.databind.util.StdConverter;
 
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.Date;
 
 public class DateSerializer extends StdConverter<Date, String> {
+    private final IsoDateTimeCodec codec = new IsoDateTimeCodec();
+
     @Override
     public String convert(final Date value) {
-        return DateTimeFormatter.ISO_DATE_TIME.withZone(ZoneOffset.UTC).format(value.toInstant());
+        return codec.format(value.getTime());
     }
 }
@@ -0,0 +1,322 @@
+package com.thirdparty.scan;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+
+/**
+ * <P>ISO-8601 date-time conversion used by {@link DateDeserializer} and {@link DateSerializer}.
+ * <BR>Common {@code yyyy-MM-ddTHH:mm[:ss[.fraction]][Z|+HH:MM[:ss]]} values are converted by hand without intermediate objects,
+ * other values accepted by {@link DateTimeFormatter#ISO_DATE_TIME} are converted by the formatter. Supported formats are tried in order
+ * and report a failure by returning {@link #INVALID} instead of throwing an exception.
+ * <BR>Findings of a scan mostly share a handful of timestamps, so the last few converted values are cached.
+ * The codec can be shared by threads, cache entries are immutable.
+ */
+public final class IsoDateTimeCodec {
+
+    /** Returned by parse methods when the value is not a supported date-time */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final DateTimeFormatter UTC_FORMATTER = DateTimeFormatter.ISO_DATE_TIME.withZone(ZoneOffset.UTC);
+    private static final Format[] FORMATS = {IsoDateTimeCodec::parseCommon, IsoDateTimeCodec::parseWithFormatter};
+    private static final int CACHE_SIZE = 8;
+    private static final long DAYS_0000_TO_1970 = 719528L;
+    private static final long MILLIS_PER_DAY = 86400000L;
+    private static final long MIN_FAST_FORMAT_MILLIS = -62167219200000L;  // 0000-01-01T00:00:00Z
+    private static final long MAX_FAST_FORMAT_MILLIS = 253402300799999L;  // 9999-12-31T23:59:59.999Z
+
+    private final Entry[] parsed = new Entry[CACHE_SIZE];
+    private final Entry[] formatted = new Entry[CACHE_SIZE];
+    private int nextParsed;
+    private int nextFormatted;
+
+    /**
+     * @return milliseconds since epoch or {@link #INVALID}
+     */
+    public long parse(final String text) {
+        for (final Entry entry : parsed) {
+            if (entry != null && entry.text.equals(text)) {
+                return entry.millis;
+            }
+        }
+        final char[] chars = text.toCharArray();
+        return parseAndCache(text, chars, 0, chars.length);
+    }
+
+    /**
+     * Parses text from a character buffer, e.g. the text buffer of a JSON parser, a string is created only when the value is not cached.
+     * @return milliseconds since epoch or {@link #INVALID}
+     */
+    public long parse(final char[] chars, final int offset, final int length) {
+        for (final Entry entry : parsed) {
+            if (entry != null && entry.matches(chars, offset, length)) {
+                return entry.millis;
+            }
+        }
+        return parseAndCache(null, chars, offset, length);
+    }
+
+    public String format(final long millis) {
+        for (final Entry entry : formatted) {
+            if (entry != null && entry.millis == millis) {
+                return entry.text;
+            }
+        }
+        final String text = (millis >= MIN_FAST_FORMAT_MILLIS && millis <= MAX_FAST_FORMAT_MILLIS)
+                ? formatCommon(millis)
+                : UTC_FORMATTER.format(Instant.ofEpochMilli(millis));
+        formatted[nextFormatted++ & (CACHE_SIZE - 1)] = new Entry(text, millis);
+        return text;
+    }
+
+    private long parseAndCache(final String text, final char[] chars, final int offset, final int length) {
+        for (final Format format : FORMATS) {
+            final long millis = format.parse(chars, offset, length);
+            if (millis != INVALID) {
+                parsed[nextParsed++ & (CACHE_SIZE - 1)] = new Entry(text != null ? text : new String(chars, offset, length), millis);
+                return millis;
+            }
+        }
+        return INVALID;
+    }
+
+    private static long parseCommon(final char[] c, final int offset, final int length) {
+        final int end = offset + length;
+        int i = offset;
+        if (length < 16 || c[i + 4] != '-' || c[i + 7] != '-' || c[i + 10] != 'T' || c[i + 13] != ':') {
+            return INVALID;
+        }
+        final int year = digits(c, i, 4);
+        final int month = digits(c, i + 5, 2);
+        final int day = digits(c, i + 8, 2);
+        final int hour = digits(c, i + 11, 2);
+        final int minute = digits(c, i + 14, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > monthLength(year, month) || hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return INVALID;
+        }
+        i += 16;
+        int second = 0;
+        int millis = 0;
+        if (i < end && c[i] == ':') {
+            if (i + 3 > end || (second = digits(c, i + 1, 2)) < 0 || second > 59) {
+                return INVALID;
+            }
+            i += 3;
+            if (i < end && c[i] == '.') {
+                i++;
+                final int fractionStart = i;
+                while (i < end && i - fractionStart < 9 && c[i] >= '0' && c[i] <= '9') {
+                    if (i - fractionStart < 3) {
+                        millis = millis * 10 + (c[i] - '0');
+                    }
+                    i++;
+                }
+                final int fractionLength = i - fractionStart;
+                if (fractionLength == 0) {
+                    return INVALID;
+                }
+                for (int k = fractionLength; k < 3; k++) {
+                    millis *= 10;
+                }
+            }
+        }
+        int offsetSeconds = 0;
+        if (i < end) {
+            if (c[i] == 'Z') {
+                i++;
+            } else if (c[i] == '+' || c[i] == '-') {
+                if (i + 6 > end || c[i + 3] != ':') {
+                    return INVALID;
+                }
+                final int offsetHours = digits(c, i + 1, 2);
+                final int offsetMinutes = digits(c, i + 4, 2);
+                int offsetSecondsPart = 0;
+                int next = i + 6;
+                if (next < end && c[next] == ':') {
+                    if (next + 3 > end || (offsetSecondsPart = digits(c, next + 1, 2)) < 0 || offsetSecondsPart > 59) {
+                        return INVALID;
+                    }
+                    next += 3;
+                }
+                if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59) {
+                    return INVALID;
+                }
+                offsetSeconds = offsetHours * 3600 + offsetMinutes * 60 + offsetSecondsPart;
+                if (offsetSeconds > 18 * 3600) {
+                    return INVALID;
+                }
+                if (c[i] == '-') {
+                    offsetSeconds = -offsetSeconds;
+                }
+                i = next;
+            } else {
+                return INVALID;
+            }
+        }
+        if (i != end) {
+            // zone region or something else the formatter has to deal with
+            return INVALID;
+        }
+        final long epochSecond = epochDay(year, month, day) * 86400L + hour * 3600 + minute * 60 + second - offsetSeconds;
+        return epochSecond * 1000 + millis;
+    }
+
+    private static long parseWithFormatter(final char[] c, final int offset, final int length) {
+        final String text = new String(c, offset, length);
+        final ParsePosition position = new ParsePosition(0);
+        if (DateTimeFormatter.ISO_DATE_TIME.parseUnresolved(text, position) == null || position.getIndex() != text.length()) {
+            return INVALID;
+        }
+        try {
+            // text is syntactically valid, resolving can still fail for values like February 30th
+            final TemporalAccessor temporalAccessor = DateTimeFormatter.ISO_DATE_TIME.parse(text);
+            final Instant instant;
+            if (temporalAccessor.query(TemporalQueries.offset()) != null) {
+                instant = OffsetDateTime.from(temporalAccessor).toInstant();
+            } else {
+                instant = LocalDateTime.from(temporalAccessor).toInstant(ZoneOffset.UTC);
+            }
+            return instant.toEpochMilli();
+        } catch (final DateTimeException | ArithmeticException e) {
+            return INVALID;
+        }
+    }
+
+    /**
+     * Same output as {@code DateTimeFormatter.ISO_DATE_TIME.withZone(ZoneOffset.UTC)}: seconds are always written,
+     * fraction of second without trailing zeros and only if it is not zero
+     */
+    private static String formatCommon(final long epochMilli) {
+        final long epochDay = Math.floorDiv(epochMilli, MILLIS_PER_DAY);
+        final int millisOfDay = (int) Math.floorMod(epochMilli, MILLIS_PER_DAY);
+        final LocalDate date = LocalDate.ofEpochDay(epochDay);
+        final char[] out = new char[24];
+        int i = 0;
+        i = appendDigits(out, i, date.getYear(), 4);
+        out[i++] = '-';
+        i = appendDigits(out, i, date.getMonthValue(), 2);
+        out[i++] = '-';
+        i = appendDigits(out, i, date.getDayOfMonth(), 2);
+        out[i++] = 'T';
+        i = appendDigits(out, i, millisOfDay / 3600000, 2);
+        out[i++] = ':';
+        i = appendDigits(out, i, millisOfDay / 60000 % 60, 2);
+        out[i++] = ':';
+        i = appendDigits(out, i, millisOfDay / 1000 % 60, 2);
+        int millis = millisOfDay % 1000;
+        if (millis != 0) {
+            out[i++] = '.';
+            out[i++] = (char) ('0' + millis / 100);
+            millis %= 100;
+            if (millis != 0) {
+                out[i++] = (char) ('0' + millis / 10);
+                millis %= 10;
+                if (millis != 0) {
+                    out[i++] = (char) ('0' + millis);
+                }
+            }
+        }
+        out[i++] = 'Z';
+        return new String(out, 0, i);
+    }
+
+    private static int appendDigits(final char[] out, int i, final int value, final int count) {
+        for (int k = count - 1, v = value; k >= 0; k--, v /= 10) {
+            out[i + k] = (char) ('0' + v % 10);
+        }
+        return i + count;
+    }
+
+    /**
+     * @return value of decimal digits or -1 if there is a non-digit character
+     */
+    private static int digits(final char[] c, final int offset, final int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            final char ch = c[i];
+            if (ch < '0' || ch > '9') {
+                return -1;
+            }
+            value = value * 10 + (ch - '0');
+        }
+        return value;
+    }
+
+    private static int monthLength(final int year, final int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isLeapYear(final int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /** Same as {@link LocalDate#toEpochDay()} for non-negative years */
+    private static long epochDay(final int year, final int month, final int day) {
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    private interface Format {
+        long parse(final char[] chars, final int offset, final int length);
+    }
+
+    private static final class Entry {
+        final String text;
+        final long millis;
+
+        Entry(final String text, final long millis) {
+            this.text = text;
+            this.millis = millis;
+        }
+
+        boolean matches(final char[] chars, final int offset, final int length) {
+            if (text.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (text.charAt(i) != chars[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fortify.plugin.api.ScanParsingException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * <P>Checks that {@link FindingSplitter} ends findings only outside of strings, whatever the escapes and however the input is chunked.
+ */
+public class FindingSplitterTest {
+
+    private static final String[] FINDINGS = {
+            "{\"a\":\"}\"}",
+            "{\"a\":\"{\",\"b\":\"]\"}",
+            "{\"a\":\"\\\"}\"}",
+            "{\"a\":\"\\\\\"}",
+            "{\"a\":\"\\\\\\\"}\\\\\"}",
+            "{\"a\":{\"b\":[1,{\"c\":\"[{\"}]},\"d\":[]}",
+            "{\"a\":\"\\u007d\",\"b\":\"\u00e9\u20ac\ud83d\ude00}\"}",
+            "{}",
+    };
+
+    @Test
+    public void splitsArrayOutsideOfStrings() throws Exception {
+        final String array = String.join(" ,\n\t", FINDINGS) + "\r\n]";
+        for (final int chunk : new int[]{1, 2, 3, 7, 64 * 1024}) {
+            for (int batchSize = 1; batchSize <= FINDINGS.length + 1; batchSize++) {
+                assertSplit(array, false, chunk, batchSize);
+            }
+        }
+    }
+
+    @Test
+    public void splitsLines() throws Exception {
+        final String lines = String.join("\n", FINDINGS) + "\n";
+        assertSplit(lines, true, 1, 3);
+        assertSplit(lines, true, 64 * 1024, FINDINGS.length);
+        // last line without a new line
+        assertSplit(lines.substring(0, lines.length() - 1), true, 5, 2);
+    }
+
+    @Test
+    public void splitsAcrossBufferBoundary() throws Exception {
+        // string of the second finding spans the 64 KB read buffer, with an escaped quote and a brace right at its boundary
+        final StringBuilder text = new StringBuilder();
+        while (text.length() < 64 * 1024 - 20) {
+            text.append("x}{]");
+        }
+        final List<String> findings = new ArrayList<>();
+        findings.add("{\"a\":1}");
+        for (int shift = 0; shift < 8; shift++) {
+            findings.add("{\"a\":\"" + text.substring(shift) + "\\\"}\\\\\",\"b\":\"}\"}");
+        }
+        final String array = String.join(",", findings) + "]";
+        assertSplit(array, false, 64 * 1024, 3, findings.toArray(new String[0]));
+        assertSplit(array, false, 4093, 1, findings.toArray(new String[0]));
+    }
+
+    @Test
+    public void reportsOffsetsInEntry() throws Exception {
+        final String array = "  {\"a\":\"}\"},\n  {\"b\":2}]";
+        final FindingSplitter splitter = new FindingSplitter(stream(array, 3), 1000, 10, false, true);
+        final FindingSplitter.Batch batch = splitter.next();
+        assertEquals(2, batch.findingCount);
+        assertEquals(1000 + array.indexOf("{\"a\""), batch.offsets[0]);
+        assertEquals(1000 + array.indexOf("{\"b\""), batch.offsets[1]);
+        assertNull(splitter.next());
+    }
+
+    @Test
+    public void failsOnValueOtherThanObject() throws Exception {
+        final FindingSplitter splitter = new FindingSplitter(stream("{\"a\":1}, \"x\"]", 1), 0, 10, false, true);
+        try {
+            splitter.next();
+            fail("value other than object was split");
+        } catch (final ScanParsingException e) {
+            assertEquals("Expected object start in findings array at byte offset 9", e.getMessage());
+        }
+    }
+
+    @Test
+    public void passesOtherValuesOn() throws Exception {
+        final String array = "{\"a\":1}, \"x],\\\"\" ,[1,[\"]\"]], 17,null]";
+        final FindingSplitter splitter = new FindingSplitter(stream(array, 1), 0, 10, false, false);
+        final FindingSplitter.Batch batch = splitter.next();
+        assertEquals(5, batch.findingCount);
+        assertEquals("{\"a\":1}\n\"x],\\\"\"\n[1,[\"]\"]]\n17\nnull\n", new String(batch.data, 0, batch.length, StandardCharsets.UTF_8));
+        assertNull(splitter.next());
+    }
+
+    @Test
+    public void failsOnTruncatedInput() throws Exception {
+        for (final String array : new String[]{"{\"a\":\"}\"", "{\"a\":1},", "{\"a\":\"\\\"}"}) {
+            final FindingSplitter splitter = new FindingSplitter(stream(array, 2), 0, 10, false, true);
+            try {
+                splitter.next();
+                fail("truncated input was split: " + array);
+            } catch (final ScanParsingException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void returnsCompleteFindingsBeforeTruncatingLimit() throws Exception {
+        final String array = "{\"a\":1}, {\"b\":2},{\"c\":\"cut off\"}]";
+        final int limit = array.indexOf("cut");
+        final InputStream limited = new FilterInputStream(stream(array.substring(0, limit), 4)) {
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                final int n = super.read(b, off, len);
+                if (n < 0) {
+                    throw new ScanLimitException("limit reached", true);
+                }
+                return n;
+            }
+        };
+        final FindingSplitter splitter = new FindingSplitter(limited, 0, 10, false, true);
+        final FindingSplitter.Batch batch = splitter.next();
+        assertEquals(2, batch.findingCount);
+        assertEquals("{\"a\":1}\n{\"b\":2}\n", new String(batch.data, 0, batch.length, StandardCharsets.UTF_8));
+        try {
+            splitter.next();
+            fail("limit was not reported after the complete findings");
+        } catch (final ScanLimitException e) {
+            assertEquals("limit reached", e.getMessage());
+        }
+        assertNull(splitter.next());
+    }
+
+    @Test
+    public void failsOnMisplacedCommas() throws Exception {
+        assertSplitFails("  ,{\"a\":1},{\"b\":2}]", false, "Unexpected comma in findings array at byte offset 2");
+        assertSplitFails("{\"a\":1},,{\"b\":2}]", false, "Unexpected comma in findings array at byte offset 8");
+        assertSplitFails("{\"a\":1}, , {\"b\":2}]", false, "Unexpected comma in findings array at byte offset 9");
+        assertSplitFails("{\"a\":1},{\"b\":2} ,\n]", false, "Unexpected end of findings array after comma at byte offset 18");
+        assertSplitFails("{\"a\":1}{\"b\":2}]", false, "Expected comma between findings at byte offset 7");
+        assertSplitFails("{\"a\":1} 17]", false, "Expected comma between findings at byte offset 8");
+        assertSplitFails("{\"a\":1},\n{\"b\":2}\n", true, "Unexpected comma between findings lines at byte offset 7");
+        assertSplitFails("{\"a\":1}\n,{\"b\":2}\n", true, "Unexpected comma between findings lines at byte offset 8");
+        assertSplitFails("{\"a\":1} {\"b\":2}\n", true, "Expected end of findings line at byte offset 8");
+    }
+
+    private static void assertSplitFails(final String input, final boolean lines, final String message) throws Exception {
+        for (final int batchSize : new int[]{1, 10}) {
+            final FindingSplitter splitter = new FindingSplitter(stream(input, 1), 0, batchSize, lines, false);
+            try {
+                while (splitter.next() != null) {
+                    // findings before the error are split
+                }
+                fail("misplaced comma was split: " + input);
+            } catch (final ScanParsingException e) {
+                assertEquals(message, e.getMessage());
+            }
+        }
+    }
+
+    private static void assertSplit(final String input, final boolean lines, final int chunk, final int batchSize) throws Exception {
+        assertSplit(input, lines, chunk, batchSize, FINDINGS);
+    }
+
+    private static void assertSplit(final String input, final boolean lines, final int chunk, final int batchSize,
+                                    final String[] expected) throws Exception {
+        final byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        final FindingSplitter splitter = new FindingSplitter(stream(input, chunk), 0, batchSize, lines, true);
+        final List<String> findings = new ArrayList<>();
+        FindingSplitter.Batch batch;
+        while ((batch = splitter.next()) != null) {
+            final String context = String.format("chunk %d, batch size %d, finding %d", chunk, batchSize, findings.size());
+            assertEquals(context, Math.min(batchSize, expected.length - findings.size()), batch.findingCount);
+            final String data = new String(batch.data, 0, batch.length, StandardCharsets.UTF_8);
+            final String[] split = data.split("\n");
+            assertEquals(context, batch.findingCount, split.length);
+            for (int i = 0; i < split.length; i++) {
+                // each finding is at its offset in the entry
+                final byte[] finding = split[i].getBytes(StandardCharsets.UTF_8);
+                assertEquals(context, split[i], new String(bytes, (int) batch.offsets[i], finding.length, StandardCharsets.UTF_8));
+            }
+            findings.addAll(Arrays.asList(split));
+        }
+        assertEquals(Arrays.asList(expected), findings);
+    }
+
+    private static InputStream stream(final String input, final int chunk) {
+        return new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(final byte[] b, final int off, final int len) {
+                return super.read(b, off, Math.min(len, chunk));
+            }
+        };
+    }
+}
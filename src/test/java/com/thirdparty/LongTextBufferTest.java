@@ -0,0 +1,62 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <P>Checks that {@link LongTextBuffer} keeps a truncated value with its marker within the maximal length.
+ */
+public class LongTextBufferTest {
+
+    @Test
+    public void keepsValueWithinMaxLength() {
+        final LongTextBuffer buffer = new LongTextBuffer(64);
+        buffer.write(text(64), 0, 64);
+        assertFalse(buffer.isTruncated());
+        assertEquals(new String(text(64), StandardCharsets.US_ASCII), buffer.toText());
+    }
+
+    @Test
+    public void reservesRoomForMarker() {
+        final LongTextBuffer buffer = new LongTextBuffer(64);
+        buffer.write(text(500), 0, 300);
+        buffer.write(text(500), 300, 200);
+        assertTrue(buffer.isTruncated());
+        final String marker = "\n[truncated, original length 500 characters]";
+        assertEquals(new String(text(64 - marker.length()), StandardCharsets.US_ASCII) + marker, buffer.toText());
+        assertEquals(64, buffer.toText().length());
+    }
+
+    @Test
+    public void truncatesWithoutMarkerTooLong() {
+        final LongTextBuffer buffer = new LongTextBuffer(20);
+        buffer.write(text(500), 0, 500);
+        assertEquals(new String(text(20), StandardCharsets.US_ASCII), buffer.toText());
+        assertEquals("", LongTextBuffer.truncationMarker(500, 20));
+    }
+
+    private static byte[] text(final int length) {
+        final byte[] text = new byte[length];
+        Arrays.fill(text, (byte) 'x');
+        return text;
+    }
+}
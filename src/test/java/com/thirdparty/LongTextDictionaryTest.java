@@ -0,0 +1,80 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * <P>Checks that {@link LongTextDictionary} keeps values once they repeat and that distinct values don't keep later repeated ones out.
+ */
+public class LongTextDictionaryTest {
+
+    @Test
+    public void keepsValueOnceItRepeats() {
+        final LongTextDictionary dictionary = new LongTextDictionary(16, 1000);
+        final String first = lookup(dictionary, "Description of a category");
+        assertEquals(0, dictionary.size());
+        final String second = lookup(dictionary, "Description of a category");
+        assertNotSame(first, second);
+        assertEquals(1, dictionary.size());
+        assertSame(second, lookup(dictionary, "Description of a category"));
+        assertSame(second, dictionary.get(new String("Description of a category")));
+        assertEquals(2, dictionary.getHits());
+        assertEquals(2, dictionary.getMisses());
+    }
+
+    @Test
+    public void distinctValuesDontFillDictionary() {
+        final LongTextDictionary dictionary = new LongTextDictionary(16, 1000000);
+        for (int i = 0; i < 10000; i++) {
+            lookup(dictionary, "Distinct description " + i);
+        }
+        assertEquals(0, dictionary.size());
+        lookup(dictionary, "Repeated description");
+        final String kept = lookup(dictionary, "Repeated description");
+        for (int i = 0; i < 100; i++) {
+            assertSame(kept, lookup(dictionary, "Repeated description"));
+        }
+    }
+
+    @Test
+    public void keepsValuesWithinMaxChars() {
+        final LongTextDictionary dictionary = new LongTextDictionary(16, 10);
+        for (final String value : new String[]{"123456", "123456", "7890", "7890", "abc", "abc"}) {
+            lookup(dictionary, value);
+        }
+        assertEquals(2, dictionary.size());
+        final String notKept = lookup(dictionary, "abc");
+        assertNotSame(notKept, lookup(dictionary, "abc"));
+    }
+
+    @Test
+    public void disabledDictionaryCopiesValues() {
+        final LongTextDictionary dictionary = new LongTextDictionary(0, 1000);
+        final String value = lookup(dictionary, "Description");
+        assertEquals("Description", value);
+        assertNotSame(value, lookup(dictionary, "Description"));
+        assertNotSame(value, lookup(dictionary, "Description"));
+        assertEquals(0, dictionary.size());
+    }
+
+    private static String lookup(final LongTextDictionary dictionary, final String value) {
+        final char[] buf = ("xx" + value + "xx").toCharArray();
+        return dictionary.get(buf, 2, value.length());
+    }
+}
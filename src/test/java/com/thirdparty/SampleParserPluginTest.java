@@ -0,0 +1,365 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import com.fortify.plugin.api.ScanData;
+import com.fortify.plugin.api.ScanEntry;
+import com.fortify.plugin.api.ScanParsingException;
+import com.fortify.plugin.api.StaticVulnerabilityBuilder;
+import com.fortify.plugin.api.VulnerabilityHandler;
+import com.thirdparty.scan.Finding;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * <P>Imports generated scans end to end by {@link SampleParserPlugin#parseScan} and {@link SampleParserPlugin#parseVulnerabilities}
+ * with the stand-ins of {@link PluginApiStubs}, and compares the calls the vulnerability builder gets with different parser options.
+ */
+public class SampleParserPluginTest {
+
+    private static final long SEED = 7;
+    private static final int FINDINGS = 500;
+    private static final int CATEGORIES = 20;
+    private static final int LONG_TEXT_SIZE = 200;
+
+    @Test
+    public void parallelParsingHandsOverInScanOrder() throws Exception {
+        final byte[] scanZip = randomScan(FINDINGS, 0, ScanFormat.JSON);
+        final List<String> serial = importScan(scanZip);
+        assertEquals(FINDINGS, serial.size());
+        for (final String batchSize : new String[]{"1", "7", "64"}) {
+            assertEquals("batch size " + batchSize, serial, importScan(scanZip, "parallelism", "4", "parallel.batchSize", batchSize));
+        }
+    }
+
+    @Test
+    public void directModeSetsTheValuesOfLoadedFindings() throws Exception {
+        final byte[] scanZip = randomScan(FINDINGS, 0, ScanFormat.JSON);
+        final List<String> loaded = importScan(scanZip, "directMode", "false");
+        assertEquals(FINDINGS, loaded.size());
+        assertEquals(loaded, importScan(scanZip, "directMode", "true"));
+    }
+
+    @Test
+    public void directModeKeepsValuesPrecedingUniqueId() throws Exception {
+        final byte[] scanZip = scanZip("{\"findings\":["
+                + "{\"category\":\"Injection\",\"priority\":\"High\",\"lineNumber\":3,\"uniqueId\":\"a\",\"fileName\":\"a.c\"},"
+                + "{\"unknown\":{\"x\":[1]},\"uniqueId\":\"b\",\"lastChangeDate\":\"2017-04-16T21:31:42.000Z\"}]}");
+        final List<String> loaded = importScan(scanZip, "directMode", "false");
+        assertEquals(2, loaded.size());
+        assertEquals(loaded, importScan(scanZip, "directMode", "true"));
+    }
+
+    @Test
+    public void spooledScanEntryIsInflatedOnce() throws Exception {
+        // without header fields in scan.info, parseScan reads the scan entry and spools it
+        final byte[] scanZip = withoutScanInfo(randomScan(FINDINGS, 0, ScanFormat.JSON));
+        final List<String> expected = importScan(scanZip);
+        final Path directory = Files.createTempDirectory("spool-test");
+        try {
+            for (final String heapThreshold : new String[]{"0", "100000000"}) {
+                final AtomicInteger opened = new AtomicInteger();
+                // the pass finding duplicate ids reads the scan entry once more
+                assertEquals(expected, importScan(countingScanEntryOpens(scanZip, opened), "spool", "true", "spool.heapThreshold", heapThreshold,
+                        "spool.directory", directory.toString(), "duplicates", "last"));
+                assertEquals("scan entry inflated with heap threshold " + heapThreshold, 1, opened.get());
+                assertEquals(0, directory.toFile().list().length);
+            }
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void spoolIsReleasedWhenThePluginStops() throws Exception {
+        final byte[] scanZip = withoutScanInfo(randomScan(FINDINGS, 0, ScanFormat.JSON));
+        final Path directory = Files.createTempDirectory("spool-test");
+        try {
+            final SampleParserPlugin plugin = newPlugin("spool", "true", "spool.heapThreshold", "0", "spool.directory", directory.toString());
+            plugin.parseScan(PluginApiStubs.scanData(UUID.randomUUID().toString(), scanZip), PluginApiStubs.scanBuilder(new LinkedHashMap<>()));
+            assertEquals(1, directory.toFile().list().length);
+            // SSC doesn't parse the vulnerabilities of a scan whose header it rejects
+            plugin.stop();
+            assertEquals(0, directory.toFile().list().length);
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void ndjsonScanImportsLikeJson() throws Exception {
+        final List<String> expected = importScan(randomScan(FINDINGS, 0, ScanFormat.JSON));
+        final byte[] scanZip = randomScan(FINDINGS, 0, ScanFormat.NDJSON);
+        assertEquals(expected, importScan(scanZip));
+        assertEquals(expected, importScan(scanZip, "parallelism", "4", "parallel.batchSize", "7"));
+        assertEquals(expected, importScan(randomScan(FINDINGS, 3, ScanFormat.NDJSON), "parallelism", "4"));
+    }
+
+    @Test
+    public void binaryScansImportLikeJson() throws Exception {
+        final List<String> expected = importScan(randomScan(FINDINGS, 0, ScanFormat.JSON));
+        for (final ScanFormat format : new ScanFormat[]{ScanFormat.SMILE, ScanFormat.CBOR}) {
+            final byte[] scanZip = randomScan(FINDINGS, 0, format);
+            assertEquals(format.name(), expected, importScan(scanZip));
+            // binary content can't be split, it is parsed on the calling thread
+            assertEquals(format.name(), expected, importScan(scanZip, "parallelism", "4"));
+            assertEquals(format.name(), expected, importScan(randomScan(FINDINGS, 3, format), "parallelism", "4"));
+        }
+    }
+
+    @Test
+    public void shardsAreHandedOverInShardOrder() throws Exception {
+        final List<String> expected = importScan(randomScan(FINDINGS, 0, ScanFormat.JSON));
+        // up to more shards than workers
+        for (final int shards : new int[]{1, 2, 9}) {
+            final byte[] scanZip = randomScan(FINDINGS, shards, ScanFormat.JSON);
+            for (final String parallelism : new String[]{"1", "2", "4"}) {
+                assertEquals(shards + " shards, parallelism " + parallelism, expected, importScan(scanZip, "parallelism", parallelism));
+            }
+        }
+        // shards without findings
+        final List<String> few = importScan(randomScan(5, 0, ScanFormat.JSON));
+        assertEquals(few, importScan(randomScan(5, 9, ScanFormat.JSON), "parallelism", "4"));
+    }
+
+    @Test
+    public void truncatingLimitsHandOverTheFindingsBeforeThem() throws Exception {
+        final byte[] unsharded = randomScan(FINDINGS, 0, ScanFormat.JSON);
+        final List<String> expected = importScan(unsharded);
+        for (final byte[] scanZip : new byte[][]{unsharded, randomScan(FINDINGS, 3, ScanFormat.JSON)}) {
+            for (final String parallelism : new String[]{"1", "4"}) {
+                assertEquals(expected.subList(0, 100), importScan(scanZip, "parallelism", parallelism,
+                        "limits.maxFindings", "100", "limits.maxFindings.policy", "truncate"));
+                // the finding cut off by the limit is not handed over
+                final List<String> truncated = importScan(scanZip, "parallelism", parallelism,
+                        "limits.maxBytes", "200000", "limits.maxBytes.policy", "truncate");
+                // shard workers read against the same byte limit at once, a later shard may reach it before the first one yields a finding
+                final boolean concurrentShards = scanZip != unsharded && !"1".equals(parallelism);
+                assertTrue(String.valueOf(truncated.size()), (concurrentShards || truncated.size() > 0) && truncated.size() < FINDINGS);
+                assertEquals(expected.subList(0, truncated.size()), truncated);
+            }
+        }
+    }
+
+    @Test
+    public void failingLimitsFailTheImport() throws Exception {
+        final byte[] scanZip = randomScan(FINDINGS, 0, ScanFormat.JSON);
+        for (final String parallelism : new String[]{"1", "4"}) {
+            assertImportFails(scanZip, "Scan has more than 100 findings", "parallelism", parallelism, "limits.maxFindings", "100");
+            assertImportFails(scanZip, "Scan entries inflate to more than 200000 bytes", "parallelism", parallelism, "limits.maxBytes", "200000");
+            assertImportFails(scanZip, "Scan entry inflates to more than 2 times", "parallelism", parallelism, "limits.maxInflateRatio", "2");
+            assertImportFails(scanZip, "Value of uniqueId", "parallelism", parallelism,
+                    "limits.maxStringLength", "2", "limits.maxStringLength.policy", "fail");
+        }
+        assertEquals(FINDINGS, importScan(scanZip, "limits.maxFindings", "500", "limits.maxBytes", "10000000", "limits.maxInflateRatio", "100").size());
+    }
+
+    @Test
+    public void duplicatePoliciesKeepTheirOccurrences() throws Exception {
+        final byte[] scanZip = scanZip("{\"findings\":["
+                + "{\"uniqueId\":\"a\",\"lineNumber\":1,\"lastChangeDate\":\"2017-01-01T00:00:00.000Z\"},"
+                + "{\"uniqueId\":\"b\",\"lineNumber\":2,\"lastChangeDate\":\"2017-01-01T00:00:00.000Z\"},"
+                + "{\"uniqueId\":\"a\",\"lineNumber\":3,\"lastChangeDate\":\"2017-03-01T00:00:00.000Z\"},"
+                + "{\"uniqueId\":\"c\",\"lineNumber\":4},"
+                + "{\"uniqueId\":\"a\",\"lineNumber\":5,\"lastChangeDate\":\"2017-02-01T00:00:00.000Z\"},"
+                + "{\"uniqueId\":\"b\",\"lineNumber\":6,\"lastChangeDate\":\"2017-01-01T00:00:00.000Z\"}]}");
+        final List<String> all = importScan(scanZip);
+        assertEquals(6, all.size());
+        // duplicates of a batch and of the batches before it
+        final String[][] modes = {{"parallelism", "1"}, {"parallelism", "4", "parallel.batchSize", "2"}, {"directMode", "true"}};
+        for (final String[] mode : modes) {
+            final String context = Arrays.toString(mode);
+            assertEquals(context, all, importScan(scanZip, options(mode, "duplicates", "off")));
+            assertEquals(context, all, importScan(scanZip, options(mode, "duplicates", "log")));
+            assertEquals(context, Arrays.asList(all.get(0), all.get(1), all.get(3)), importScan(scanZip, options(mode, "duplicates", "first")));
+            // ids occurring once first, then the latest of each duplicate id, ties won by the later occurrence
+            assertEquals(context, Arrays.asList(all.get(3), all.get(2), all.get(5)), importScan(scanZip, options(mode, "duplicates", "last")));
+            assertImportFails(scanZip, "Duplicate uniqueId 'a'", options(mode, "duplicates", "fail"));
+        }
+    }
+
+    private static void assertImportFails(final byte[] scanZip, final String message, final String... options) throws Exception {
+        try {
+            importScan(scanZip, options);
+            fail("Import didn't fail with " + Arrays.toString(options));
+        } catch (final ScanParsingException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+
+    private static String[] options(final String[] options, final String... more) {
+        final String[] all = Arrays.copyOf(options, options.length + more.length);
+        System.arraycopy(more, 0, all, options.length, more.length);
+        return all;
+    }
+
+    private static byte[] randomScan(final int findings, final int shards, final ScanFormat format) throws IOException, InterruptedException {
+        final ScanGenerator generator = ScanGenerator.randomScanGenerator(SEED, findings, CATEGORIES, LONG_TEXT_SIZE);
+        generator.setShards(shards);
+        generator.setFormat(format);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.write(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Scan zip with the JSON content as its scan entry and no {@code scan.info}
+     */
+    private static byte[] scanZip(final String json) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final ZipOutputStream zipOut = new ZipOutputStream(out)) {
+            zipOut.putNextEntry(new ZipEntry("scan.json"));
+            zipOut.write(json.getBytes(StandardCharsets.UTF_8));
+            zipOut.closeEntry();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Copy of the scan zip without its {@code scan.info}, like a scan of a tool other than the generator
+     */
+    private static byte[] withoutScanInfo(final byte[] scanZip) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(scanZip));
+             final ZipOutputStream zipOut = new ZipOutputStream(out)) {
+            final byte[] buffer = new byte[64 * 1024];
+            ZipEntry entry;
+            while ((entry = zipIn.getNextEntry()) != null) {
+                if (entry.getName().equals(ScanGenerator.SCAN_INFO_ENTRY)) {
+                    continue;
+                }
+                zipOut.putNextEntry(new ZipEntry(entry.getName()));
+                int count;
+                while ((count = zipIn.read(buffer)) > 0) {
+                    zipOut.write(buffer, 0, count);
+                }
+                zipOut.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * {@link ScanData} of the scan zip counting how many times its scan entry is opened
+     */
+    private static ScanData countingScanEntryOpens(final byte[] scanZip, final AtomicInteger opened) {
+        final ScanData scanData = PluginApiStubs.scanData(UUID.randomUUID().toString(), scanZip);
+        return new ScanData() {
+            @Override
+            public String getSessionId() {
+                return scanData.getSessionId();
+            }
+
+            @Override
+            public List<ScanEntry> getScanEntries() {
+                return scanData.getScanEntries();
+            }
+
+            @Override
+            public InputStream getInputStream(final ScanEntry scanEntry) throws IOException {
+                return getInputStream(name -> name.equals(scanEntry.getEntryName()));
+            }
+
+            @Override
+            public InputStream getInputStream(final Predicate<String> matcher) throws IOException {
+                final InputStream content = scanData.getInputStream(matcher);
+                // the plugin opens the scan entry by a matcher of any scan entry name
+                if (content != null && matcher.test("scan.json")) {
+                    opened.incrementAndGet();
+                }
+                return content;
+            }
+        };
+    }
+
+    private static List<String> importScan(final byte[] scanZip, final String... options) throws Exception {
+        return importScan(PluginApiStubs.scanData(UUID.randomUUID().toString(), scanZip), options);
+    }
+
+    /**
+     * Imports the scan like SSC does
+     *
+     * @param options options of {@link #newPlugin}
+     * @return vulnerabilities in the order they were handed over, see {@link #recordingHandler}
+     */
+    private static List<String> importScan(final ScanData scanData, final String... options) throws Exception {
+        final SampleParserPlugin plugin = newPlugin(options);
+        final List<String> vulnerabilities = new ArrayList<>();
+        try {
+            plugin.parseScan(scanData, PluginApiStubs.scanBuilder(new LinkedHashMap<>()));
+            plugin.parseVulnerabilities(scanData, recordingHandler(vulnerabilities));
+        } finally {
+            plugin.stop();
+        }
+        return vulnerabilities;
+    }
+
+    /**
+     * @param options names of {@code sample.parser.*} options without the prefix, each followed by its value
+     */
+    private static SampleParserPlugin newPlugin(final String... options) {
+        final Properties props = new Properties();
+        for (int i = 0; i < options.length; i += 2) {
+            props.setProperty(ParserSettings.PREFIX + options[i], options[i + 1]);
+        }
+        return new SampleParserPlugin(new ParserSettings(props));
+    }
+
+    /**
+     * Handler recording each completed vulnerability as its uniqueId followed by the calls of its builder with their arguments.
+     * Calls are sorted, values are set in the order of the fields when loaded directly and in the order of the codec from a {@link Finding}.
+     */
+    private static VulnerabilityHandler recordingHandler(final List<String> vulnerabilities) {
+        final List<String> calls = new ArrayList<>();
+        final StaticVulnerabilityBuilder vb = (StaticVulnerabilityBuilder) Proxy.newProxyInstance(StaticVulnerabilityBuilder.class.getClassLoader(),
+                new Class<?>[]{StaticVulnerabilityBuilder.class}, (proxy, method, args) -> {
+                    if ("completeVulnerability".equals(method.getName())) {
+                        Collections.sort(calls.subList(1, calls.size()));
+                        vulnerabilities.add(String.join("\n", calls));
+                        calls.clear();
+                    } else {
+                        calls.add(method.getName() + Arrays.toString(args));
+                    }
+                    return null;
+                });
+        return uniqueId -> {
+            calls.add(uniqueId);
+            return vb;
+        };
+    }
+}
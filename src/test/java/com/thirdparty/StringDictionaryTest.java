@@ -0,0 +1,100 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * <P>Checks lookups of {@link StringDictionary} and that it stops growing at its limit.
+ */
+public class StringDictionaryTest {
+
+    @Test
+    public void returnsSameInstance() {
+        final StringDictionary dictionary = new StringDictionary(16, 100);
+        final String first = dictionary.get(chars("xxcategoryxx"), 2, 8);
+        assertEquals("category", first);
+        assertSame(first, dictionary.get(chars("category"), 0, 8));
+        assertSame(first, lookup(dictionary, "category"));
+        assertEquals(1, dictionary.size());
+        assertEquals(2, dictionary.getHits());
+        assertEquals(16, dictionary.getHitChars());
+        assertEquals(1, dictionary.getMisses());
+    }
+
+    @Test
+    public void keepsValuesWithSameHash() {
+        // "Aa" and "BB" share String.hashCode()
+        final StringDictionary dictionary = new StringDictionary(16, 100);
+        final String aa = lookup(dictionary, "Aa");
+        final String bb = dictionary.get(chars("BB"), 0, 2);
+        assertEquals("BB", bb);
+        assertSame(aa, dictionary.get(chars("Aa"), 0, 2));
+        assertSame(bb, lookup(dictionary, "BB"));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    public void stopsAddingAtMaxEntries() {
+        final StringDictionary dictionary = new StringDictionary(100, 100);
+        final String[] kept = new String[100];
+        for (int i = 0; i < 100; i++) {
+            kept[i] = lookup(dictionary, "value" + i);
+        }
+        for (int i = 100; i < 10000; i++) {
+            final String value = "value" + i;
+            final String returned = dictionary.get(chars(value), 0, value.length());
+            assertEquals(value, returned);
+            assertNotSame(returned, dictionary.get(chars(value), 0, value.length()));
+        }
+        assertEquals(100, dictionary.size());
+        assertEquals(100 + 2 * 9900, dictionary.getMisses());
+        assertEquals(0, dictionary.getHits());
+        // values added before the dictionary got full are still found
+        for (int i = 0; i < 100; i++) {
+            assertSame(kept[i], lookup(dictionary, "value" + i));
+        }
+        assertEquals(100, dictionary.getHits());
+    }
+
+    @Test
+    public void skipsLongValues() {
+        final StringDictionary dictionary = new StringDictionary(100, 4);
+        final String value = lookup(dictionary, "12345");
+        assertNotSame(value, dictionary.get(chars("12345"), 0, 5));
+        assertEquals(0, dictionary.size());
+        assertEquals(0, dictionary.getMisses());
+    }
+
+    @Test
+    public void disabledDictionaryCopiesValues() {
+        final StringDictionary dictionary = new StringDictionary(0, 100);
+        final String value = dictionary.get(chars("category"), 0, 8);
+        assertEquals("category", value);
+        assertNotSame(value, dictionary.get(chars("category"), 0, 8));
+        assertEquals(0, dictionary.size());
+    }
+
+    private static String lookup(final StringDictionary dictionary, final String value) {
+        return dictionary.get(chars(value), 0, value.length());
+    }
+
+    private static char[] chars(final String value) {
+        return value.toCharArray();
+    }
+}
@@ -0,0 +1,106 @@
+package com.thirdparty;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * <P>Checks {@link UniqueIdSet} against a {@link HashSet} of the same ids while its table grows, and its maximal size.
+ */
+public class UniqueIdSetTest {
+
+    @Test
+    public void growsAndFindsAllIds() {
+        final UniqueIdSet ids = new UniqueIdSet();
+        final Set<String> expected = new HashSet<>();
+        final Random random = new Random(11);
+        for (int i = 0; i < 200000; i++) {
+            final String id = i % 3 == 0 ? "finding-" + random.nextInt(150000) : new UUID(random.nextLong() & 0xFFFFL, random.nextInt(50000)).toString();
+            assertEquals(id, expected.add(id), ids.add(id));
+        }
+        assertEquals(expected.size(), ids.size());
+        for (final String id : expected) {
+            assertFalse(id, ids.add(id));
+        }
+        assertEquals(expected.size(), ids.size());
+    }
+
+    @Test
+    public void keepsIdsOfSameSlot() {
+        // ids differing in bits the slot hash spreads, with the halves of the UUID swapped and the nil UUID stored aside
+        final UniqueIdSet ids = new UniqueIdSet();
+        final String[] values = {
+                new UUID(0, 0).toString(),
+                new UUID(0, 1).toString(),
+                new UUID(1, 0).toString(),
+                new UUID(1L << 32, 0).toString(),
+                new UUID(0, 1L << 32).toString(),
+                new UUID(-1, -1).toString(),
+                "",
+                "Aa",
+                "BB",
+        };
+        for (final String value : values) {
+            assertTrue(value, ids.add(value));
+        }
+        for (final String value : values) {
+            assertFalse(value, ids.add(value));
+        }
+        assertEquals(values.length, ids.size());
+    }
+
+    @Test
+    public void refusesIdsPastMaxSize() {
+        final UniqueIdSet ids = new UniqueIdSet(3);
+        assertTrue(ids.add("a"));
+        assertTrue(ids.add(new UUID(0, 0).toString()));
+        assertTrue(ids.add(new UUID(1, 2).toString()));
+        // ids in the set are still found when it is full
+        assertFalse(ids.add("a"));
+        assertFalse(ids.add(new UUID(0, 0).toString()));
+        for (final String id : new String[]{"b", new UUID(2, 1).toString()}) {
+            try {
+                ids.add(id);
+                fail("id added past the maximal size: " + id);
+            } catch (final IllegalStateException e) {
+                assertEquals("More than 3 unique ids", e.getMessage());
+            }
+        }
+        assertEquals(3, ids.size());
+    }
+
+    @Test
+    public void distinguishesUuidForms() {
+        final UniqueIdSet ids = new UniqueIdSet();
+        final String uuid = "0f8fad5b-d9cb-469f-a165-70867728950e";
+        assertTrue(ids.add(uuid));
+        assertFalse(ids.add(new String(uuid)));
+        // upper case form is not canonical, so it is hashed and doesn't equal the lower case id
+        assertTrue(ids.add(uuid.toUpperCase()));
+        assertTrue(ids.add("0f8fad5bd9cb469fa16570867728950e"));
+        assertTrue(ids.add("0f8fad5b-d9cb-469f-a165-70867728950g"));
+        assertFalse(ids.add(uuid.toUpperCase()));
+        assertEquals(4, ids.size());
+    }
+}
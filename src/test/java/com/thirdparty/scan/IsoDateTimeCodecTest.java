@@ -0,0 +1,171 @@
+package com.thirdparty.scan;
+
+/**
+ * (c) Copyright [2017] Micro Focus or one of its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <P>Checks {@link IsoDateTimeCodec} against {@link DateTimeFormatter#ISO_DATE_TIME}, which it replaces.
+ */
+public class IsoDateTimeCodecTest {
+
+    private static final DateTimeFormatter UTC_FORMATTER = DateTimeFormatter.ISO_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    private static final String[] VALID = {
+            "2017-03-01T10:15:30Z",
+            "2017-03-01T10:15:30.1Z",
+            "2017-03-01T10:15:30.12Z",
+            "2017-03-01T10:15:30.123Z",
+            "2017-03-01T10:15:30.123456Z",
+            "2017-03-01T10:15:30.123456789Z",
+            "2017-03-01T10:15:30.001Z",
+            "2017-03-01T10:15:30.Z",
+            "2017-03-01T10:15Z",
+            "2017-03-01T10:15:30",
+            "2017-03-01T10:15",
+            "2017-03-01T10:15:30+05:30",
+            "2017-03-01T10:15:30.5-08:00",
+            "2017-03-01T00:00:00+01:02:03",
+            "2017-03-01T23:59:59-18:00",
+            "2017-03-01T00:00:00+18:00",
+            "2017-03-01T10:15:30+01:00[Europe/Paris]",
+            "2017-03-01T10:15:30Z[UTC]",
+            "2016-02-29T12:00:00Z",
+            "2000-02-29T12:00:00Z",
+            "1969-12-31T23:59:59.999Z",
+            "1970-01-01T00:00:00Z",
+            "0000-01-01T00:00:00Z",
+            "9999-12-31T23:59:59.999Z",
+            "+10000-01-01T00:00:00Z",
+            "-0001-12-31T23:59:59Z",
+    };
+
+    private static final String[] INVALID = {
+            "",
+            "garbage",
+            "2017-03-01",
+            "2017-03-01T",
+            "2017-03-01 10:15:30Z",
+            "2017-02-29T10:15:30Z",
+            "1900-02-29T10:15:30Z",
+            "2017-04-31T10:15:30Z",
+            "2017-13-01T10:15:30Z",
+            "2017-00-01T10:15:30Z",
+            "2017-03-01T24:00:00Z",
+            "2017-03-01T10:60:00Z",
+            "2017-03-01T10:15:60Z",
+            "2017-03-01T10:15:30.1234567891Z",
+            "2017-03-01T10:15:30+19:00",
+            "2017-03-01T10:15:30+05",
+            "2017-03-01T10:15:30Zjunk",
+            "2017-03-01T10:15:30+01:00[Nowhere/Nothing]",
+            "2017-3-01T10:15:30Z",
+    };
+
+    @Test
+    public void parsesAsFormatter() {
+        final IsoDateTimeCodec codec = new IsoDateTimeCodec();
+        for (final String text : VALID) {
+            assertEquals(text, formatterMillis(text), codec.parse(text));
+        }
+    }
+
+    @Test
+    public void rejectsWhatFormatterRejects() {
+        final IsoDateTimeCodec codec = new IsoDateTimeCodec();
+        for (final String text : INVALID) {
+            assertEquals(text, IsoDateTimeCodec.INVALID, codec.parse(text));
+        }
+    }
+
+    @Test
+    public void parsesFromCharBuffer() {
+        final IsoDateTimeCodec codec = new IsoDateTimeCodec();
+        for (final String text : VALID) {
+            final char[] chars = ("\"x\":\"" + text + "\"}").toCharArray();
+            assertEquals(text, formatterMillis(text), codec.parse(chars, 5, text.length()));
+        }
+        for (final String text : INVALID) {
+            final char[] chars = ("\"x\":\"" + text + "\"}").toCharArray();
+            assertEquals(text, IsoDateTimeCodec.INVALID, codec.parse(chars, 5, text.length()));
+        }
+    }
+
+    @Test
+    public void cachedValuesDontLeakAcrossTexts() {
+        final IsoDateTimeCodec codec = new IsoDateTimeCodec();
+        // more values than the cache keeps, twice, with values sharing prefixes of the cached ones
+        for (int round = 0; round < 2; round++) {
+            for (final String text : VALID) {
+                assertEquals(text, formatterMillis(text), codec.parse(text));
+                final char[] chars = text.toCharArray();
+                if (chars.length > 20 && chars[4] == '-') {
+                    final String prefix = text.substring(0, 19);
+                    assertEquals(prefix, formatterMillis(prefix), codec.parse(chars, 0, 19));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void formatsAsFormatter() {
+        final IsoDateTimeCodec codec = new IsoDateTimeCodec();
+        final long[] millis = {0, 1, -1, 999, 1000, 10, 100, 120, 123, 86399999, -86400000,
+                -62167219200000L, -62167219200001L, 253402300799999L, 253402300800000L, 1488363330123L};
+        for (final long value : millis) {
+            assertEquals(Long.toString(value), UTC_FORMATTER.format(Instant.ofEpochMilli(value)), codec.format(value));
+        }
+        final Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            final long value = random.nextLong() % 300000000000000L;
+            assertEquals(Long.toString(value), UTC_FORMATTER.format(Instant.ofEpochMilli(value)), codec.format(value));
+        }
+    }
+
+    @Test
+    public void roundTrips() {
+        final IsoDateTimeCodec codec = new IsoDateTimeCodec();
+        final Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            // years 0000 to 9999 take the hand-written paths both ways, other years the formatter
+            final long value = i % 10 == 0
+                    ? random.nextLong() % 1000000000000000L
+                    : -62167219200000L + Math.floorMod(random.nextLong(), 62167219200000L + 253402300800000L);
+            final String text = codec.format(value);
+            assertEquals(text, value, codec.parse(text));
+            final OffsetDateTime shifted = Instant.ofEpochMilli(value).atOffset(ZoneOffset.ofHoursMinutes(5, 45));
+            final String offsetText = DateTimeFormatter.ISO_DATE_TIME.format(shifted);
+            assertEquals(offsetText, value, codec.parse(offsetText));
+        }
+    }
+
+    private static long formatterMillis(final String text) {
+        final TemporalAccessor temporalAccessor = DateTimeFormatter.ISO_DATE_TIME.parse(text);
+        if (temporalAccessor.query(TemporalQueries.offset()) != null) {
+            return OffsetDateTime.from(temporalAccessor).toInstant().toEpochMilli();
+        }
+        return LocalDateTime.from(temporalAccessor).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}